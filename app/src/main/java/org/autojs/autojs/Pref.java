@@ -9,6 +9,7 @@ import com.stardust.app.GlobalAppContext;
 import com.stardust.autojs.runtime.accessibility.AccessibilityConfig;
 import com.stardust.theme.ThemeColorManager;
 
+import org.autojs.autojs.autojs.AutoJs;
 import org.autojs.autojs.autojs.key.GlobalKeyObserver;
 import org.autojs.autojs.theme.ThemeColorManagerCompat;
 
@@ -35,6 +36,8 @@ public class Pref {
             } else if ((key.equals(getString(R.string.key_use_volume_control_record)) || key.equals(getString(R.string.key_use_volume_control_running)))
                     && p.getBoolean(key, false)) {
                 GlobalKeyObserver.init();
+            } else if (key.equals(getString(R.string.key_warm_engine_pool)) && AutoJs.getInstance() != null) {
+                AutoJs.getInstance().getScriptEngineService().setWarmEnginePoolSize(getWarmEnginePoolSize());
             }
         }
     };
@@ -125,6 +128,13 @@ public class Pref {
         return def().getBoolean(getString(R.string.key_enable_observe_key), false);
     }
 
+    /**
+     * 开启预热时保留一个预热的引擎，关闭时为0
+     */
+    public static int getWarmEnginePoolSize() {
+        return def().getBoolean(getString(R.string.key_warm_engine_pool), false) ? 1 : 0;
+    }
+
     public static boolean isStableModeEnabled() {
         return def().getBoolean(getString(R.string.key_stable_mode), false);
     }
@@ -168,6 +168,11 @@ public class AutoJs extends com.stardust.autojs.AutoJs {
         }
     }
 
+    @Override
+    protected int getWarmEnginePoolSize() {
+        return Pref.getWarmEnginePoolSize();
+    }
+
     @Override
     protected AccessibilityConfig createAccessibilityConfig() {
         AccessibilityConfig config = super.createAccessibilityConfig();
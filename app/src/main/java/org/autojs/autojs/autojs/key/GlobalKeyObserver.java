@@ -38,7 +38,7 @@ public class GlobalKeyObserver implements OnKeyListener, ShellKeyObserver.KeyLis
                 .addListener(this);
         ShellKeyObserver observer = new ShellKeyObserver();
         observer.setKeyListener(this);
-        InputEventObserver.getGlobal(GlobalAppContext.get()).addListener(observer);
+        InputEventObserver.getGlobal(GlobalAppContext.get()).addFrameListener(observer);
     }
 
     public static GlobalKeyObserver getSingleton() {
@@ -0,0 +1,55 @@
+package com.stardust.autojs.core.image;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.stardust.autojs.core.opencv.Mat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TemplateCacheTest {
+
+    private static final int SIZE = 64;
+
+    @Before
+    public void setUp() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void recycleTemplateRemovesEntry() {
+        TemplateCache cache = new TemplateCache();
+        ImageWrapper template = ImageWrapper.ofMat(new Mat(SIZE, SIZE, CvType.CV_8UC4));
+        CompiledTemplate compiled = cache.get(template);
+        compiled.getLevel(1);
+        compiled.recycle();
+        assertEquals(1, cache.size());
+        template.recycle();
+        assertEquals(0, cache.size());
+        assertTrue(compiled.isReleased());
+    }
+
+    @Test
+    public void byteCountIncludesLevelZero() {
+        TemplateCache cache = new TemplateCache();
+        ImageWrapper template = ImageWrapper.ofMat(new Mat(SIZE, SIZE, CvType.CV_8UC4));
+        CompiledTemplate compiled = cache.get(template);
+        assertEquals(SIZE * SIZE * 4, compiled.getByteCount());
+        compiled.recycle();
+        // 预算小于一张模板时，新模板会淘汰之前的模板
+        cache.setMaxBytes(SIZE * SIZE * 4);
+        ImageWrapper other = ImageWrapper.ofMat(new Mat(SIZE, SIZE, CvType.CV_8UC4));
+        cache.get(other).recycle();
+        assertEquals(1, cache.size());
+        cache.clear();
+        template.recycle();
+        other.recycle();
+    }
+}
@@ -0,0 +1,83 @@
+package com.stardust.autojs.core.ui;
+
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.stardust.autojs.core.ui.inflater.DynamicLayoutInflater;
+import com.stardust.autojs.core.ui.inflater.ResourceParser;
+import com.stardust.autojs.core.ui.inflater.util.Drawables;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 测量inflate一个包含300个视图的脚本布局的耗时，其中每个视图都会创建ViewAttributes。
+ */
+@RunWith(AndroidJUnit4.class)
+public class LayoutInflationBenchmarkTest {
+
+    private static final int ROWS = 100;
+    private static final int VIEW_COUNT = 1 + (ROWS - 1) * 3 + 2;
+    private static final int ITERATIONS = 20;
+    // 通过instrumentation状态报告耗时，am instrument -r的输出中可以看到
+    private static final int REPORT_STATUS_CODE = 0;
+
+    private DynamicLayoutInflater mInflater;
+    private String mLayout;
+
+    @Before
+    public void setUp() {
+        mInflater = new DynamicLayoutInflater(new ResourceParser(new Drawables()));
+        mInflater.setContext(InstrumentationRegistry.getTargetContext());
+        StringBuilder layout = new StringBuilder("<vertical padding=\"8\">");
+        for (int i = 0; i < ROWS - 1; i++) {
+            layout.append("<horizontal w=\"*\" margin=\"4\" gravity=\"center_vertical\">")
+                    .append("<text text=\"item ").append(i).append("\" textSize=\"14sp\" layout_weight=\"1\" padding=\"4\"/>")
+                    .append("<button text=\"open\" w=\"auto\" alpha=\"0.8\" visibility=\"visible\"/>")
+                    .append("</horizontal>");
+        }
+        layout.append("<text text=\"footer\" textColor=\"#888888\"/>");
+        layout.append("<button text=\"done\" w=\"*\"/>");
+        mLayout = layout.append("</vertical>").toString();
+    }
+
+    @Test
+    public void benchmark() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            long start = System.nanoTime();
+            View first = mInflater.inflate(mLayout);
+            long firstTime = System.nanoTime() - start;
+            assertEquals(VIEW_COUNT, countViews(first));
+            View last = null;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                last = mInflater.inflate(mLayout);
+            }
+            long averageTime = (System.nanoTime() - start) / ITERATIONS;
+            assertEquals(VIEW_COUNT, countViews(last));
+            Bundle results = new Bundle();
+            results.putInt("view_count", VIEW_COUNT);
+            results.putLong("first_inflate_us", firstTime / 1000);
+            results.putLong("average_inflate_us", averageTime / 1000);
+            InstrumentationRegistry.getInstrumentation().sendStatus(REPORT_STATUS_CODE, results);
+        });
+    }
+
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
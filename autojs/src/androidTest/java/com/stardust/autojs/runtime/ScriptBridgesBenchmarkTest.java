@@ -0,0 +1,100 @@
+package com.stardust.autojs.runtime;
+
+import android.os.Bundle;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.WrapFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 比较通过__bridges__.js调用回调与直接在Java中调用回调({@link ScriptBridges#callFunction})的单次开销。
+ * 结果的一致性由单元测试ScriptBridgesTest检查。
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScriptBridgesBenchmarkTest {
+
+    private static final String BRIDGES_SCRIPT = "modules/__bridges__.js";
+    private static final int WARM_UP = 2000;
+    private static final int ITERATIONS = 20000;
+    // 通过instrumentation状态报告耗时，am instrument -r的输出中可以看到
+    private static final int REPORT_STATUS_CODE = 0;
+
+    private Context mContext;
+    private ScriptableObject mScope;
+    private ScriptBridges mBridges;
+    private Function mCallback;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = Context.enter();
+        mContext.setOptimizationLevel(-1);
+        // 与RhinoJavaScriptEngine的WrapFactory一样，String直接作为JavaScript字符串
+        mContext.setWrapFactory(new WrapFactory() {
+            @Override
+            public Object wrap(Context cx, Scriptable scope, Object obj, Class<?> staticType) {
+                return obj instanceof String ? obj : super.wrap(cx, scope, obj, staticType);
+            }
+        });
+        mScope = mContext.initStandardObjects();
+        mBridges = new ScriptBridges();
+        mContext.evaluateString(mScope, "var module = {};" +
+                "var util = { isFunction: function (f) { return typeof(f) == 'function'; } };", "<prelude>", 1, null);
+        Reader reader = new InputStreamReader(InstrumentationRegistry.getTargetContext().getAssets().open(BRIDGES_SCRIPT), "UTF-8");
+        try {
+            mContext.evaluateReader(mScope, reader, BRIDGES_SCRIPT, 1, null);
+        } finally {
+            reader.close();
+        }
+        ScriptableObject.putProperty(mScope, "scriptBridges", Context.javaToJS(mBridges, mScope));
+        mContext.evaluateString(mScope, "scriptBridges.setBridges(module.exports);", "<init>", 1, null);
+        mCallback = (Function) mContext.evaluateString(mScope,
+                "(function (a, b, c) { return typeof(a) + typeof(b) + typeof(c) + (a + b); })", "<callback>", 1, null);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Test
+    public void benchmark() {
+        Object[] args = {1, 2.5, true};
+        ScriptBridges.Bridges bridges = mBridges.getBridges();
+        assertEquals(bridges.call(mCallback, null, args), mBridges.callFunction(mCallback, null, args));
+        for (int i = 0; i < WARM_UP; i++) {
+            bridges.call(mCallback, null, args);
+            mBridges.callFunction(mCallback, null, args);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bridges.call(mCallback, null, args);
+        }
+        long viaScript = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mBridges.callFunction(mCallback, null, args);
+        }
+        long direct = System.nanoTime() - start;
+        Bundle results = new Bundle();
+        results.putInt("iterations", ITERATIONS);
+        results.putLong("bridges_call_ns", viaScript / ITERATIONS);
+        results.putLong("call_function_ns", direct / ITERATIONS);
+        InstrumentationRegistry.getInstrumentation().sendStatus(REPORT_STATUS_CODE, results);
+    }
+
+}
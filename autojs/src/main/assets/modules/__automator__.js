@@ -112,7 +112,8 @@ module.exports = function(runtime, global){
     const flagsMap = {
         "findOnUiThread": 1,
         "useUsageStats": 2,
-        "useShell": 4
+        "useShell": 4,
+        "useSnapshot": 8
     };
 
     var auto = function(mode){
@@ -73,6 +73,19 @@ module.exports = function (runtime, scope) {
         logConfigurator.configure();
     }
 
+    var consoleClasses = Packages["com.stardust.autojs.core.console"];
+
+    //设置控制台在内存中最多保留的日志条数和估计占用的内存(字节)，会清空已有的日志
+    console.setMaxLogs = function (maxEntries, maxBytes) {
+        rtConsole.setLogCapacity(maxEntries, option(maxBytes, consoleClasses.LogRingBuffer.DEFAULT_MAX_BYTES));
+    }
+
+    //设置被淘汰的日志写入的文件，path为null时直接丢弃被淘汰的日志
+    console.setLogSpillFile = function (path, maxFileSize) {
+        let file = path == null ? null : new java.io.File(files.path(path));
+        rtConsole.setLogSpillFile(file, option(maxFileSize, consoleClasses.LogSpillWriter.DEFAULT_MAX_FILE_SIZE));
+    }
+
     function option(value, def) {
         return value == undefined ? def : value;
     }
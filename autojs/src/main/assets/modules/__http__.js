@@ -1,9 +1,9 @@
 module.exports = function (runtime, scope) {
     importPackage(Packages["okhttp3"]);
-    importClass(com.stardust.autojs.core.http.MutableOkHttp);
+    importClass(com.stardust.autojs.core.http.ResponseBodyStream);
     var http = {};
 
-    http.__okhttp__ = new MutableOkHttp();
+    http.__okhttp__ = runtime.createHttpClient();
 
     http.get = function (url, options, callback) {
         options = options || {};
@@ -15,6 +15,10 @@ module.exports = function (runtime, scope) {
         return http.__okhttp__.client();
     }
 
+    http.setCacheEnabled = function (enabled) {
+        http.__okhttp__.setCacheEnabled(enabled);
+    }
+
     http.post = function (url, data, options, callback) {
         options = options || {};
         options.method = "POST";
@@ -195,6 +199,12 @@ module.exports = function (runtime, scope) {
         r.body.json = function () {
             return JSON.parse(r.body.string());
         }
+        r.body.stream = function () {
+            return new ResponseBodyStream(body);
+        }
+        r.body.saveTo = function (path) {
+            return new ResponseBodyStream(body).transferTo(new java.io.File(runtime.files.path(path)));
+        }
         r.body.contentType = body.contentType();
         r.request = res.request();
         r.url = r.request.url();
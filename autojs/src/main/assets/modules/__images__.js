@@ -165,6 +165,62 @@ module.exports = function (runtime, scope) {
             return ResultAdapter.wait(javaImages.requestScreenCapture(orientation));
         }
 
+        if (android.os.Build.VERSION.SDK_INT >= 21) {
+            images.captureScreen = function (region, options) {
+                if (region === undefined) {
+                    return javaImages.captureScreen();
+                }
+                if (typeof (region) == 'string' || typeof (region) == 'number') {
+                    return javaImages.captureScreen(region);
+                }
+                options = options || {};
+                let ScreenCapturer = com.stardust.autojs.core.image.capture.ScreenCapturer;
+                var multiple = Array.isArray(region[0]);
+                var regions = multiple ? region : [region];
+                var rects = util.java.array(Rect, regions.length);
+                for (var i = 0; i < regions.length; i++) {
+                    rects[i] = buildCaptureRegion(regions[i]);
+                }
+                var timeout = options.timeout === undefined ? -1 : options.timeout;
+                var mode = options.mode == "latest" ? ScreenCapturer.MODE_LATEST_FRAME : ScreenCapturer.MODE_NEXT_FRAME;
+                var captures = javaImages.captureScreen(rects, timeout, mode);
+                if (captures == null) {
+                    return null;
+                }
+                var result = [];
+                for (var i = 0; i < captures.length; i++) {
+                    if (options.diff) {
+                        result.push({
+                            image: captures[i],
+                            dirty: javaImages.detectChanges(captures[i], rects[i])
+                        });
+                    } else {
+                        result.push(captures[i]);
+                    }
+                }
+                return multiple ? result : result[0];
+            }
+        }
+
+        images.detectChanges = function (img, region) {
+            initIfNeeded();
+            return javaImages.detectChanges(img, region ? buildCaptureRegion(region) : null);
+        }
+
+        images.setCaptureFormat = function (format) {
+            let Images = com.stardust.autojs.runtime.api.Images;
+            switch (format) {
+                case "bitmap":
+                    javaImages.setCaptureFormat(Images.CAPTURE_FORMAT_BITMAP);
+                    break;
+                case "mat":
+                    javaImages.setCaptureFormat(Images.CAPTURE_FORMAT_MAT);
+                    break;
+                default:
+                    throw new Error("Unknown capture format: " + format);
+            }
+        }
+
         images.save = function (img, path, format, quality) {
             format = format || "png";
             quality = quality == undefined ? 100 : quality;
@@ -344,10 +400,11 @@ module.exports = function (runtime, scope) {
             } else {
                 var threshold = options.threshold || defaultColorThreshold;
             }
+            var algorithm = options.algorithm || "range";
             if (options.region) {
-                return colorFinder.findColor(img, color, threshold, buildRegion(options.region, img));
+                return colorFinder.findColor(img, color, threshold, buildRegion(options.region, img), algorithm);
             } else {
-                return colorFinder.findColor(img, color, threshold, null);
+                return colorFinder.findColor(img, color, threshold, null, algorithm);
             }
         }
 
@@ -374,27 +431,39 @@ module.exports = function (runtime, scope) {
             } else {
                 var threshold = options.threshold || defaultColorThreshold;
             }
+            var algorithm = options.algorithm || "range";
             if (options.region) {
-                return toPointArray(colorFinder.findAllPointsForColor(img, color, threshold, buildRegion(options.region, img)));
+                return toPointArray(colorFinder.findAllPointsForColor(img, color, threshold, buildRegion(options.region, img), algorithm));
             } else {
-                return toPointArray(colorFinder.findAllPointsForColor(img, color, threshold, null));
+                return toPointArray(colorFinder.findAllPointsForColor(img, color, threshold, null, algorithm));
             }
         }
 
+        images.compileMultiColors = function (firstColor, paths, options) {
+            options = options || {};
+            var threshold = options.threshold === undefined ? defaultColorThreshold : options.threshold;
+            var algorithm = options.algorithm || "diff";
+            return com.stardust.autojs.core.image.MultiColorPattern.compile(parseColor(firstColor), toPathArray(paths), algorithm, threshold);
+        }
+
         images.findMultiColors = function (img, firstColor, paths, options) {
             initIfNeeded();
+            let MultiColorPattern = com.stardust.autojs.core.image.MultiColorPattern;
+            if (firstColor instanceof MultiColorPattern) {
+                options = paths || {};
+                var region = options.region ? buildRegion(options.region, img) : null;
+                return colorFinder.findMultiColors(img, firstColor, region, parseScanOrder(options.order), !!options.parallel);
+            }
             options = options || {};
             firstColor = parseColor(firstColor);
-            var list = java.lang.reflect.Array.newInstance(java.lang.Integer.TYPE, paths.length * 3);
-            for (var i = 0; i < paths.length; i++) {
-                var p = paths[i];
-                list[i * 3] = p[0];
-                list[i * 3 + 1] = p[1];
-                list[i * 3 + 2] = parseColor(p[2]);
-            }
+            var list = toPathArray(paths);
             var region = options.region ? buildRegion(options.region, img) : null;
             var threshold = options.threshold === undefined ? defaultColorThreshold : options.threshold;
-            return colorFinder.findMultiColors(img, firstColor, threshold, region, list);
+            if (options.algorithm === undefined && options.order === undefined && !options.parallel) {
+                return colorFinder.findMultiColors(img, firstColor, threshold, region, list);
+            }
+            return colorFinder.findMultiColors(img, firstColor, threshold, region, list, options.algorithm || "diff",
+                parseScanOrder(options.order), !!options.parallel);
         }
 
         images.findImage = function (img, template, options) {
@@ -406,10 +475,11 @@ module.exports = function (runtime, scope) {
                 maxLevel = options.level;
             }
             var weakThreshold = options.weakThreshold || 0.6;
+            var grayscale = !!options.grayscale;
             if (options.region) {
-                return javaImages.findImage(img, template, weakThreshold, threshold, buildRegion(options.region, img), maxLevel);
+                return javaImages.findImage(img, template, weakThreshold, threshold, buildRegion(options.region, img), maxLevel, grayscale);
             } else {
-                return javaImages.findImage(img, template, weakThreshold, threshold, null, maxLevel);
+                return javaImages.findImage(img, template, weakThreshold, threshold, null, maxLevel, grayscale);
             }
         }
 
@@ -423,17 +493,51 @@ module.exports = function (runtime, scope) {
             }
             var max = options.max || 5;
             var weakThreshold = options.weakThreshold || 0.6;
-            var result;
-            if (options.region) {
-                result = javaImages.matchTemplate(img, template, weakThreshold, threshold, buildRegion(options.region, img), maxLevel, max);
-            } else {
-                result = javaImages.matchTemplate(img, template, weakThreshold, threshold, null, maxLevel, max);
-            }
+            var grayscale = !!options.grayscale;
+            var region = options.region ? buildRegion(options.region, img) : null;
+            var result = javaImages.matchTemplate(img, template, Imgproc.TM_CCOEFF_NORMED, weakThreshold, threshold, region, maxLevel, max, grayscale);
             return new MatchingResult(result);
         }
 
 
 
+        images.matchTemplates = function (img, templates, options) {
+            initIfNeeded();
+            options = options || {};
+            var threshold = options.threshold || 0.9;
+            var maxLevel = -1;
+            if (typeof (options.level) == 'number') {
+                maxLevel = options.level;
+            }
+            var max = options.max || 5;
+            var weakThreshold = options.weakThreshold || 0.6;
+            var region = options.region ? buildRegion(options.region, img) : null;
+            var javaTemplates = util.java.array(Image, templates.length);
+            for (var i = 0; i < templates.length; i++) {
+                javaTemplates[i] = templates[i];
+            }
+            var results = javaImages.matchTemplates(img, javaTemplates, Imgproc.TM_CCOEFF_NORMED, weakThreshold, threshold,
+                region, maxLevel, max, !!options.grayscale, !!options.parallel);
+            var matchingResults = [];
+            for (var i = 0; i < results.size(); i++) {
+                matchingResults.push(new MatchingResult(results.get(i)));
+            }
+            return matchingResults;
+        }
+
+        images.findImages = function (img, templates, options) {
+            options = options || {};
+            var matchOptions = {};
+            for (var key in options) {
+                matchOptions[key] = options[key];
+            }
+            matchOptions.max = 1;
+            return images.matchTemplates(img, templates, matchOptions).map(result => {
+                var match = result.first();
+                return match == null ? null : match.point;
+            });
+        }
+
         images.findImageInRegion = function (img, template, x, y, width, height, threshold) {
             return images.findImage(img, template, {
                 region: [x, y, width, height],
@@ -502,6 +606,28 @@ module.exports = function (runtime, scope) {
         }
 
 
+        function toPathArray(paths) {
+            var list = java.lang.reflect.Array.newInstance(java.lang.Integer.TYPE, paths.length * 3);
+            for (var i = 0; i < paths.length; i++) {
+                var p = paths[i];
+                list[i * 3] = p[0];
+                list[i * 3 + 1] = p[1];
+                list[i * 3 + 2] = parseColor(p[2]);
+            }
+            return list;
+        }
+
+        function parseScanOrder(order) {
+            let MultiColorPattern = com.stardust.autojs.core.image.MultiColorPattern;
+            if (order === undefined || order == "row") {
+                return MultiColorPattern.ORDER_ROW_MAJOR;
+            }
+            if (order == "column") {
+                return MultiColorPattern.ORDER_COLUMN_MAJOR;
+            }
+            throw new Error("Unknown order: " + order);
+        }
+
         function toPointArray(points) {
             var arr = [];
             for (var i = 0; i < points.length; i++) {
@@ -525,6 +651,14 @@ module.exports = function (runtime, scope) {
             return r;
         }
 
+        function buildCaptureRegion(region) {
+            var x = region[0] === undefined ? 0 : region[0];
+            var y = region[1] === undefined ? 0 : region[1];
+            var width = region[2] === undefined ? -1 : region[2];
+            var height = region[3] === undefined ? -1 : region[3];
+            return new Rect(x, y, width, height);
+        }
+
         function parseColor(color) {
             if (typeof (color) == 'string') {
                 color = colors.parseColor(color);
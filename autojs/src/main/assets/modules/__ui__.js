@@ -210,12 +210,6 @@ module.exports = function (runtime, global) {
             return false;
         },
         beforeApplyAttribute: function (context, inflater, view, ns, attrName, value, parent, attrs) {
-            var isDynamic = layoutInflater.isDynamicValue(value);
-            if ((isDynamic && layoutInflater.getInflateFlags() == layoutInflater.FLAG_IGNORES_DYNAMIC_ATTRS)
-                    || (!isDynamic && layoutInflater.getInflateFlags() == layoutInflater.FLAG_JUST_DYNAMIC_ATTRS)) {
-                return true;
-            }
-            value = bind(value);
             let widget = context.get("widget");
             if(widget != null && widget.hasAttr(attrName)){
                 widget.setAttr(view, attrName, value, (view, attrName, value)=>{
@@ -232,31 +226,6 @@ module.exports = function (runtime, global) {
         }
     });
 
-    function bind(value) {
-        var ctx = runtime.ui.bindingContext;
-        if (ctx == null)
-            return;
-        var i = -1;
-        while ((i = value.indexOf("{{", i + 1)) >= 0) {
-            var j = value.indexOf("}}", i + 1);
-            if (j < 0)
-                return value;
-            value = value.substring(0, i) + evalInContext(value.substring(i + 2, j), ctx) + value.substring(j + 2);
-            i = j + 1;
-        }
-        return value;
-    }
-
-    function evalInContext(expr, ctx) {
-        return global.__exitIfError__(function() {
-            with(ctx) {
-                return (function(){
-                   return eval(expr);
-                }).call(ctx);
-            }
-        });
-    }
-
     function initListView(list) {
         list.setDataSourceAdapter({
             getItemCount: function (data) {
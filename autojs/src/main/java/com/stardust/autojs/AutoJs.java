@@ -46,6 +46,8 @@ import java.io.File;
 
 public abstract class AutoJs {
 
+    private static final long HTTP_CACHE_SIZE = 16 * 1024 * 1024;
+
     private final AccessibilityActionRecorder mAccessibilityActionRecorder = new AccessibilityActionRecorder();
     private final AccessibilityNotificationObserver mNotificationObserver;
     private ScriptEngineManager mScriptEngineManager;
@@ -72,6 +74,15 @@ public abstract class AutoJs {
         mScriptEngineService = buildScriptEngineService();
         ScriptEngineService.setInstance(mScriptEngineService);
         init();
+        // 预热的引擎在后台线程创建运行时，需要在mScriptEngineService赋值之后开启
+        mScriptEngineService.setWarmEnginePoolSize(getWarmEnginePoolSize());
+    }
+
+    /**
+     * 预热的JavaScript引擎数量，见{@link ScriptEngineService#setWarmEnginePoolSize(int)}。默认为0，不预热
+     */
+    protected int getWarmEnginePoolSize() {
+        return 0;
     }
 
     protected AppUtils createAppUtils(Context context) {
@@ -114,6 +125,7 @@ public abstract class AutoJs {
                 .uiHandler(mUiHandler)
                 .globalConsole(mGlobalConsole)
                 .engineManger(mScriptEngineManager)
+                .httpCache(new File(mContext.getCacheDir(), "http"), HTTP_CACHE_SIZE)
                 .build();
     }
 
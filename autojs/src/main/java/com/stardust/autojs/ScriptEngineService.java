@@ -6,6 +6,7 @@ import androidx.annotation.Nullable;
 import com.stardust.autojs.engine.JavaScriptEngine;
 import com.stardust.autojs.engine.ScriptEngine;
 import com.stardust.autojs.engine.ScriptEngineManager;
+import com.stardust.autojs.engine.ScriptEnginePool;
 import com.stardust.autojs.execution.ExecutionConfig;
 import com.stardust.autojs.execution.LoopedBasedJavaScriptExecution;
 import com.stardust.autojs.execution.RunnableScriptExecution;
@@ -25,11 +26,15 @@ import com.stardust.util.UiHandler;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+
 import static com.stardust.autojs.runtime.exception.ScriptInterruptedException.causedByInterrupted;
 
 /**
@@ -102,12 +107,19 @@ public class ScriptEngineService {
     };
     private ScriptExecutionObserver mScriptExecutionObserver = new ScriptExecutionObserver();
     private LinkedHashMap<Integer, ScriptExecution> mScriptExecutions = new LinkedHashMap<>();
+    @Nullable
+    private final File mHttpCacheDirectory;
+    private final long mHttpCacheSize;
+    private OkHttpClient mHttpClient;
+    private Cache mHttpCache;
 
     ScriptEngineService(ScriptEngineServiceBuilder builder) {
         mUiHandler = builder.mUiHandler;
         mContext = mUiHandler.getContext();
         mScriptEngineManager = builder.mScriptEngineManager;
         mGlobalConsole = builder.mGlobalConsole;
+        mHttpCacheDirectory = builder.mHttpCacheDirectory;
+        mHttpCacheSize = builder.mHttpCacheSize;
         mScriptEngineManager.setEngineLifecycleCallback(mEngineLifecycleObserver);
         mScriptExecutionObserver.registerScriptExecutionListener(GLOBAL_LISTENER);
         EVENT_BUS.register(this);
@@ -181,6 +193,20 @@ public class ScriptEngineService {
         }
     }
 
+    /**
+     * 设置预热的JavaScript引擎数量。预热的引擎在后台线程创建，脚本启动时可以省去创建作用域和运行时的时间。默认不预热。
+     *
+     * @param size        预热的引擎数量，0表示不预热
+     * @param idleTimeout 预热的引擎空闲多长时间(毫秒)后被丢弃
+     */
+    public void setWarmEnginePoolSize(int size, long idleTimeout) {
+        mScriptEngineManager.setEnginePool(JavaScriptSource.ENGINE, size, idleTimeout);
+    }
+
+    public void setWarmEnginePoolSize(int size) {
+        setWarmEnginePoolSize(size, ScriptEnginePool.DEFAULT_IDLE_TIMEOUT);
+    }
+
     public int stopAll() {
         return mScriptEngineManager.stopAll();
     }
@@ -208,6 +234,28 @@ public class ScriptEngineService {
         return mScriptExecutions.get(id);
     }
 
+    /**
+     * 所有脚本共享的OkHttpClient。脚本通过{@link OkHttpClient#newBuilder()}在其基础上设置超时等参数，
+     * 得到的客户端与它共享连接池和线程池，因此不同脚本、多次请求之间可以复用连接。
+     */
+    public synchronized OkHttpClient getHttpClient() {
+        if (mHttpClient == null) {
+            mHttpClient = new OkHttpClient();
+        }
+        return mHttpClient;
+    }
+
+    /**
+     * @return 所有脚本共享的http磁盘缓存，没有设置缓存目录时为null
+     */
+    @Nullable
+    public synchronized Cache getHttpCache() {
+        if (mHttpCache == null && mHttpCacheDirectory != null && mHttpCacheSize > 0) {
+            mHttpCache = new Cache(mHttpCacheDirectory, mHttpCacheSize);
+        }
+        return mHttpCache;
+    }
+
     public static void setInstance(ScriptEngineService service) {
         if (sInstance != null) {
             throw new IllegalStateException();
@@ -6,6 +6,8 @@ import com.stardust.autojs.runtime.api.Console;
 import com.stardust.util.Supplier;
 import com.stardust.util.UiHandler;
 
+import java.io.File;
+
 /**
  * Created by Stardust on 2017/4/2.
  */
@@ -15,6 +17,8 @@ public class ScriptEngineServiceBuilder {
     ScriptEngineManager mScriptEngineManager;
     Console mGlobalConsole;
     UiHandler mUiHandler;
+    File mHttpCacheDirectory;
+    long mHttpCacheSize;
 
     public ScriptEngineServiceBuilder() {
 
@@ -35,6 +39,15 @@ public class ScriptEngineServiceBuilder {
         return this;
     }
 
+    /**
+     * 设置http请求共享的磁盘缓存，不设置时不缓存。脚本需要通过http.setCacheEnabled(true)才会使用缓存
+     */
+    public ScriptEngineServiceBuilder httpCache(File directory, long maxSize) {
+        mHttpCacheDirectory = directory;
+        mHttpCacheSize = maxSize;
+        return this;
+    }
+
     public ScriptEngineService build() {
         return new ScriptEngineService(this);
     }
@@ -40,6 +40,10 @@ public abstract class AccessibilityBridge {
     public static final int FLAG_FIND_ON_UI_THREAD = 1;
     public static final int FLAG_USE_USAGE_STATS = 2;
     public static final int FLAG_USE_SHELL = 4;
+    /**
+     * 在缓存的控件树快照上查找，连续的多次查找只通过IPC获取一次控件树
+     */
+    public static final int FLAG_USE_SNAPSHOT = 8;
 
     private int mMode = MODE_NORMAL;
     private int mFlags = 0;
@@ -117,6 +121,22 @@ public abstract class AccessibilityBridge {
         return service.getRootInActiveWindow();
     }
 
+    /**
+     * @return 控件树的版本号，每次窗口内容或状态发生变化时增加
+     */
+    public long getWindowChangeVersion() {
+        return AccessibilityService.Companion.getWindowChangeVersion();
+    }
+
+    /**
+     * 阻塞直到控件树的版本号不再等于version或者超时。
+     *
+     * @return 是否在超时前发生了变化
+     */
+    public boolean waitForWindowChange(long version, long timeout) throws InterruptedException {
+        return AccessibilityService.Companion.waitForWindowChange(version, timeout);
+    }
+
     public void setWindowFilter(WindowFilter windowFilter) {
         mWindowFilter = windowFilter;
     }
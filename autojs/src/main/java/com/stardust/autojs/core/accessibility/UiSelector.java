@@ -15,7 +15,9 @@ import com.stardust.automator.ActionArgument;
 import com.stardust.automator.UiGlobalSelector;
 import com.stardust.automator.UiObject;
 import com.stardust.automator.UiObjectCollection;
-import com.stardust.automator.filter.Filter;
+import com.stardust.automator.filter.CostedFilter;
+import com.stardust.automator.filter.PreparableFilter;
+import com.stardust.automator.snapshot.UiSnapshotCache;
 import com.stardust.concurrent.VolatileBox;
 import com.stardust.view.accessibility.AccessibilityNodeInfoAllocator;
 
@@ -64,6 +66,9 @@ public class UiSelector extends UiGlobalSelector {
 
 
     private static final String TAG = "UiSelector";
+    private static final long FALLBACK_POLLING_INTERVAL = 100;
+    // 两次查找开始的最小间隔，避免持续不断的无障碍事件导致不停地查找
+    private static final long MIN_SEARCH_INTERVAL = 50;
 
     private AccessibilityBridge mAccessibilityBridge;
     private AccessibilityNodeInfoAllocator mAllocator = null;
@@ -78,14 +83,18 @@ public class UiSelector extends UiGlobalSelector {
     }
 
     protected UiObjectCollection find(int max) {
+        return find(max, true);
+    }
+
+    private UiObjectCollection find(int max, boolean useIndex) {
         ensureAccessibilityServiceEnabled();
         if ((mAccessibilityBridge.getFlags() & AccessibilityBridge.FLAG_FIND_ON_UI_THREAD) != 0
                 && Looper.myLooper() != Looper.getMainLooper()) {
             VolatileBox<UiObjectCollection> result = new VolatileBox<>();
-            mAccessibilityBridge.post(() -> result.setAndNotify(findImpl(max)));
+            mAccessibilityBridge.post(() -> result.setAndNotify(findImpl(max, useIndex)));
             return result.blockedGet();
         }
-        return findImpl(max);
+        return findImpl(max, useIndex);
     }
 
     @NonNull
@@ -97,6 +106,11 @@ public class UiSelector extends UiGlobalSelector {
     @NonNull
     @ScriptInterface
     protected UiObjectCollection findImpl(int max) {
+        return findImpl(max, true);
+    }
+
+    @NonNull
+    private UiObjectCollection findImpl(int max, boolean useIndex) {
         List<AccessibilityNodeInfo> roots = mAccessibilityBridge.windowRoots();
         if (BuildConfig.DEBUG)
             Log.d(TAG, "find: roots = " + roots);
@@ -112,7 +126,10 @@ public class UiSelector extends UiGlobalSelector {
                 Log.d(TAG, "package in white list, return null");
                 return UiObjectCollection.Companion.getEMPTY();
             }
-            result.addAll(findAndReturnList(UiObject.Companion.createRoot(root, mAllocator), max - result.size()));
+            UiObject rootObject = (mAccessibilityBridge.getFlags() & AccessibilityBridge.FLAG_USE_SNAPSHOT) != 0
+                    ? UiSnapshotCache.INSTANCE.getRoot(root)
+                    : UiObject.Companion.createRoot(root, mAllocator);
+            result.addAll(findAndReturnList(rootObject, max - result.size(), useIndex));
             if (result.size() >= max) {
                 break;
             }
@@ -162,19 +179,49 @@ public class UiSelector extends UiGlobalSelector {
     @NonNull
     public UiObjectCollection untilFind() {
         ensureNonUiThread();
-        UiObjectCollection uiObjectCollection = find();
-        while (uiObjectCollection.empty()) {
+        return waitForMatch(Integer.MAX_VALUE, -1);
+    }
+
+    /**
+     * 查找直到找到控件或超时。没有找到时不再固定间隔轮询，而是等待无障碍事件通知控件树发生变化后立即重新查找；
+     * 为了应对某些应用不发送事件的情况，最多等待{@link #FALLBACK_POLLING_INTERVAL}毫秒也会重新查找一次；
+     * 事件密集时两次查找的开始时间至少间隔{@link #MIN_SEARCH_INTERVAL}毫秒。
+     *
+     * @param timeout 超时毫秒数，小于等于0时一直等待
+     * @return 找到的控件，超时则返回null
+     */
+    private UiObjectCollection waitForMatch(int max, long timeout) {
+        long start = SystemClock.uptimeMillis();
+        boolean useIndex = true;
+        while (true) {
+            // 在查找之前读取版本号，查找过程中发生的变化也不会被错过
+            long version = mAccessibilityBridge.getWindowChangeVersion();
+            long searchStart = SystemClock.uptimeMillis();
+            UiObjectCollection uiObjectCollection = find(max, useIndex);
+            if (uiObjectCollection.nonEmpty()) {
+                return uiObjectCollection;
+            }
+            // 不完整的索引没有命中时已经回退到遍历，之后的轮询直接遍历，不再重复索引查询
+            useIndex = hasCompleteIndex();
             if (Thread.currentThread().isInterrupted()) {
                 throw new ScriptInterruptedException();
             }
+            long deadline = timeout > 0 ? start + timeout : Long.MAX_VALUE;
+            long now = SystemClock.uptimeMillis();
+            if (now >= deadline) {
+                return null;
+            }
             try {
-                Thread.sleep(50);
+                mAccessibilityBridge.waitForWindowChange(version, Math.min(FALLBACK_POLLING_INTERVAL, deadline - now));
+                now = SystemClock.uptimeMillis();
+                long nextSearch = Math.min(searchStart + MIN_SEARCH_INTERVAL, deadline);
+                if (now < nextSearch) {
+                    Thread.sleep(nextSearch - now);
+                }
             } catch (InterruptedException e) {
                 throw new ScriptInterruptedException();
             }
-            uiObjectCollection = find();
         }
-        return uiObjectCollection;
     }
 
     private void ensureNonUiThread() {
@@ -186,23 +233,8 @@ public class UiSelector extends UiGlobalSelector {
 
     @ScriptInterface
     public UiObject findOne(long timeout) {
-        UiObjectCollection uiObjectCollection = find(1);
-        long start = SystemClock.uptimeMillis();
-        while (uiObjectCollection.empty()) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new ScriptInterruptedException();
-            }
-            if (timeout > 0 && SystemClock.uptimeMillis() - start > timeout) {
-                return null;
-            }
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
-                throw new ScriptInterruptedException();
-            }
-            uiObjectCollection = find(1);
-        }
-        return uiObjectCollection.get(0);
+        UiObjectCollection uiObjectCollection = waitForMatch(1, timeout);
+        return uiObjectCollection == null ? null : uiObjectCollection.get(0);
     }
 
     public UiObject findOnce() {
@@ -241,18 +273,7 @@ public class UiSelector extends UiGlobalSelector {
     @ScriptInterface
     public UiSelector id(@NotNull final String id) {
         if (!id.contains(":")) {
-            addFilter(new Filter() {
-                @Override
-                public boolean filter(@NotNull UiObject node) {
-                    String fullId = mAccessibilityBridge.getInfoProvider().getLatestPackage() + ":id/" + id;
-                    return fullId.equals(node.getViewIdResourceName());
-                }
-
-                @Override
-                public String toString() {
-                    return "id(\"" + id + "\")";
-                }
-            });
+            addFilter(new LatestPackageIdFilter(mAccessibilityBridge, id, false));
         } else {
             super.id(id);
         }
@@ -262,19 +283,7 @@ public class UiSelector extends UiGlobalSelector {
     @Override
     public UiGlobalSelector idStartsWith(@NotNull String prefix) {
         if (!prefix.contains(":")) {
-            addFilter(new Filter() {
-                @Override
-                public boolean filter(@NotNull UiObject nodeInfo) {
-                    String fullIdPrefix = mAccessibilityBridge.getInfoProvider().getLatestPackage() + ":id/" + prefix;
-                    String id = nodeInfo.getViewIdResourceName();
-                    return id != null && id.startsWith(fullIdPrefix);
-                }
-
-                @Override
-                public String toString() {
-                    return "idStartsWith(\"" + prefix + "\")";
-                }
-            });
+            addFilter(new LatestPackageIdFilter(mAccessibilityBridge, prefix, true));
         } else {
             super.idStartsWith(prefix);
         }
@@ -416,4 +425,61 @@ public class UiSelector extends UiGlobalSelector {
                 new ActionArgument.IntActionArgument(ACTION_ARGUMENT_ROW_INT, row),
                 new ActionArgument.IntActionArgument(ACTION_ARGUMENT_COLUMN_INT, column));
     }
+
+    /**
+     * 不带包名的id筛选条件，以当前应用的包名补全。当前应用的包名只是推测，控件所在的包可能不同，因此不能通过索引查询。
+     * <p>
+     * 查找过程中包名只在开始时解析一次，而不是每个节点都重新拼接；
+     * 查找之外的筛选每次都重新解析，当前应用变化后不会使用过期的id。
+     */
+    private static class LatestPackageIdFilter implements CostedFilter, PreparableFilter {
+
+        private final AccessibilityBridge mAccessibilityBridge;
+        private final String mId;
+        private final boolean mPrefix;
+        // 当前查找使用的完整id，不在查找过程中时为null
+        private volatile String mPreparedFullId;
+
+        LatestPackageIdFilter(AccessibilityBridge accessibilityBridge, String id, boolean prefix) {
+            mAccessibilityBridge = accessibilityBridge;
+            mId = id;
+            mPrefix = prefix;
+        }
+
+        @Override
+        public void prepare() {
+            mPreparedFullId = resolveFullId();
+        }
+
+        @Override
+        public void finish() {
+            mPreparedFullId = null;
+        }
+
+        private String resolveFullId() {
+            return mAccessibilityBridge.getInfoProvider().getLatestPackage() + ":id/" + mId;
+        }
+
+        private String getFullId() {
+            String fullId = mPreparedFullId;
+            return fullId == null ? resolveFullId() : fullId;
+        }
+
+        @Override
+        public int getCost() {
+            return CostedFilter.COST_STRING;
+        }
+
+        @Override
+        public boolean filter(@NotNull UiObject node) {
+            String fullId = getFullId();
+            String id = node.getViewIdResourceName();
+            return id != null && (mPrefix ? id.startsWith(fullId) : id.equals(fullId));
+        }
+
+        @Override
+        public String toString() {
+            return (mPrefix ? "idStartsWith(\"" : "id(\"") + mId + "\")";
+        }
+    }
 }
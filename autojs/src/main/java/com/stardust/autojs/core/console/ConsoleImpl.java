@@ -18,6 +18,7 @@ import com.stardust.enhancedfloaty.ResizableExpandableFloatyWindow;
 import com.stardust.util.UiHandler;
 import com.stardust.util.ViewUtil;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -36,6 +37,8 @@ public class ConsoleImpl extends AbstractConsole {
         public int level;
         public CharSequence content;
         public boolean newLine = false;
+        // 在LogRingBuffer中的序号
+        long seq = -1;
 
         public LogEntry(int id, int level, CharSequence content) {
             this.id = id;
@@ -64,7 +67,9 @@ public class ConsoleImpl extends AbstractConsole {
 
     private final Object WINDOW_SHOW_LOCK = new Object();
     private final Console mGlobalConsole;
-    private final ArrayList<LogEntry> mLogEntries = new ArrayList<>();
+    private volatile LogRingBuffer mLogs = new LogRingBuffer();
+    @Nullable
+    private volatile LogSpillWriter mLogSpillWriter;
     private AtomicInteger mIdCounter = new AtomicInteger(0);
     private ResizableExpandableFloatyWindow mFloatyWindow;
     private ConsoleFloaty mConsoleFloaty;
@@ -110,8 +115,38 @@ public class ConsoleImpl extends AbstractConsole {
         mLogListener = new WeakReference<>(logListener);
     }
 
+    public LogRingBuffer getLogs() {
+        return mLogs;
+    }
+
+    /**
+     * @return 当前保留的所有日志的快照
+     */
     public ArrayList<LogEntry> getAllLogs() {
-        return mLogEntries;
+        ArrayList<LogEntry> logs = new ArrayList<>();
+        mLogs.read(0, logs);
+        return logs;
+    }
+
+    /**
+     * 设置内存中最多保留的日志条数和估计占用的内存。会清空已有的日志。
+     */
+    public void setLogCapacity(int maxEntries, long maxBytes) {
+        LogRingBuffer logs = new LogRingBuffer(maxEntries, maxBytes);
+        logs.setEvictionListener(mLogSpillWriter);
+        mLogs = logs;
+        clear();
+    }
+
+    /**
+     * 设置被淘汰的日志写入的文件，为null时直接丢弃被淘汰的日志。
+     *
+     * @param maxFileSize 文件大小上限，超过时轮转
+     */
+    public void setLogSpillFile(@Nullable File file, long maxFileSize) {
+        LogSpillWriter writer = file == null ? null : new LogSpillWriter(file, maxFileSize);
+        mLogSpillWriter = writer;
+        mLogs.setEvictionListener(writer);
     }
 
     public void printAllStackTrace(Throwable t) {
@@ -125,9 +160,7 @@ public class ConsoleImpl extends AbstractConsole {
     @Override
     public String println(int level, CharSequence charSequence) {
         LogEntry logEntry = new LogEntry(mIdCounter.getAndIncrement(), level, charSequence, true);
-        synchronized (mLogEntries) {
-            mLogEntries.add(logEntry);
-        }
+        mLogs.append(logEntry);
         if (mGlobalConsole != null) {
             mGlobalConsole.println(level, charSequence);
         }
@@ -146,9 +179,7 @@ public class ConsoleImpl extends AbstractConsole {
 
     @Override
     public void clear() {
-        synchronized (mLogEntries) {
-            mLogEntries.clear();
-        }
+        mLogs.clear();
         if (mLogListener != null && mLogListener.get() != null) {
             mLogListener.get().onLogClear();
         }
@@ -29,7 +29,7 @@ import java.util.Map;
 /**
  * Created by Stardust on 2017/5/2.
  * <p>
- * TODO: 优化为无锁形式
+ * 定时从控制台的{@link LogRingBuffer}中增量读取新日志，显示的条数不超过缓冲区的容量。
  */
 public class ConsoleView extends FrameLayout implements ConsoleImpl.LogListener {
 
@@ -60,6 +60,10 @@ public class ConsoleView extends FrameLayout implements ConsoleImpl.LogListener
     private LinearLayout mInputContainer;
     private boolean mShouldStopRefresh = false;
     private ArrayList<ConsoleImpl.LogEntry> mLogEntries = new ArrayList<>();
+    private ArrayList<ConsoleImpl.LogEntry> mNewLogEntries = new ArrayList<>();
+    // 当前读取的缓冲区及下一次读取的序号
+    private LogRingBuffer mLogs;
+    private long mNextSeq = 0;
 
     public ConsoleView(Context context) {
         super(context);
@@ -165,6 +169,9 @@ public class ConsoleView extends FrameLayout implements ConsoleImpl.LogListener
     public void onLogClear() {
         post(() -> {
             mLogEntries.clear();
+            if (mLogs != null) {
+                mNextSeq = mLogs.getEndSeq();
+            }
             mLogListRecyclerView.getAdapter().notifyDataSetChanged();
         });
     }
@@ -172,26 +179,44 @@ public class ConsoleView extends FrameLayout implements ConsoleImpl.LogListener
     private void refreshLog() {
         if (mConsole == null)
             return;
-        int oldSize = mLogEntries.size();
-        ArrayList<ConsoleImpl.LogEntry> logEntries = mConsole.getAllLogs();
-        synchronized (mConsole.getAllLogs()) {
-            final int size = logEntries.size();
-            if (size == 0) {
-                return;
-            }
-            if (oldSize >= size) {
-                return;
+        LogRingBuffer logs = mConsole.getLogs();
+        if (logs != mLogs) {
+            // 控制台更换了缓冲区(例如修改了容量)，重新读取全部日志
+            mLogs = logs;
+            mNextSeq = 0;
+            if (!mLogEntries.isEmpty()) {
+                mLogEntries.clear();
+                mLogListRecyclerView.getAdapter().notifyDataSetChanged();
             }
-            if (oldSize == 0) {
-                mLogEntries.addAll(logEntries);
-            } else {
-                for (int i = oldSize; i < size; i++) {
-                    mLogEntries.add(logEntries.get(i));
-                }
+        }
+        mNewLogEntries.clear();
+        mNextSeq = logs.read(mNextSeq, mNewLogEntries);
+        int added = mNewLogEntries.size();
+        if (added == 0) {
+            return;
+        }
+        RecyclerView.Adapter adapter = mLogListRecyclerView.getAdapter();
+        // 缓冲区可能因为条数或者内存上限淘汰日志，界面只保留缓冲区中仍然存在的日志
+        long startSeq = logs.getStartSeq();
+        int removed = 0;
+        while (removed < mLogEntries.size() && mLogEntries.get(removed).seq < startSeq) {
+            removed++;
+        }
+        if (removed > 0) {
+            mLogEntries.subList(0, removed).clear();
+            adapter.notifyItemRangeRemoved(0, removed);
+        }
+        int oldSize = mLogEntries.size();
+        for (int i = 0; i < added; i++) {
+            ConsoleImpl.LogEntry entry = mNewLogEntries.get(i);
+            if (entry.seq >= startSeq) {
+                mLogEntries.add(entry);
             }
-            mLogListRecyclerView.getAdapter().notifyItemRangeInserted(oldSize, size - 1);
-            mLogListRecyclerView.scrollToPosition(size - 1);
         }
+        mNewLogEntries.clear();
+        int size = mLogEntries.size();
+        adapter.notifyItemRangeInserted(oldSize, size - oldSize);
+        mLogListRecyclerView.scrollToPosition(size - 1);
     }
 
     public void setWindow(ResizableExpandableFloatyWindow window) {
@@ -9,6 +9,10 @@ import org.apache.log4j.Priority;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -17,8 +21,28 @@ import java.util.Locale;
 
 public class GlobalConsole extends ConsoleImpl {
     private static final String LOG_tAG = "GlobalConsole";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault());
+    // SimpleDateFormat不是线程安全的，而println可能在任意脚本线程中调用
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault());
+        }
+    };
     private static final Logger LOGGER = Logger.getLogger(GlobalConsole.class);
+    // 写入线程来不及处理时最多积压的日志条数，超过时丢弃最早的日志
+    private static final int MAX_PENDING_LOGS = 1024;
+    private static final AtomicLong DROPPED_LOG_COUNT = new AtomicLong();
+    // 写日志文件会阻塞，交给单独的线程按顺序写入
+    private static final ThreadPoolExecutor LOG_WRITER = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_LOGS), new ThreadPoolExecutor.DiscardOldestPolicy() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            DROPPED_LOG_COUNT.incrementAndGet();
+            super.rejectedExecution(r, e);
+        }
+    });
+    // 已经写入日志文件提示过的丢弃条数，只在写入线程中访问
+    private static long sReportedDroppedLogCount = 0;
 
     public GlobalConsole(UiHandler uiHandler) {
         super(uiHandler);
@@ -27,13 +51,30 @@ public class GlobalConsole extends ConsoleImpl {
     @Override
     public String println(int level, CharSequence charSequence) {
         String log = String.format(Locale.getDefault(), "%s/%s: %s",
-                DATE_FORMAT.format(new Date()), getLevelChar(level), charSequence.toString());
-        LOGGER.log(toLog4jLevel(level), log);
+                DATE_FORMAT.get().format(new Date()), getLevelChar(level), charSequence.toString());
+        Priority priority = toLog4jLevel(level);
+        LOG_WRITER.execute(() -> writeLog(priority, log));
         android.util.Log.d(LOG_tAG, log);
         super.println(level, log);
         return log;
     }
 
+    /**
+     * @return 因为写入日志文件太慢而被丢弃的日志条数
+     */
+    public static long getDroppedLogCount() {
+        return DROPPED_LOG_COUNT.get();
+    }
+
+    private static void writeLog(Priority priority, String log) {
+        long dropped = DROPPED_LOG_COUNT.get();
+        if (dropped != sReportedDroppedLogCount) {
+            LOGGER.warn((dropped - sReportedDroppedLogCount) + " logs dropped");
+            sReportedDroppedLogCount = dropped;
+        }
+        LOGGER.log(priority, log);
+    }
+
     private Priority toLog4jLevel(int level) {
         switch (level) {
             case android.util.Log.VERBOSE:
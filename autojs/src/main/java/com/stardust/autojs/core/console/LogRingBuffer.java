@@ -0,0 +1,176 @@
+package com.stardust.autojs.core.console;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 定长的日志环形缓冲区，支持多个线程无锁地追加日志。
+ * <p>
+ * 每条日志按追加顺序分配一个序号，条数超过容量或估计占用的内存超过上限时，最早的日志被淘汰，
+ * 被淘汰的日志交给{@link EvictionListener}(例如写入磁盘)。
+ */
+public class LogRingBuffer {
+
+    public interface EvictionListener {
+
+        /**
+         * 可能在任意追加日志的线程中调用
+         */
+        void onEvicted(ConsoleImpl.LogEntry entry);
+    }
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private final AtomicReferenceArray<ConsoleImpl.LogEntry> mSlots;
+    private final int mMask;
+    private final long mMaxBytes;
+    // 下一条日志的序号
+    private final AtomicLong mNextSeq = new AtomicLong();
+    // 仍然保留的最早一条日志的序号
+    private final AtomicLong mStartSeq = new AtomicLong();
+    private final AtomicLong mBytes = new AtomicLong();
+    @Nullable
+    private volatile EvictionListener mEvictionListener;
+
+    /**
+     * @param maxEntries 最多保留的日志条数，会向上取整为2的幂
+     * @param maxBytes   日志内容估计占用内存的上限(每个字符按2字节计算)
+     */
+    public LogRingBuffer(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("maxEntries = " + maxEntries + ", maxBytes = " + maxBytes);
+        }
+        int capacity = Integer.highestOneBit(maxEntries);
+        if (capacity < maxEntries) {
+            capacity <<= 1;
+        }
+        mSlots = new AtomicReferenceArray<>(capacity);
+        mMask = capacity - 1;
+        mMaxBytes = maxBytes;
+    }
+
+    public LogRingBuffer() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public void setEvictionListener(@Nullable EvictionListener evictionListener) {
+        mEvictionListener = evictionListener;
+    }
+
+    public int getCapacity() {
+        return mSlots.length();
+    }
+
+    /**
+     * 追加一条日志并为其分配序号
+     */
+    public void append(ConsoleImpl.LogEntry entry) {
+        long seq = mNextSeq.getAndIncrement();
+        entry.seq = seq;
+        mBytes.addAndGet(sizeOf(entry));
+        int i = index(seq);
+        ConsoleImpl.LogEntry old = mSlots.getAndSet(i, entry);
+        if (old != null && old.seq > seq) {
+            // 极端情况下序号晚一圈的日志先写入了同一个槽，此时保留较新的日志
+            mSlots.compareAndSet(i, entry, old);
+            onRemoved(entry);
+        } else if (old != null) {
+            onRemoved(old);
+        }
+        advanceStart(seq - mSlots.length() + 1);
+        trimToMaxBytes(seq);
+    }
+
+    /**
+     * 读取序号不小于fromSeq的所有日志
+     *
+     * @return 下一次读取时应传入的序号
+     */
+    public long read(long fromSeq, List<ConsoleImpl.LogEntry> out) {
+        long end = mNextSeq.get();
+        long seq = Math.max(fromSeq, mStartSeq.get());
+        for (; seq < end; seq++) {
+            ConsoleImpl.LogEntry entry = mSlots.get(index(seq));
+            if (entry == null || entry.seq < seq) {
+                // 序号已分配但日志还没有写入槽中，下次再读
+                if (seq >= mStartSeq.get()) {
+                    break;
+                }
+                continue;
+            }
+            if (entry.seq == seq) {
+                out.add(entry);
+            }
+        }
+        return seq;
+    }
+
+    public long getStartSeq() {
+        return mStartSeq.get();
+    }
+
+    public long getEndSeq() {
+        return mNextSeq.get();
+    }
+
+    public void clear() {
+        long end = mNextSeq.get();
+        advanceStart(end);
+        for (long seq = Math.max(0, end - mSlots.length()); seq < end; seq++) {
+            removeAt(seq, false);
+        }
+    }
+
+    private void trimToMaxBytes(long lastSeq) {
+        while (mBytes.get() > mMaxBytes) {
+            long start = mStartSeq.get();
+            if (start >= lastSeq) {
+                return;
+            }
+            if (mStartSeq.compareAndSet(start, start + 1)) {
+                removeAt(start, true);
+            }
+        }
+    }
+
+    private void removeAt(long seq, boolean evicted) {
+        int i = index(seq);
+        ConsoleImpl.LogEntry entry = mSlots.get(i);
+        // 如果槽已经被新的日志覆盖，旧日志由覆盖它的线程负责处理
+        if (entry != null && entry.seq == seq && mSlots.compareAndSet(i, entry, null)) {
+            if (evicted) {
+                onRemoved(entry);
+            } else {
+                mBytes.addAndGet(-sizeOf(entry));
+            }
+        }
+    }
+
+    private void onRemoved(ConsoleImpl.LogEntry entry) {
+        mBytes.addAndGet(-sizeOf(entry));
+        EvictionListener listener = mEvictionListener;
+        if (listener != null) {
+            listener.onEvicted(entry);
+        }
+    }
+
+    private void advanceStart(long seq) {
+        long start;
+        do {
+            start = mStartSeq.get();
+        } while (start < seq && !mStartSeq.compareAndSet(start, seq));
+    }
+
+    private int index(long seq) {
+        return (int) (seq & mMask);
+    }
+
+    private static long sizeOf(ConsoleImpl.LogEntry entry) {
+        return entry.content == null ? 0 : entry.content.length() * 2L;
+    }
+
+}
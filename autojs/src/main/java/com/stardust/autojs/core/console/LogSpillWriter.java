@@ -0,0 +1,130 @@
+package com.stardust.autojs.core.console;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把从{@link LogRingBuffer}中淘汰的日志在后台线程中批量写入文件。文件超过大小上限时重命名为"文件名.1"并重新开始写入，
+ * 因此磁盘上最多保留两个文件。
+ * <p>
+ * 等待写入的日志最多保留{@link #MAX_PENDING_ENTRIES}条，写入跟不上时丢弃最旧的日志，并在文件中记录丢弃的条数。
+ */
+public class LogSpillWriter implements LogRingBuffer.EvictionListener {
+
+    public static final long DEFAULT_MAX_FILE_SIZE = 4 * 1024 * 1024;
+    public static final int MAX_PENDING_ENTRIES = 4096;
+
+    private static final String LOG_TAG = "LogSpillWriter";
+    private static final String CHARSET = "UTF-8";
+    private static final ExecutorService WRITER_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final File mFile;
+    private final long mMaxFileSize;
+    private final ArrayBlockingQueue<ConsoleImpl.LogEntry> mPending = new ArrayBlockingQueue<>(MAX_PENDING_ENTRIES);
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    // 只在写入线程中访问
+    private long mReportedDroppedCount = 0;
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+    private final Runnable mDrainTask = this::drain;
+
+    public LogSpillWriter(File file, long maxFileSize) {
+        mFile = file;
+        mMaxFileSize = maxFileSize;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 因为写入跟不上或者写入失败而丢弃的日志条数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    @Override
+    public void onEvicted(ConsoleImpl.LogEntry entry) {
+        while (!mPending.offer(entry)) {
+            if (mPending.poll() != null) {
+                mDroppedCount.incrementAndGet();
+            }
+        }
+        if (mScheduled.compareAndSet(false, true)) {
+            WRITER_EXECUTOR.execute(mDrainTask);
+        }
+    }
+
+    private void drain() {
+        mScheduled.set(false);
+        if (mPending.isEmpty()) {
+            return;
+        }
+        File parent = mFile.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OutputStream os = null;
+        try {
+            os = open(mFile.length());
+            long size = mFile.length();
+            long dropped = mDroppedCount.get();
+            if (dropped != mReportedDroppedCount) {
+                size += write(os, (dropped - mReportedDroppedCount) + " logs dropped");
+                mReportedDroppedCount = dropped;
+            }
+            ConsoleImpl.LogEntry entry;
+            while ((entry = mPending.poll()) != null) {
+                // 每条日志写入前都检查大小，一次写入很多日志时文件也不会超过上限太多
+                if (size >= mMaxFileSize) {
+                    os.close();
+                    os = open(size);
+                    size = mFile.length();
+                }
+                size += write(os, String.valueOf(entry.content));
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "drain: " + mFile, e);
+            mDroppedCount.addAndGet(mPending.size());
+            mPending.clear();
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @param size 当前文件的大小，达到上限时先轮换文件
+     */
+    private OutputStream open(long size) throws IOException {
+        if (size >= mMaxFileSize) {
+            File backup = new File(mFile.getPath() + ".1");
+            backup.delete();
+            if (!mFile.renameTo(backup)) {
+                mFile.delete();
+            }
+        }
+        return new BufferedOutputStream(new FileOutputStream(mFile, true));
+    }
+
+    private static int write(OutputStream os, String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(CHARSET);
+        os.write(bytes);
+        return bytes.length;
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.stardust.autojs.core.graphics
+
+/**
+ * 画布每帧绘制的统计数据，由绘制线程更新，脚本可以在任意线程读取。时间单位均为毫秒。
+ */
+class FrameStats {
+
+    /**
+     * 已经绘制的帧数
+     */
+    @Volatile
+    var frameCount: Long = 0
+        private set
+
+    /**
+     * 因为上一帧绘制过慢而错过的帧数
+     */
+    @Volatile
+    var droppedFrameCount: Long = 0
+        private set
+
+    /**
+     * 上一帧从开始绘制到提交的耗时
+     */
+    @Volatile
+    var lastDrawTime: Double = 0.0
+        private set
+
+    /**
+     * 最近若干帧绘制耗时的平均值
+     */
+    @Volatile
+    var averageDrawTime: Double = 0.0
+        private set
+
+    /**
+     * 最近若干帧的实际帧间隔的平均值
+     */
+    @Volatile
+    var averageFrameInterval: Double = 0.0
+        private set
+
+    /**
+     * 根据平均帧间隔计算的帧率
+     */
+    val fps: Double
+        get() {
+            val interval = averageFrameInterval
+            return if (interval <= 0) 0.0 else 1000 / interval
+        }
+
+    internal fun onFrameDrawn(drawTimeNanos: Long, frameIntervalNanos: Long, droppedFrames: Long) {
+        val drawTime = drawTimeNanos / 1e6
+        lastDrawTime = drawTime
+        averageDrawTime = average(averageDrawTime, drawTime)
+        if (frameIntervalNanos > 0) {
+            averageFrameInterval = average(averageFrameInterval, frameIntervalNanos / 1e6)
+        }
+        droppedFrameCount += droppedFrames
+        frameCount++
+    }
+
+    internal fun reset() {
+        frameCount = 0
+        droppedFrameCount = 0
+        lastDrawTime = 0.0
+        averageDrawTime = 0.0
+        averageFrameInterval = 0.0
+    }
+
+    private fun average(average: Double, value: Double): Double {
+        return if (average == 0.0) value else average + (value - average) * SMOOTHING_FACTOR
+    }
+
+    override fun toString(): String {
+        return "FrameStats{frameCount=$frameCount, droppedFrameCount=$droppedFrameCount, lastDrawTime=$lastDrawTime, " +
+                "averageDrawTime=$averageDrawTime, fps=$fps}"
+    }
+
+    companion object {
+        // 指数移动平均的权重，约等于最近16帧的平均值
+        private const val SMOOTHING_FACTOR = 1.0 / 16
+    }
+}
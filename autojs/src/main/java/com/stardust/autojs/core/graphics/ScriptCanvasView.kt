@@ -2,96 +2,277 @@ package com.stardust.autojs.core.graphics
 
 import android.annotation.SuppressLint
 import android.content.Context
+import android.graphics.Bitmap
 import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffXfermode
+import android.graphics.Rect
 import android.graphics.SurfaceTexture
-import android.os.SystemClock
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.Looper
 import android.util.Log
+import android.view.Choreographer
 import android.view.TextureView
 import android.view.View
+import android.view.WindowManager
 import com.stardust.autojs.core.eventloop.EventEmitter
 import com.stardust.autojs.runtime.ScriptRuntime
 import com.stardust.autojs.runtime.exception.ScriptInterruptedException
-import com.stardust.ext.ifNull
-import java.util.concurrent.ExecutorService
-import java.util.concurrent.Executors
 
 /**
  * Created by Stardust on 2018/3/16.
+ *
+ * 画布在独立的绘制线程中按照[Choreographer]的垂直同步信号绘制，帧率不超过[setMaxFps]设置的值。
+ * 开启[retained]后，脚本绘制在一个保留的离屏位图上，只有通过[markDirty]标记的区域会被重新绘制和提交。
  */
 
 @SuppressLint("ViewConstructor")
-class ScriptCanvasView(context: Context, private val mScriptRuntime: ScriptRuntime) : TextureView(context), TextureView.SurfaceTextureListener {
+class ScriptCanvasView(context: Context, private val mScriptRuntime: ScriptRuntime) : TextureView(context),
+        TextureView.SurfaceTextureListener, Choreographer.FrameCallback {
     @Volatile
     private var mDrawing = true
     private val mEventEmitter: EventEmitter = EventEmitter(mScriptRuntime.bridges)
-    private var mDrawingThreadPool: ExecutorService? = null
+    private var mRenderThread: HandlerThread? = null
+    private var mRenderHandler: Handler? = null
+    // 以下字段只在绘制线程中访问
+    private var mFrameScheduled = false
+    private var mLastFrameTimeNanos = 0L
+    private val mScriptCanvas = ScriptCanvas()
+    private val mFrameDirtyRect = Rect()
+    private val mBlitPaint = Paint().apply { xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC) }
+    private var mRetainedBitmap: Bitmap? = null
+    private var mRetainedCanvas: ScriptCanvas? = null
+
+    // SurfaceTexture销毁后由绘制线程释放，因此绘制过程中不需要持有UI线程也会等待的锁
+    @Volatile
+    private var mSurfaceAvailable = false
+    // 保留模式下等待重新绘制的区域
+    private val mDirtyRect = Rect()
+    private var mFullyDirty = true
+    private val mVsyncIntervalNanos: Long
     @Volatile
-    private var mTimePerDraw = (1000 / 30).toLong()
+    private var mMinFrameIntervalNanos = NANOS_PER_SECOND / 30
 
     val maxListeners: Int
         get() = mEventEmitter.maxListeners
 
+    val frameStats = FrameStats()
+
+    /**
+     * 是否把画布内容保留在离屏位图上。开启后只在有区域被标记为需要重绘时才触发draw事件，
+     * draw事件中的画布被裁剪到需要重绘的区域。
+     */
+    @Volatile
+    var retained = false
+        set(value) {
+            field = value
+            markDirty()
+        }
+
     init {
         surfaceTextureListener = this
+        val refreshRate = (context.getSystemService(Context.WINDOW_SERVICE) as WindowManager).defaultDisplay.refreshRate
+        mVsyncIntervalNanos = (NANOS_PER_SECOND / if (refreshRate > 0) refreshRate else 60f).toLong()
     }
 
+    /**
+     * @param maxFps 最大帧率，小于等于0时每个垂直同步信号都绘制一帧
+     */
     fun setMaxFps(maxFps: Int) {
-        mTimePerDraw = if (maxFps <= 0) {
+        mMinFrameIntervalNanos = if (maxFps <= 0) {
             0
         } else {
-            (100 / maxFps).toLong()
+            NANOS_PER_SECOND / maxFps
+        }
+    }
+
+    /**
+     * 标记整个画布需要重绘，只在保留模式下有意义
+     */
+    fun markDirty() {
+        synchronized(mDirtyRect) {
+            mFullyDirty = true
+        }
+        scheduleFrame()
+    }
+
+    /**
+     * 标记画布的一个区域需要重绘，只在保留模式下有意义
+     */
+    fun markDirty(left: Float, top: Float, right: Float, bottom: Float) {
+        synchronized(mDirtyRect) {
+            mDirtyRect.union(Math.floor(left.toDouble()).toInt(), Math.floor(top.toDouble()).toInt(),
+                    Math.ceil(right.toDouble()).toInt(), Math.ceil(bottom.toDouble()).toInt())
         }
+        scheduleFrame()
     }
 
     @Synchronized
-    private fun performDraw() {
-        ::mDrawingThreadPool.ifNull {
-            Executors.newCachedThreadPool()
-        }.run {
-            execute {
-                var canvas: Canvas? = null
-                var time = SystemClock.uptimeMillis()
-                val scriptCanvas = ScriptCanvas()
-                try {
-                    while (mDrawing) {
-                        canvas = lockCanvas()
-                        scriptCanvas.setCanvas(canvas)
-                        emit("draw", scriptCanvas, this@ScriptCanvasView)
-                        unlockCanvasAndPost(canvas)
-                        canvas = null
-                        val dt = mTimePerDraw - (SystemClock.uptimeMillis() - time)
-                        if (dt > 0) {
-                            sleep(dt)
-                        }
-                        time = SystemClock.uptimeMillis()
-                    }
-                } catch (e: Exception) {
-                    mScriptRuntime.exit(e)
-                    mDrawing = false
-                } finally {
-                    if (canvas != null) {
-                        unlockCanvasAndPost(canvas)
-                    }
+    private fun startRendering() {
+        if (mRenderThread == null) {
+            val thread = HandlerThread("$LOG_TAG-render")
+            thread.start()
+            mRenderThread = thread
+            mRenderHandler = Handler(thread.looper).apply {
+                post {
+                    mFrameScheduled = false
+                    mLastFrameTimeNanos = 0
                 }
             }
         }
+        scheduleFrame()
+    }
+
+    /**
+     * 在绘制线程中释放位图和SurfaceTexture并结束线程，正在绘制的一帧会先完成
+     */
+    @Synchronized
+    private fun stopRendering(surface: SurfaceTexture) {
+        val handler = mRenderHandler
+        mRenderThread = null
+        mRenderHandler = null
+        if (handler == null) {
+            surface.release()
+            return
+        }
+        handler.post {
+            mRetainedBitmap?.recycle()
+            mRetainedBitmap = null
+            mRetainedCanvas = null
+            surface.release()
+            Looper.myLooper()?.quit()
+        }
+    }
+
+    @Synchronized
+    private fun scheduleFrame() {
+        mRenderHandler?.post {
+            if (mFrameScheduled || !mDrawing) {
+                return@post
+            }
+            Choreographer.getInstance().postFrameCallback(this)
+            mFrameScheduled = true
+        }
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        mFrameScheduled = false
+        if (!mDrawing) {
+            mLastFrameTimeNanos = 0
+            return
+        }
+        val retained = retained
+        // 持续请求垂直同步信号，保留模式下画布没有变化时停止
+        Choreographer.getInstance().postFrameCallback(this)
+        mFrameScheduled = true
+        var frameInterval = 0L
+        var droppedFrames = 0L
+        if (mLastFrameTimeNanos != 0L) {
+            frameInterval = frameTimeNanos - mLastFrameTimeNanos
+            // 允许半个垂直同步周期的误差，避免帧时间的抖动使得本该绘制的帧被跳过
+            val interval = Math.max(mMinFrameIntervalNanos, mVsyncIntervalNanos)
+            val frames = (frameInterval + mVsyncIntervalNanos / 2) / interval
+            if (frames == 0L) {
+                return
+            }
+            droppedFrames = frames - 1
+        }
+        val start = System.nanoTime()
+        val drawn = try {
+            if (retained) drawRetainedFrame() else drawFrame()
+        } catch (e: ScriptInterruptedException) {
+            mDrawing = false
+            false
+        } catch (e: Exception) {
+            mDrawing = false
+            try {
+                mScriptRuntime.exit(e)
+            } catch (ignored: ScriptInterruptedException) {
+                // 绘制线程不是脚本线程，不需要通过异常中断
+            }
+            false
+        }
+        if (!drawn) {
+            // 没有绘制时不计算帧间隔和丢帧，例如保留模式下画布没有变化
+            mLastFrameTimeNanos = 0
+            if (retained) {
+                Choreographer.getInstance().removeFrameCallback(this)
+                mFrameScheduled = false
+            }
+            return
+        }
+        mLastFrameTimeNanos = frameTimeNanos
+        frameStats.onFrameDrawn(System.nanoTime() - start, frameInterval, droppedFrames)
     }
 
-    private fun sleep(dt: Long) {
+    private fun drawFrame(): Boolean {
+        if (!mSurfaceAvailable) {
+            return false
+        }
+        val canvas = lockCanvas() ?: return false
         try {
-            Thread.sleep(dt)
-        } catch (e: InterruptedException) {
-            throw ScriptInterruptedException(e)
+            mScriptCanvas.setCanvas(canvas)
+            emit("draw", mScriptCanvas, this)
+        } finally {
+            unlockCanvasAndPost(canvas)
         }
+        return true
+    }
 
+    private fun drawRetainedFrame(): Boolean {
+        if (!mSurfaceAvailable || width <= 0 || height <= 0) {
+            return false
+        }
+        val dirty = mFrameDirtyRect
+        var bitmap = mRetainedBitmap
+        var scriptCanvas = mRetainedCanvas
+        if (bitmap == null || scriptCanvas == null || bitmap.width != width || bitmap.height != height) {
+            bitmap?.recycle()
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            scriptCanvas = ScriptCanvas(bitmap)
+            mRetainedBitmap = bitmap
+            mRetainedCanvas = scriptCanvas
+            markDirty()
+        }
+        synchronized(mDirtyRect) {
+            if (mFullyDirty) {
+                dirty.set(0, 0, width, height)
+            } else {
+                dirty.set(mDirtyRect)
+                if (!dirty.intersect(0, 0, width, height)) {
+                    mDirtyRect.setEmpty()
+                    return false
+                }
+            }
+            mFullyDirty = false
+            mDirtyRect.setEmpty()
+        }
+        val androidCanvas = scriptCanvas.androidCanvas
+        val saveCount = androidCanvas.save()
+        try {
+            androidCanvas.clipRect(dirty)
+            emit("draw", scriptCanvas, this)
+        } finally {
+            androidCanvas.restoreToCount(saveCount)
+        }
+        // 提交时系统可能扩大dirty区域(例如另一个缓冲区的内容已经过期)，因此绘制整个位图并由画布的裁剪区域限制
+        val canvas: Canvas = lockCanvas(dirty) ?: return false
+        try {
+            canvas.drawBitmap(bitmap, 0f, 0f, mBlitPaint)
+        } finally {
+            unlockCanvasAndPost(canvas)
+        }
+        return true
     }
 
     override fun onWindowVisibilityChanged(visibility: Int) {
-        Log.d(LOG_TAG, "onWindowVisibilityChanged: " + this + ": visibility=" + visibility + ", mDrawingThreadPool=" + mDrawingThreadPool)
+        Log.d(LOG_TAG, "onWindowVisibilityChanged: " + this + ": visibility=" + visibility + ", mRenderThread=" + mRenderThread)
         val oldDrawing = mDrawing
         mDrawing = visibility == View.VISIBLE
         if (!oldDrawing && mDrawing) {
-            performDraw()
+            markDirty()
         }
         super.onWindowVisibilityChanged(visibility)
     }
@@ -149,17 +330,23 @@ class ScriptCanvasView(context: Context, private val mScriptRuntime: ScriptRunti
     }
 
     override fun onSurfaceTextureAvailable(surface: SurfaceTexture, width: Int, height: Int) {
-        performDraw()
+        mSurfaceAvailable = true
+        frameStats.reset()
+        markDirty()
+        startRendering()
         Log.d(LOG_TAG, "onSurfaceTextureAvailable: ${this}, width = $width, height = $height")
     }
 
-    override fun onSurfaceTextureSizeChanged(surface: SurfaceTexture, width: Int, height: Int) {}
+    override fun onSurfaceTextureSizeChanged(surface: SurfaceTexture, width: Int, height: Int) {
+        markDirty()
+    }
 
     override fun onSurfaceTextureDestroyed(surface: SurfaceTexture): Boolean {
-        mDrawing = false
-        mDrawingThreadPool?.shutdown()
+        mSurfaceAvailable = false
+        stopRendering(surface)
         Log.d(LOG_TAG, "onSurfaceTextureDestroyed: ${this}")
-        return true
+        // SurfaceTexture由绘制线程在当前帧结束后释放
+        return false
     }
 
     override fun onSurfaceTextureUpdated(surface: SurfaceTexture) {
@@ -169,6 +356,7 @@ class ScriptCanvasView(context: Context, private val mScriptRuntime: ScriptRunti
     companion object {
 
         private const val LOG_TAG = "ScriptCanvasView"
+        private const val NANOS_PER_SECOND = 1000000000L
 
         fun defaultMaxListeners(): Int {
             return EventEmitter.defaultMaxListeners()
@@ -1,9 +1,12 @@
 package com.stardust.autojs.core.http;
 
+import androidx.annotation.Nullable;
+
 import java.net.SocketTimeoutException;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -11,13 +14,20 @@ import okhttp3.Response;
 
 /**
  * Created by Stardust on 2018/4/11.
+ * <p>
+ * 脚本的http客户端。超时、重试次数等设置只属于这个脚本，实际的客户端由共享的基础客户端通过newBuilder()得到，
+ * 与其共享连接池和线程池。
  */
 
-public class MutableOkHttp extends OkHttpClient {
+public class MutableOkHttp {
 
-    private OkHttpClient mOkHttpClient;
-    private int mMaxRetries = 3;
-    private long mTimeout = 30 * 1000;
+    private final OkHttpClient mBaseClient;
+    @Nullable
+    private final Cache mCache;
+    private volatile OkHttpClient mOkHttpClient;
+    private volatile int mMaxRetries = 3;
+    private volatile long mTimeout = 30 * 1000;
+    private volatile boolean mCacheEnabled = false;
     private Interceptor mRetryInterceptor = chain -> {
         Request request = chain.request();
         Response response = null;
@@ -36,23 +46,41 @@ public class MutableOkHttp extends OkHttpClient {
             if (succeed || tryCount >= getMaxRetries()) {
                 return response;
             }
+            // 重试前关闭失败的响应，否则它占用的连接不能被复用
+            if (response != null) {
+                response.close();
+                response = null;
+            }
             tryCount++;
         } while (true);
     };
 
     public MutableOkHttp() {
-        mOkHttpClient = newClient(new OkHttpClient.Builder());
+        this(new OkHttpClient(), null);
+    }
+
+    /**
+     * @param baseClient 共享的基础客户端
+     * @param cache      共享的磁盘缓存，通过{@link #setCacheEnabled(boolean)}启用
+     */
+    public MutableOkHttp(OkHttpClient baseClient, @Nullable Cache cache) {
+        mBaseClient = baseClient;
+        mCache = cache;
+        mOkHttpClient = newClient(baseClient.newBuilder());
     }
 
     public OkHttpClient client() {
         return mOkHttpClient;
     }
 
-    protected OkHttpClient newClient(Builder builder) {
+    protected OkHttpClient newClient(OkHttpClient.Builder builder) {
         builder.readTimeout(getTimeout(), TimeUnit.MILLISECONDS)
                 .writeTimeout(getTimeout(), TimeUnit.MILLISECONDS)
-                .connectTimeout(getTimeout(), TimeUnit.MILLISECONDS);
+                .connectTimeout(getTimeout(), TimeUnit.MILLISECONDS)
+                .cache(mCacheEnabled ? mCache : null);
         for (Interceptor interceptor : getInterceptors()) {
+            // builder可能来自client().newBuilder()，其中已经有这些拦截器
+            builder.interceptors().remove(interceptor);
             builder.addInterceptor(interceptor);
         }
         return builder.build();
@@ -74,13 +102,31 @@ public class MutableOkHttp extends OkHttpClient {
         return mTimeout;
     }
 
-
     public void setTimeout(long timeout) {
         mTimeout = timeout;
         muteClient();
     }
 
-    public synchronized void muteClient(Builder builder) {
+    public boolean isCacheAvailable() {
+        return mCache != null;
+    }
+
+    public boolean isCacheEnabled() {
+        return mCacheEnabled;
+    }
+
+    /**
+     * 是否使用共享的磁盘缓存。缓存遵循响应的Cache-Control等首部，默认不启用
+     */
+    public void setCacheEnabled(boolean enabled) {
+        if (enabled && mCache == null) {
+            throw new IllegalStateException("http cache is not available");
+        }
+        mCacheEnabled = enabled;
+        muteClient();
+    }
+
+    public synchronized void muteClient(OkHttpClient.Builder builder) {
         mOkHttpClient = newClient(builder);
     }
 
@@ -0,0 +1,112 @@
+package com.stardust.autojs.core.http;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * 以流的方式读取响应体，不需要把整个响应读入内存。
+ * <p>
+ * 可以在异步请求的回调中使用，读取完毕或不再需要时应调用{@link #close()}释放连接。
+ */
+public class ResponseBodyStream implements Closeable {
+
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+    private final ResponseBody mBody;
+    private final BufferedSource mSource;
+    private byte[] mReadBuffer;
+
+    public ResponseBodyStream(ResponseBody body) {
+        mBody = body;
+        mSource = body.source();
+    }
+
+    /**
+     * @return 响应体的长度，未知时为-1
+     */
+    public long getContentLength() {
+        return mBody.contentLength();
+    }
+
+    /**
+     * 读取数据到buffer的剩余空间中
+     *
+     * @return 读取的字节数，已经读完时为-1
+     */
+    public int read(ByteBuffer buffer) throws IOException {
+        int remaining = buffer.remaining();
+        if (remaining == 0) {
+            return 0;
+        }
+        int n;
+        if (buffer.hasArray()) {
+            n = mSource.read(buffer.array(), buffer.arrayOffset() + buffer.position(), remaining);
+            if (n > 0) {
+                buffer.position(buffer.position() + n);
+            }
+        } else {
+            byte[] readBuffer = mReadBuffer;
+            if (readBuffer == null) {
+                readBuffer = mReadBuffer = new byte[DEFAULT_CHUNK_SIZE];
+            }
+            n = mSource.read(readBuffer, 0, Math.min(remaining, readBuffer.length));
+            if (n > 0) {
+                buffer.put(readBuffer, 0, n);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 读取至多maxBytes个字节
+     *
+     * @return 可以直接读取的ByteBuffer，已经读完时为null
+     */
+    @Nullable
+    public ByteBuffer readChunk(int maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes = " + maxBytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(maxBytes);
+        int n = read(buffer);
+        if (n < 0) {
+            return null;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Nullable
+    public ByteBuffer readChunk() throws IOException {
+        return readChunk(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 把剩余的响应体写入文件并关闭流
+     *
+     * @return 写入的字节数
+     */
+    public long transferTo(File file) throws IOException {
+        BufferedSink sink = Okio.buffer(Okio.sink(file));
+        try {
+            return mSource.readAll(sink);
+        } finally {
+            sink.close();
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        mBody.close();
+    }
+}
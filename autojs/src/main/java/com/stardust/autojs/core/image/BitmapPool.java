@@ -0,0 +1,76 @@
+package com.stardust.autojs.core.image;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * 一个有界的Bitmap复用池，用于截图时复用像素缓冲区，避免每一帧都分配一个全屏大小的Bitmap。
+ */
+public class BitmapPool {
+
+    public static final int DEFAULT_MAX_SIZE = 3;
+
+    private final ArrayDeque<Bitmap> mBitmaps = new ArrayDeque<>();
+    private final int mMaxSize;
+
+    public BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    public BitmapPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * 获取一个指定宽高的可变ARGB_8888 Bitmap。如果池中有尺寸相同的Bitmap则复用，否则新建一个。
+     * 复用的Bitmap内容是未定义的，调用者需要自行覆盖全部像素。
+     */
+    public Bitmap obtain(int width, int height) {
+        synchronized (mBitmaps) {
+            Iterator<Bitmap> iterator = mBitmaps.iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    iterator.remove();
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 把Bitmap放回池中。如果池已满，则丢弃最早放入的Bitmap。
+     */
+    public void recycle(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+        Bitmap evicted = null;
+        synchronized (mBitmaps) {
+            mBitmaps.addLast(bitmap);
+            if (mBitmaps.size() > mMaxSize) {
+                evicted = mBitmaps.removeFirst();
+            }
+        }
+        if (evicted != null) {
+            evicted.recycle();
+        }
+    }
+
+    public void clear() {
+        synchronized (mBitmaps) {
+            for (Bitmap bitmap : mBitmaps) {
+                bitmap.recycle();
+            }
+            mBitmaps.clear();
+        }
+    }
+
+}
@@ -36,6 +36,21 @@ public interface ColorDetector {
         }
     }
 
+    class RangeDetector extends AbstractColorDetector {
+
+        private final int mThreshold;
+
+        public RangeDetector(int color, int threshold) {
+            super(color);
+            mThreshold = threshold;
+        }
+
+        @Override
+        public boolean detectsColor(int R, int G, int B) {
+            return Math.abs(R - mR) <= mThreshold && Math.abs(G - mG) <= mThreshold && Math.abs(B - mB) <= mThreshold;
+        }
+    }
+
     class DifferenceDetector extends AbstractColorDetector {
 
         private final int mThreshold;
@@ -137,12 +152,15 @@ public interface ColorDetector {
                 min = Math.min(R, B);
                 max = Math.max(G, B);
             }
-            if (R == max) {
-                H = (G - B) / (max - min) * 60;
+            if (max == min) {
+                // 灰色没有色相
+                H = 0;
+            } else if (R == max) {
+                H = (G - B) * 60 / (max - min);
             } else if (G == max) {
-                H = 120 + (B - R) / (max - min) * 60;
+                H = 120 + (B - R) * 60 / (max - min);
             } else {
-                H = 240 + (R - G) / (max - min) * 60;
+                H = 240 + (R - G) * 60 / (max - min);
             }
             if (H < 0) H = H + 360;
             return H;
@@ -163,7 +181,7 @@ public interface ColorDetector {
         }
 
         public HSDistanceDetector(int color, float similarity) {
-            this(color, (int) (1.0f - similarity) * 255);
+            this(color, (int) ((1.0f - similarity) * 255));
         }
 
         @Override
@@ -183,16 +201,18 @@ public interface ColorDetector {
                 min = Math.min(R, B);
                 max = Math.max(G, B);
             }
-            if (R == max) {
-                H = (G - B) / (max - min) * 60;
+            if (max == min) {
+                H = 0;
+            } else if (R == max) {
+                H = (G - B) * 60 / (max - min);
             } else if (G == max) {
-                H = 120 + (B - R) / (max - min) * 60;
+                H = 120 + (B - R) * 60 / (max - min);
             } else {
-                H = 240 + (R - G) / (max - min) * 60;
+                H = 240 + (R - G) * 60 / (max - min);
             }
             if (H < 0) H = H + 360;
-            int S = (max - min) * 100 / max;
-            return H & ((long) S << 32);
+            int S = max == 0 ? 0 : (max - min) * 100 / max;
+            return (H & 0xffffffffL) | ((long) S << 32);
         }
     }
 
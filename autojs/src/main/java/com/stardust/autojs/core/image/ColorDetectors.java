@@ -0,0 +1,35 @@
+package com.stardust.autojs.core.image;
+
+/**
+ * 根据算法名称创建{@link ColorDetector}，名称与脚本中images模块的algorithm参数一致。
+ */
+public class ColorDetectors {
+
+    public static final String ALGORITHM_EQUAL = "equal";
+    public static final String ALGORITHM_DIFF = "diff";
+    public static final String ALGORITHM_RANGE = "range";
+    public static final String ALGORITHM_RGB = "rgb";
+    public static final String ALGORITHM_WEIGHTED_RGB = "rgb+";
+    public static final String ALGORITHM_H = "h";
+    public static final String ALGORITHM_HS = "hs";
+
+    public static ColorDetector create(String algorithm, int color, int threshold) {
+        switch (algorithm) {
+            case ALGORITHM_EQUAL:
+                return new ColorDetector.EqualityDetector(color);
+            case ALGORITHM_DIFF:
+                return new ColorDetector.DifferenceDetector(color, threshold);
+            case ALGORITHM_RANGE:
+                return new ColorDetector.RangeDetector(color, threshold);
+            case ALGORITHM_RGB:
+                return new ColorDetector.RGBDistanceDetector(color, threshold);
+            case ALGORITHM_WEIGHTED_RGB:
+                return new ColorDetector.WeightedRGBDistanceDetector(color, threshold);
+            case ALGORITHM_H:
+                return new ColorDetector.HDistanceDetector(color, threshold);
+            case ALGORITHM_HS:
+                return new ColorDetector.HSDistanceDetector(color, threshold);
+        }
+        throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+    }
+}
@@ -2,6 +2,7 @@ package com.stardust.autojs.core.image;
 
 import android.graphics.Color;
 import android.os.Build;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import com.stardust.autojs.core.opencv.MatOfPoint;
@@ -9,12 +10,17 @@ import com.stardust.autojs.core.opencv.OpenCVHelper;
 import com.stardust.util.ScreenMetrics;
 
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 
 import com.stardust.autojs.core.opencv.Mat;
 
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Stardust on 2017/5/18.
@@ -24,6 +30,8 @@ import org.opencv.core.Scalar;
 public class ColorFinder {
 
     private ScreenMetrics mScreenMetrics;
+    private Mat mChannelSumKernel;
+    private final ThreadLocal<int[]> mPixelBuffer = new ThreadLocal<>();
 
     public ColorFinder(ScreenMetrics screenMetrics) {
         mScreenMetrics = screenMetrics;
@@ -42,27 +50,50 @@ public class ColorFinder {
     }
 
     public Point findColor(ImageWrapper image, int color, int threshold, Rect rect) {
-        MatOfPoint matOfPoint = findColorInner(image, color, threshold, rect);
-        if (matOfPoint == null) {
+        return findColor(image, color, threshold, rect, ColorDetectors.ALGORITHM_RANGE);
+    }
+
+    /**
+     * 在图片中按从上到下、从左到右的顺序查找第一个与color相似的点。
+     *
+     * @param algorithm 颜色比较算法，参见{@link ColorDetectors}
+     */
+    public Point findColor(ImageWrapper image, int color, int threshold, Rect rect, String algorithm) {
+        Point point;
+        Mat mask = colorMask(image, color, threshold, rect, algorithm);
+        if (mask != null) {
+            // 二值图中最大值第一次出现的位置就是按扫描顺序的第一个匹配点，不需要像findNonZero那样取出所有匹配点
+            Core.MinMaxLocResult mmr = Core.minMaxLoc(mask);
+            point = mmr.maxVal > 0 ? mmr.maxLoc : null;
+            OpenCVHelper.release(mask);
+        } else {
+            point = findColorByDetector(image, ColorDetectors.create(algorithm, color, threshold), rect, null);
+        }
+        if (point == null) {
             return null;
         }
-        Point point = matOfPoint.toArray()[0];
         if (rect != null) {
             point.x = mScreenMetrics.scaleX((int) (point.x + rect.x));
             point.y = mScreenMetrics.scaleX((int) (point.y + rect.y));
         }
-        OpenCVHelper.release(matOfPoint);
         return point;
     }
 
     public Point[] findAllPointsForColor(ImageWrapper image, int color, int threshold, Rect rect) {
+        return findAllPointsForColor(image, color, threshold, rect, ColorDetectors.ALGORITHM_RANGE);
+    }
 
-        MatOfPoint matOfPoint = findColorInner(image, color, threshold, rect);
-        if (matOfPoint == null) {
-            return new Point[0];
+    public Point[] findAllPointsForColor(ImageWrapper image, int color, int threshold, Rect rect, String algorithm) {
+        Point[] points;
+        Mat mask = colorMask(image, color, threshold, rect, algorithm);
+        if (mask != null) {
+            points = findNonZero(mask);
+            OpenCVHelper.release(mask);
+        } else {
+            List<Point> list = new ArrayList<>();
+            findColorByDetector(image, ColorDetectors.create(algorithm, color, threshold), rect, list);
+            points = list.toArray(new Point[0]);
         }
-        Point[] points = matOfPoint.toArray();
-        OpenCVHelper.release(matOfPoint);
         if (rect != null) {
             for (int i = 0; i < points.length; i++) {
                 points[i].x = mScreenMetrics.scaleX((int) (points[i].x + rect.x));
@@ -72,62 +103,137 @@ public class ColorFinder {
         return points;
     }
 
-    private MatOfPoint findColorInner(ImageWrapper image, int color, int threshold, Rect rect) {
+    /**
+     * 用OpenCV对整张图片(或区域)计算颜色匹配的二值图。对于无法用矩阵运算表示的算法返回null。
+     */
+    @Nullable
+    private Mat colorMask(ImageWrapper image, int color, int threshold, Rect rect, String algorithm) {
+        switch (algorithm) {
+            case ColorDetectors.ALGORITHM_EQUAL:
+                threshold = 0;
+            case ColorDetectors.ALGORITHM_RANGE:
+                break;
+            case ColorDetectors.ALGORITHM_DIFF:
+                // 各通道差值之和用8位通道计算，阈值达到255时会因饱和而出错，交由逐像素比较处理
+                if (threshold * 3 >= 255) {
+                    return null;
+                }
+                break;
+            default:
+                return null;
+        }
+        Mat src = rect == null ? image.getMat() : new Mat(image.getMat(), rect);
         Mat bi = new Mat();
-        Scalar lowerBound = new Scalar(Color.red(color) - threshold, Color.green(color) - threshold,
-                Color.blue(color) - threshold, 255);
-        Scalar upperBound = new Scalar(Color.red(color) + threshold, Color.green(color) + threshold,
-                Color.blue(color) + threshold, 255);
-        if (rect != null) {
-            Mat m = new Mat(image.getMat(), rect);
-            Core.inRange(m, lowerBound, upperBound, bi);
-            OpenCVHelper.release(m);
+        if (algorithm.equals(ColorDetectors.ALGORITHM_DIFF)) {
+            Mat diff = new Mat();
+            Core.absdiff(src, new Scalar(Color.red(color), Color.green(color), Color.blue(color), 255), diff);
+            Mat sum = new Mat();
+            Core.transform(diff, sum, getChannelSumKernel());
+            Imgproc.threshold(sum, bi, threshold * 3, 255, Imgproc.THRESH_BINARY_INV);
+            OpenCVHelper.release(diff);
+            OpenCVHelper.release(sum);
         } else {
-            Core.inRange(image.getMat(), lowerBound, upperBound, bi);
+            Scalar lowerBound = new Scalar(Color.red(color) - threshold, Color.green(color) - threshold,
+                    Color.blue(color) - threshold, 255);
+            Scalar upperBound = new Scalar(Color.red(color) + threshold, Color.green(color) + threshold,
+                    Color.blue(color) + threshold, 255);
+            Core.inRange(src, lowerBound, upperBound, bi);
+        }
+        if (src != image.getMat()) {
+            OpenCVHelper.release(src);
+        }
+        return bi;
+    }
+
+    private synchronized Mat getChannelSumKernel() {
+        // 不能在静态初始化时创建，此时OpenCV可能还没有初始化
+        if (mChannelSumKernel == null) {
+            mChannelSumKernel = new Mat(1, 4, CvType.CV_32FC1);
+            mChannelSumKernel.put(0, 0, 1, 1, 1, 0);
         }
+        return mChannelSumKernel;
+    }
+
+    private Point[] findNonZero(Mat bi) {
         Mat nonZeroPos = new Mat();
         Core.findNonZero(bi, nonZeroPos);
-        MatOfPoint result;
+        Point[] points;
         if (nonZeroPos.rows() == 0 || nonZeroPos.cols() == 0) {
-            result = null;
+            points = new Point[0];
         } else {
-            result = OpenCVHelper.newMatOfPoint(nonZeroPos);
+            MatOfPoint matOfPoint = OpenCVHelper.newMatOfPoint(nonZeroPos);
+            points = matOfPoint.toArray();
+            OpenCVHelper.release(matOfPoint);
         }
-        OpenCVHelper.release(bi);
         OpenCVHelper.release(nonZeroPos);
-        return result;
+        return points;
     }
 
-    public Point findMultiColors(ImageWrapper image, int firstColor, int threshold, Rect rect, int[] points) {
-        Point[] firstPoints = findAllPointsForColor(image, firstColor, threshold, rect);
-        for (Point firstPoint : firstPoints) {
-            if (firstPoint == null)
-                continue;
-            if (checksPath(image, firstPoint, threshold, rect, points)) {
-                return firstPoint;
+    /**
+     * 把图片(或区域)的像素读取到数组后逐个比较。outPoints为null时返回第一个匹配点，否则把所有匹配点加入outPoints。
+     * 返回的坐标相对于rect。
+     */
+    private Point findColorByDetector(ImageWrapper image, ColorDetector detector, Rect rect, @Nullable List<Point> outPoints) {
+        Rect region = rect == null ? new Rect(0, 0, image.getWidth(), image.getHeight()) : rect;
+        int size = region.width * region.height;
+        int[] pixels = obtainPixelBuffer(size);
+        image.getPixels(pixels, region.x, region.y, region.width, region.height);
+        for (int i = 0; i < size; i++) {
+            int c = pixels[i];
+            if (detector.detectsColor((c >> 16) & 0xff, (c >> 8) & 0xff, c & 0xff)) {
+                Point point = new Point(i % region.width, i / region.width);
+                if (outPoints == null) {
+                    return point;
+                }
+                outPoints.add(point);
             }
         }
         return null;
     }
 
-    private boolean checksPath(ImageWrapper image, Point startingPoint, int threshold, Rect rect, int[] points) {
-        for (int i = 0; i < points.length; i += 3) {
-            int x = points[i];
-            int y = points[i + 1];
-            int color = points[i + 2];
-            ColorDetector colorDetector = new ColorDetector.DifferenceDetector(color, threshold);
-            x += startingPoint.x;
-            y += startingPoint.y;
-            if (x >= image.getWidth() || y >= image.getHeight()
-                    || x < 0 || y < 0) {
-                return false;
-            }
-            int c = image.pixel(x, y);
-            if (!colorDetector.detectsColor(Color.red(c), Color.green(c), Color.blue(c))) {
-                return false;
-            }
+    public Point findMultiColors(ImageWrapper image, int firstColor, int threshold, Rect rect, int[] points) {
+        // 与findColor一致，第一个点按每个通道的差值判断，其他点按差值之和判断
+        MultiColorPattern pattern = MultiColorPattern.compile(new ColorDetector.RangeDetector(firstColor, threshold),
+                points, ColorDetectors.ALGORITHM_DIFF, threshold);
+        return findMultiColors(image, pattern, rect, MultiColorPattern.ORDER_ROW_MAJOR, false);
+    }
+
+    public Point findMultiColors(ImageWrapper image, int firstColor, int threshold, Rect rect, int[] points,
+                                 String algorithm, int order, boolean parallel) {
+        MultiColorPattern pattern = MultiColorPattern.compile(firstColor, points, algorithm, threshold);
+        return findMultiColors(image, pattern, rect, order, parallel);
+    }
+
+    public Point findMultiColors(ImageWrapper image, MultiColorPattern pattern, Rect rect, int order, boolean parallel) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Rect region = rect == null ? new Rect(0, 0, width, height) : rect;
+        // 只读取起始点范围加上各点偏移所覆盖的像素
+        Rect area = pattern.getRequiredArea(region, width, height);
+        if (area.width == 0 || area.height == 0) {
+            return null;
+        }
+        int[] pixels = obtainPixelBuffer(area.width * area.height);
+        image.getPixels(pixels, area.x, area.y, area.width, area.height);
+        Rect regionInArea = new Rect(region.x - area.x, region.y - area.y, region.width, region.height);
+        int index = pattern.find(pixels, area.width, area.height, regionInArea, order, parallel);
+        if (index < 0) {
+            return null;
+        }
+        Point point = new Point(index % area.width + area.x, index / area.width + area.y);
+        if (rect != null) {
+            point.x = mScreenMetrics.scaleX((int) point.x);
+            point.y = mScreenMetrics.scaleX((int) point.y);
+        }
+        return point;
+    }
 
+    private int[] obtainPixelBuffer(int size) {
+        int[] pixels = mPixelBuffer.get();
+        if (pixels == null || pixels.length < size) {
+            pixels = new int[size];
+            mPixelBuffer.set(pixels);
         }
-        return true;
+        return pixels;
     }
-}
\ No newline at end of file
+}
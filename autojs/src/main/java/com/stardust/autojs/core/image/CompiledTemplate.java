@@ -0,0 +1,90 @@
+package com.stardust.autojs.core.image;
+
+import com.stardust.autojs.core.opencv.Mat;
+import com.stardust.autojs.core.opencv.OpenCVHelper;
+
+import org.opencv.core.Core;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+/**
+ * 预处理过的模板图片。除了金字塔各层及其灰度图之外，还缓存了由透明通道得到的掩码，
+ * 用于支持掩码的匹配算法(TM_SQDIFF和TM_CCORR_NORMED)。
+ */
+public class CompiledTemplate extends ImagePyramid {
+
+    private final Mat[] mMasks = new Mat[MAX_LEVEL + 1];
+    private final Mat[] mGrayMasks = new Mat[MAX_LEVEL + 1];
+    private Boolean mHasTransparency;
+
+    public CompiledTemplate(Mat mat, boolean ownsMat) {
+        super(mat, ownsMat);
+    }
+
+    public synchronized boolean hasTransparency() {
+        if (mHasTransparency == null) {
+            Mat mat = getMat();
+            if (mat.channels() != 4) {
+                mHasTransparency = false;
+            } else {
+                Mat alpha = new Mat();
+                Core.extractChannel(mat, alpha, 3);
+                mHasTransparency = Core.minMaxLoc(alpha).minVal < 255;
+                OpenCVHelper.release(alpha);
+            }
+        }
+        return mHasTransparency;
+    }
+
+    /**
+     * @return 第level层的掩码，与{@link #getLevel(int)}或{@link #getGrayLevel(int)}的类型相同；模板没有透明像素时返回null
+     */
+    public synchronized Mat getMask(int level, boolean gray) {
+        checkLevel(level);
+        if (!hasTransparency()) {
+            return null;
+        }
+        Mat[] masks = gray ? mGrayMasks : mMasks;
+        Mat mask = masks[level];
+        if (mask == null) {
+            Mat alpha = new Mat();
+            Core.extractChannel(getLevel(level), alpha, 3);
+            Imgproc.threshold(alpha, alpha, 0, 255, Imgproc.THRESH_BINARY);
+            if (gray) {
+                mask = alpha;
+            } else {
+                mask = new Mat();
+                Core.merge(Arrays.<org.opencv.core.Mat>asList(alpha, alpha, alpha, alpha), mask);
+                OpenCVHelper.release(alpha);
+            }
+            masks[level] = mask;
+        }
+        return mask;
+    }
+
+    @Override
+    public synchronized long getByteCount() {
+        long bytes = super.getByteCount();
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            if (mMasks[i] != null) {
+                bytes += mMasks[i].total() * mMasks[i].elemSize();
+            }
+            if (mGrayMasks[i] != null) {
+                bytes += mGrayMasks[i].total() * mGrayMasks[i].elemSize();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void onRelease() {
+        super.onRelease();
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            OpenCVHelper.release(mMasks[i]);
+            OpenCVHelper.release(mGrayMasks[i]);
+            mMasks[i] = null;
+            mGrayMasks[i] = null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.stardust.autojs.core.image;
+
+import androidx.annotation.Nullable;
+
+import com.stardust.autojs.core.opencv.Mat;
+import com.stardust.autojs.core.opencv.MatOfPoint;
+import com.stardust.autojs.core.opencv.OpenCVHelper;
+
+import org.opencv.core.Core;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 比较连续两帧图片，计算发生变化的矩形区域。用于轮询截图时在画面没有变化的情况下跳过找图找色。
+ */
+public class DirtyRegionDetector {
+
+    private Mat mPrevious;
+    private Mat mDiff;
+
+    /**
+     * 与上一次传入的图片比较，并记住本次的图片。
+     *
+     * @return 发生变化的像素的外接矩形(相对于图片)；如果没有变化则返回null。第一次调用时返回整张图片的范围。
+     */
+    @Nullable
+    public synchronized Rect update(Mat current) {
+        if (mPrevious == null || mPrevious.rows() != current.rows() || mPrevious.cols() != current.cols()
+                || mPrevious.type() != current.type()) {
+            OpenCVHelper.release(mPrevious);
+            mPrevious = current.clone();
+            return new Rect(0, 0, current.cols(), current.rows());
+        }
+        if (mDiff == null) {
+            mDiff = new Mat();
+        }
+        Core.absdiff(current, mPrevious, mDiff);
+        current.copyTo(mPrevious);
+        // 把多通道展开成单通道，任何一个通道有差异都算作变化
+        int channels = mDiff.channels();
+        org.opencv.core.Mat singleChannel = mDiff.reshape(1);
+        Mat nonZero = new Mat();
+        Core.findNonZero(singleChannel, nonZero);
+        singleChannel.release();
+        if (nonZero.rows() == 0) {
+            OpenCVHelper.release(nonZero);
+            return null;
+        }
+        MatOfPoint points = OpenCVHelper.newMatOfPoint(nonZero);
+        Rect r = Imgproc.boundingRect(points);
+        OpenCVHelper.release(points);
+        OpenCVHelper.release(nonZero);
+        int left = r.x / channels;
+        int right = (r.x + r.width - 1) / channels;
+        return new Rect(left, r.y, right - left + 1, r.height);
+    }
+
+    public synchronized void reset() {
+        OpenCVHelper.release(mPrevious);
+        OpenCVHelper.release(mDiff);
+        mPrevious = null;
+        mDiff = null;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.stardust.autojs.core.image;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图像处理共用的线程池，线程数与CPU核数相同。
+ */
+public class ImageExecutors {
+
+    private static final int THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static volatile ExecutorService sExecutor;
+
+    public static ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            synchronized (ImageExecutors.class) {
+                if (sExecutor == null) {
+                    AtomicInteger threadId = new AtomicInteger();
+                    sExecutor = Executors.newFixedThreadPool(THREAD_COUNT, r -> {
+                        Thread thread = new Thread(r, "ImageWorker-" + threadId.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return sExecutor;
+    }
+
+    public static int getThreadCount() {
+        return THREAD_COUNT;
+    }
+}
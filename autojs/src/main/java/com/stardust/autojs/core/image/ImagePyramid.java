@@ -0,0 +1,139 @@
+package com.stardust.autojs.core.image;
+
+import com.stardust.autojs.core.opencv.Mat;
+import com.stardust.autojs.core.opencv.OpenCVHelper;
+
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 图像金字塔，按需计算并缓存每一层缩小后的图片及其灰度图，供多次模板匹配复用。
+ * <p>
+ * 使用引用计数管理底层的Mat：创建时引用计数为1，{@link #retain()}增加引用，{@link #recycle()}减少引用，
+ * 引用计数为0时释放所有缓存的Mat。第0层为传入的Mat，只有ownsMat为true时才会被释放。
+ */
+public class ImagePyramid {
+
+    protected static final int MAX_LEVEL = 31;
+
+    private final Mat mMat;
+    private final boolean mOwnsMat;
+    private final Mat[] mLevels = new Mat[MAX_LEVEL + 1];
+    private final Mat[] mGrayLevels = new Mat[MAX_LEVEL + 1];
+    private int mReferenceCount = 1;
+    private boolean mReleased = false;
+
+    public ImagePyramid(Mat mat, boolean ownsMat) {
+        mMat = mat;
+        mOwnsMat = ownsMat;
+        mLevels[0] = mat;
+    }
+
+    public Mat getMat() {
+        return mMat;
+    }
+
+    public int rows() {
+        return mMat.rows();
+    }
+
+    public int cols() {
+        return mMat.cols();
+    }
+
+    public synchronized Mat getLevel(int level) {
+        ensureNotReleased();
+        checkLevel(level);
+        Mat m = mLevels[level];
+        if (m == null) {
+            int cols = mMat.cols();
+            int rows = mMat.rows();
+            for (int i = 0; i < level; i++) {
+                cols = (cols + 1) / 2;
+                rows = (rows + 1) / 2;
+            }
+            m = new Mat(rows, cols, mMat.type());
+            Imgproc.resize(mMat, m, new Size(cols, rows));
+            mLevels[level] = m;
+        }
+        return m;
+    }
+
+    public synchronized Mat getGrayLevel(int level) {
+        ensureNotReleased();
+        checkLevel(level);
+        Mat gray = mGrayLevels[level];
+        if (gray == null) {
+            Mat m = getLevel(level);
+            if (m.channels() == 1) {
+                gray = m;
+            } else {
+                gray = new Mat();
+                Imgproc.cvtColor(m, gray, m.channels() == 4 ? Imgproc.COLOR_RGBA2GRAY : Imgproc.COLOR_RGB2GRAY);
+            }
+            mGrayLevels[level] = gray;
+        }
+        return gray;
+    }
+
+    /**
+     * @return 已缓存的所有Mat占用的字节数，包括第0层(即使它不属于本对象，也随本对象的缓存而存活)
+     */
+    public synchronized long getByteCount() {
+        long bytes = 0;
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            if (mLevels[i] != null) {
+                bytes += mLevels[i].total() * mLevels[i].elemSize();
+            }
+            if (mGrayLevels[i] != null && mGrayLevels[i] != mLevels[i]) {
+                bytes += mGrayLevels[i].total() * mGrayLevels[i].elemSize();
+            }
+        }
+        return bytes;
+    }
+
+    public synchronized void retain() {
+        ensureNotReleased();
+        mReferenceCount++;
+    }
+
+    public synchronized void recycle() {
+        if (mReleased) {
+            return;
+        }
+        mReferenceCount--;
+        if (mReferenceCount <= 0) {
+            onRelease();
+            mReleased = true;
+        }
+    }
+
+    protected void onRelease() {
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            if (mGrayLevels[i] != null && mGrayLevels[i] != mLevels[i]) {
+                OpenCVHelper.release(mGrayLevels[i]);
+            }
+            if (mLevels[i] != null && (i != 0 || mOwnsMat)) {
+                OpenCVHelper.release(mLevels[i]);
+            }
+            mGrayLevels[i] = null;
+            mLevels[i] = null;
+        }
+    }
+
+    public synchronized boolean isReleased() {
+        return mReleased;
+    }
+
+    protected static void checkLevel(int level) {
+        if (level < 0 || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("level = " + level);
+        }
+    }
+
+    private void ensureNotReleased() {
+        if (mReleased) {
+            throw new IllegalStateException("pyramid has been released");
+        }
+    }
+}
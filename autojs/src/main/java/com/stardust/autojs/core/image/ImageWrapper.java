@@ -1,7 +1,11 @@
 package com.stardust.autojs.core.image;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 import android.media.Image;
 import android.os.Build;
 
@@ -10,12 +14,16 @@ import com.stardust.autojs.core.opencv.OpenCVHelper;
 import com.stardust.pio.UncheckedIOException;
 
 import org.opencv.android.Utils;
+import org.opencv.core.CvType;
+import org.opencv.core.Rect;
 import org.opencv.imgcodecs.Imgcodecs;
 
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 /**
@@ -23,10 +31,26 @@ import androidx.annotation.RequiresApi;
  */
 public class ImageWrapper {
 
+    public interface OnRecycleListener {
+
+        /**
+         * 在图片被回收之前调用，此时图片的Mat仍然有效
+         */
+        void onRecycle(ImageWrapper image);
+    }
+
+    private static final Paint COPY_PAINT = new Paint();
+
+    static {
+        COPY_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
     private Mat mMat;
     private int mWidth;
     private int mHeight;
     private Bitmap mBitmap;
+    private BitmapPool mBitmapPool;
+    private ArrayList<OnRecycleListener> mOnRecycleListeners;
 
     protected ImageWrapper(Mat mat) {
         mMat = mat;
@@ -60,6 +84,19 @@ public class ImageWrapper {
         return new ImageWrapper(toBitmap(image));
     }
 
+    /**
+     * 从Image创建ImageWrapper，像素缓冲区从bitmapPool中获取，并在{@link #recycle()}时归还。
+     */
+    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+    public static ImageWrapper ofImage(Image image, BitmapPool bitmapPool) {
+        if (image == null) {
+            return null;
+        }
+        ImageWrapper wrapper = new ImageWrapper(toBitmap(image, bitmapPool));
+        wrapper.mBitmapPool = bitmapPool;
+        return wrapper;
+    }
+
     public static ImageWrapper ofMat(Mat mat) {
         if (mat == null) {
             return null;
@@ -77,17 +114,74 @@ public class ImageWrapper {
 
     @RequiresApi(api = Build.VERSION_CODES.KITKAT)
     public static Bitmap toBitmap(Image image) {
+        return toBitmap(image, null);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+    public static Bitmap toBitmap(Image image, BitmapPool bitmapPool) {
         Image.Plane plane = image.getPlanes()[0];
         ByteBuffer buffer = plane.getBuffer();
         buffer.position(0);
         int pixelStride = plane.getPixelStride();
         int rowPadding = plane.getRowStride() - pixelStride * image.getWidth();
-        Bitmap bitmap = Bitmap.createBitmap(image.getWidth() + rowPadding / pixelStride, image.getHeight(), Bitmap.Config.ARGB_8888);
+        int bitmapWidth = image.getWidth() + rowPadding / pixelStride;
+        Bitmap bitmap = bitmapPool == null ? Bitmap.createBitmap(bitmapWidth, image.getHeight(), Bitmap.Config.ARGB_8888)
+                : bitmapPool.obtain(bitmapWidth, image.getHeight());
         bitmap.copyPixelsFromBuffer(buffer);
         if (rowPadding == 0) {
             return bitmap;
         }
-        return Bitmap.createBitmap(bitmap, 0, 0, image.getWidth(), image.getHeight());
+        if (bitmapPool == null) {
+            return Bitmap.createBitmap(bitmap, 0, 0, image.getWidth(), image.getHeight());
+        }
+        // 把带有行填充的Bitmap裁剪到池中的另一个Bitmap，而不是每次都新建一个
+        Bitmap cropped = bitmapPool.obtain(image.getWidth(), image.getHeight());
+        new Canvas(cropped).drawBitmap(bitmap, 0, 0, COPY_PAINT);
+        bitmapPool.recycle(bitmap);
+        return cropped;
+    }
+
+    /**
+     * 把Image的像素直接复制到Mat，不经过Bitmap。Mat的格式与{@link Utils#bitmapToMat(Bitmap, org.opencv.core.Mat)}
+     * 得到的相同(CV_8UC4, RGBA)，整个过程只有一次复制。调用前需要确保OpenCV已初始化。
+     */
+    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+    public static Mat toMat(Image image) {
+        return toMat(image, null);
+    }
+
+    /**
+     * 只把Image中region范围内的像素复制到Mat。
+     *
+     * @param region 要复制的区域，为null时复制整个画面
+     */
+    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+    public static Mat toMat(Image image, @Nullable Rect region) {
+        if (region != null && (region.x < 0 || region.y < 0 || region.width <= 0 || region.height <= 0
+                || region.x + region.width > image.getWidth() || region.y + region.height > image.getHeight())) {
+            throw new IllegalArgumentException("out of region: region = " + region + ", image.size = ["
+                    + image.getWidth() + ", " + image.getHeight() + "]");
+        }
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer buffer = plane.getBuffer();
+        buffer.position(0);
+        int strideWidth = plane.getRowStride() / plane.getPixelStride();
+        // 直接包装Image的缓冲区，不复制数据
+        Mat planeMat = new Mat(image.getHeight(), strideWidth, CvType.CV_8UC4, buffer);
+        if (region == null && strideWidth == image.getWidth()) {
+            Mat mat = planeMat.clone();
+            OpenCVHelper.release(planeMat);
+            return mat;
+        }
+        // 只复制每行中需要的部分，行填充和区域外的像素都会被跳过
+        if (region == null) {
+            region = new Rect(0, 0, image.getWidth(), image.getHeight());
+        }
+        Mat roi = new Mat(planeMat, region);
+        Mat mat = roi.clone();
+        OpenCVHelper.release(roi);
+        OpenCVHelper.release(planeMat);
+        return mat;
     }
 
     public int getWidth() {
@@ -112,25 +206,53 @@ public class ImageWrapper {
     public void saveTo(String path) {
         ensureNotRecycled();
         if (mBitmap != null) {
-            try {
-                mBitmap.compress(Bitmap.CompressFormat.PNG, 100, new FileOutputStream(path));
-            } catch (FileNotFoundException e) {
-                throw new UncheckedIOException(e);
-            }
+            saveBitmap(mBitmap, path);
+        } else if (mMat.type() == CvType.CV_8UC4) {
+            // Mat中的4通道图片都是RGBA格式的，而imwrite要求BGRA
+            saveBitmap(getBitmap(), path);
         } else {
             Imgcodecs.imwrite(path, mMat);
         }
     }
 
+    private static void saveBitmap(Bitmap bitmap, String path) {
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, new FileOutputStream(path));
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public int pixel(int x, int y) {
         ensureNotRecycled();
         if (mBitmap != null) {
             return mBitmap.getPixel(x, y);
         }
-        double[] channels = mMat.get(x, y);
+        double[] channels = mMat.get(y, x);
         return Color.argb((int) channels[3], (int) channels[0], (int) channels[1], (int) channels[2]);
     }
 
+    /**
+     * 把图片中指定区域的像素以ARGB格式逐行读取到pixels中，每行width个像素。
+     */
+    public void getPixels(int[] pixels, int x, int y, int width, int height) {
+        ensureNotRecycled();
+        if (mBitmap != null) {
+            mBitmap.getPixels(pixels, 0, width, x, y, width, height);
+            return;
+        }
+        // Mat中的图片是RGBA格式的，逐行读取后转换为ARGB
+        byte[] row = new byte[width * 4];
+        for (int i = 0; i < height; i++) {
+            mMat.get(y + i, x, row);
+            int offset = i * width;
+            for (int j = 0, k = 0; j < width; j++, k += 4) {
+                pixels[offset + j] = (row[k + 3] & 0xff) << 24 | (row[k] & 0xff) << 16
+                        | (row[k + 1] & 0xff) << 8 | (row[k + 2] & 0xff);
+            }
+        }
+    }
+
     public Bitmap getBitmap() {
         ensureNotRecycled();
         if (mBitmap == null && mMat != null) {
@@ -140,9 +262,37 @@ public class ImageWrapper {
         return mBitmap;
     }
 
+    public synchronized void addOnRecycleListener(OnRecycleListener listener) {
+        if (mOnRecycleListeners == null) {
+            mOnRecycleListeners = new ArrayList<>(1);
+        }
+        mOnRecycleListeners.add(listener);
+    }
+
+    public synchronized void removeOnRecycleListener(OnRecycleListener listener) {
+        if (mOnRecycleListeners != null) {
+            mOnRecycleListeners.remove(listener);
+        }
+    }
+
     public void recycle() {
+        ArrayList<OnRecycleListener> listeners;
+        synchronized (this) {
+            listeners = mOnRecycleListeners;
+            mOnRecycleListeners = null;
+        }
+        if (listeners != null) {
+            for (OnRecycleListener listener : listeners) {
+                listener.onRecycle(this);
+            }
+        }
         if (mBitmap != null) {
-            mBitmap.recycle();
+            if (mBitmapPool != null) {
+                mBitmapPool.recycle(mBitmap);
+                mBitmapPool = null;
+            } else {
+                mBitmap.recycle();
+            }
             mBitmap = null;
         }
         if (mMat != null) {
@@ -152,6 +302,10 @@ public class ImageWrapper {
 
     }
 
+    public boolean isRecycled() {
+        return mBitmap == null && mMat == null;
+    }
+
     public void ensureNotRecycled() {
         if (mBitmap == null && mMat == null)
             throw new IllegalStateException("image has been recycled");
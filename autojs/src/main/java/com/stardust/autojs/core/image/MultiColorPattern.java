@@ -0,0 +1,216 @@
+package com.stardust.autojs.core.image;
+
+import com.stardust.autojs.runtime.exception.ScriptInterruptedException;
+
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预编译的多点找色模式。由第一个点的颜色和其他点相对第一个点的偏移、颜色构成，
+ * 每个点的{@link ColorDetector}只在编译时创建一次，查找时直接在ARGB像素数组上逐点比较，遇到不匹配的点立即跳过。
+ */
+public class MultiColorPattern {
+
+    /**
+     * 从上到下逐行、每行从左到右查找
+     */
+    public static final int ORDER_ROW_MAJOR = 0;
+    /**
+     * 从左到右逐列、每列从上到下查找
+     */
+    public static final int ORDER_COLUMN_MAJOR = 1;
+
+    private static final int NOT_FOUND = -1;
+
+    private final ColorDetector[] mDetectors;
+    private final int[] mDx;
+    private final int[] mDy;
+    private final int mMinDx, mMaxDx, mMinDy, mMaxDy;
+
+    /**
+     * @param detectors 每个点的颜色检测器，第一个为起始点
+     * @param dx        每个点相对起始点的x偏移，dx[0]必须为0
+     * @param dy        每个点相对起始点的y偏移，dy[0]必须为0
+     */
+    public MultiColorPattern(ColorDetector[] detectors, int[] dx, int[] dy) {
+        if (detectors.length == 0 || detectors.length != dx.length || detectors.length != dy.length) {
+            throw new IllegalArgumentException("detectors.length = " + detectors.length + ", dx.length = " + dx.length + ", dy.length = " + dy.length);
+        }
+        mDetectors = detectors;
+        mDx = dx;
+        mDy = dy;
+        int minDx = 0, maxDx = 0, minDy = 0, maxDy = 0;
+        for (int i = 0; i < dx.length; i++) {
+            minDx = Math.min(minDx, dx[i]);
+            maxDx = Math.max(maxDx, dx[i]);
+            minDy = Math.min(minDy, dy[i]);
+            maxDy = Math.max(maxDy, dy[i]);
+        }
+        mMinDx = minDx;
+        mMaxDx = maxDx;
+        mMinDy = minDy;
+        mMaxDy = maxDy;
+    }
+
+    /**
+     * @param firstColor 起始点颜色
+     * @param points     其他点，每三个数为一组，分别为x偏移、y偏移和颜色
+     * @param algorithm  颜色比较算法，参见{@link ColorDetectors}
+     * @param threshold  颜色比较的阈值
+     */
+    public static MultiColorPattern compile(int firstColor, int[] points, String algorithm, int threshold) {
+        return compile(ColorDetectors.create(algorithm, firstColor, threshold), points, algorithm, threshold);
+    }
+
+    public static MultiColorPattern compile(ColorDetector firstColorDetector, int[] points, String algorithm, int threshold) {
+        int count = points.length / 3 + 1;
+        ColorDetector[] detectors = new ColorDetector[count];
+        int[] dx = new int[count];
+        int[] dy = new int[count];
+        detectors[0] = firstColorDetector;
+        for (int i = 1; i < count; i++) {
+            dx[i] = points[(i - 1) * 3];
+            dy[i] = points[(i - 1) * 3 + 1];
+            detectors[i] = ColorDetectors.create(algorithm, points[(i - 1) * 3 + 2], threshold);
+        }
+        return new MultiColorPattern(detectors, dx, dy);
+    }
+
+    /**
+     * 计算在region中查找时需要读取的像素范围，即region向各个方向扩展偏移量后与图片的交集。
+     */
+    public Rect getRequiredArea(Rect region, int imageWidth, int imageHeight) {
+        int left = Math.max(0, region.x + mMinDx);
+        int top = Math.max(0, region.y + mMinDy);
+        int right = Math.min(imageWidth, region.x + region.width + mMaxDx);
+        int bottom = Math.min(imageHeight, region.y + region.height + mMaxDy);
+        return new Rect(left, top, Math.max(0, right - left), Math.max(0, bottom - top));
+    }
+
+    /**
+     * 在像素数组中查找第一个满足所有点的起始点。
+     *
+     * @param pixels   ARGB像素，逐行排列，每行width个像素
+     * @param width    像素数组的宽
+     * @param height   像素数组的高
+     * @param region   起始点的查找范围(相对于像素数组)
+     * @param order    查找顺序，{@link #ORDER_ROW_MAJOR}或{@link #ORDER_COLUMN_MAJOR}，决定有多个匹配时返回哪一个
+     * @param parallel 是否把查找范围拆分到多个线程中执行
+     * @return 起始点在像素数组中的下标(y * width + x)，找不到则返回-1
+     */
+    public int find(int[] pixels, int width, int height, Rect region, int order, boolean parallel) {
+        // 只在所有点都不会越界的范围内查找，从而省去逐点的越界检查
+        int left = Math.max(region.x, -mMinDx);
+        int top = Math.max(region.y, -mMinDy);
+        int right = Math.min(region.x + region.width, width - mMaxDx) - 1;
+        int bottom = Math.min(region.y + region.height, height - mMaxDy) - 1;
+        if (left > right || top > bottom) {
+            return NOT_FOUND;
+        }
+        int[] offsets = new int[mDetectors.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = mDy[i] * width + mDx[i];
+        }
+        int lines = order == ORDER_COLUMN_MAJOR ? right - left + 1 : bottom - top + 1;
+        int chunkCount = parallel ? Math.min(ImageExecutors.getThreadCount(), lines) : 1;
+        if (chunkCount <= 1) {
+            return scan(pixels, width, offsets, left, top, right, bottom, order, 0, null);
+        }
+        return findInParallel(pixels, width, offsets, left, top, right, bottom, order, chunkCount);
+    }
+
+    private int findInParallel(int[] pixels, int width, int[] offsets, int left, int top, int right, int bottom,
+                               int order, int chunkCount) {
+        AtomicInteger foundChunk = new AtomicInteger(Integer.MAX_VALUE);
+        List<Future<Integer>> futures = new ArrayList<>(chunkCount);
+        int start = order == ORDER_COLUMN_MAJOR ? left : top;
+        int end = order == ORDER_COLUMN_MAJOR ? right : bottom;
+        int chunkSize = (end - start + chunkCount) / chunkCount;
+        for (int i = 0; i < chunkCount; i++) {
+            int chunk = i;
+            int chunkStart = start + i * chunkSize;
+            int chunkEnd = Math.min(end, chunkStart + chunkSize - 1);
+            if (chunkStart > chunkEnd) {
+                break;
+            }
+            futures.add(ImageExecutors.getExecutor().submit(() -> {
+                int index;
+                if (order == ORDER_COLUMN_MAJOR) {
+                    index = scan(pixels, width, offsets, chunkStart, top, chunkEnd, bottom, order, chunk, foundChunk);
+                } else {
+                    index = scan(pixels, width, offsets, left, chunkStart, right, chunkEnd, order, chunk, foundChunk);
+                }
+                if (index != NOT_FOUND) {
+                    int current;
+                    do {
+                        current = foundChunk.get();
+                    } while (chunk < current && !foundChunk.compareAndSet(current, chunk));
+                }
+                return index;
+            }));
+        }
+        int result = NOT_FOUND;
+        try {
+            for (Future<Integer> future : futures) {
+                int index = future.get();
+                if (result == NOT_FOUND && index != NOT_FOUND) {
+                    result = index;
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+            throw new ScriptInterruptedException();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    private int scan(int[] pixels, int width, int[] offsets, int left, int top, int right, int bottom, int order,
+                     int chunk, AtomicInteger foundChunk) {
+        if (order == ORDER_COLUMN_MAJOR) {
+            for (int x = left; x <= right; x++) {
+                // 排在前面的分块已经找到结果时，本分块的结果不会被使用
+                if (foundChunk != null && foundChunk.get() < chunk) {
+                    return NOT_FOUND;
+                }
+                for (int index = top * width + x, end = bottom * width + x; index <= end; index += width) {
+                    if (matchesAt(pixels, index, offsets)) {
+                        return index;
+                    }
+                }
+            }
+        } else {
+            for (int y = top; y <= bottom; y++) {
+                if (foundChunk != null && foundChunk.get() < chunk) {
+                    return NOT_FOUND;
+                }
+                for (int index = y * width + left, end = y * width + right; index <= end; index++) {
+                    if (matchesAt(pixels, index, offsets)) {
+                        return index;
+                    }
+                }
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean matchesAt(int[] pixels, int index, int[] offsets) {
+        ColorDetector[] detectors = mDetectors;
+        for (int i = 0; i < detectors.length; i++) {
+            int c = pixels[index + offsets[i]];
+            if (!detectors[i].detectsColor((c >> 16) & 0xff, (c >> 8) & 0xff, c & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.stardust.autojs.core.image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 以模板图片对象为键的{@link CompiledTemplate}缓存，按最近最少使用的顺序淘汰，总大小不超过给定的字节数。
+ * <p>
+ * {@link #get(ImageWrapper)}返回的模板已被{@link ImagePyramid#retain()}，使用完毕后需要调用{@link ImagePyramid#recycle()}。
+ * 模板图片被回收时，其缓存项会被立即移除。
+ */
+public class TemplateCache {
+
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private final LinkedHashMap<ImageWrapper, CompiledTemplate> mCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMaxBytes;
+    private final ImageWrapper.OnRecycleListener mOnTemplateRecycleListener = this::remove;
+
+    public TemplateCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    public TemplateCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public synchronized CompiledTemplate get(ImageWrapper template) {
+        CompiledTemplate compiled = mCache.get(template);
+        // 模板图片被回收或者其Mat已被替换时，缓存失效
+        if (compiled != null && (template.isRecycled() || compiled.getMat() != template.getMat())) {
+            remove(template);
+            compiled = null;
+        }
+        if (compiled == null) {
+            compiled = new CompiledTemplate(template.getMat(), false);
+            mCache.put(template, compiled);
+            template.addOnRecycleListener(mOnTemplateRecycleListener);
+        }
+        trimToSize(compiled);
+        compiled.retain();
+        return compiled;
+    }
+
+    public synchronized void remove(ImageWrapper template) {
+        CompiledTemplate compiled = mCache.remove(template);
+        if (compiled != null) {
+            template.removeOnRecycleListener(mOnTemplateRecycleListener);
+            compiled.recycle();
+        }
+    }
+
+    public synchronized int size() {
+        return mCache.size();
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        trimToSize(null);
+    }
+
+    /**
+     * 淘汰最久未使用的模板，直到总大小不超过限制。except不会被淘汰。
+     */
+    private void trimToSize(CompiledTemplate except) {
+        long bytes = 0;
+        for (CompiledTemplate compiled : mCache.values()) {
+            bytes += compiled.getByteCount();
+        }
+        Iterator<Map.Entry<ImageWrapper, CompiledTemplate>> iterator = mCache.entrySet().iterator();
+        while (bytes > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<ImageWrapper, CompiledTemplate> entry = iterator.next();
+            CompiledTemplate compiled = entry.getValue();
+            if (compiled == except) {
+                continue;
+            }
+            bytes -= compiled.getByteCount();
+            iterator.remove();
+            entry.getKey().removeOnRecycleListener(mOnTemplateRecycleListener);
+            compiled.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        for (Map.Entry<ImageWrapper, CompiledTemplate> entry : mCache.entrySet()) {
+            entry.getKey().removeOnRecycleListener(mOnTemplateRecycleListener);
+            entry.getValue().recycle();
+        }
+        mCache.clear();
+    }
+}
@@ -2,7 +2,10 @@ package com.stardust.autojs.core.image;
 
 import android.util.TimingLogger;
 
+import androidx.annotation.Nullable;
+
 import com.stardust.autojs.core.opencv.OpenCVHelper;
+import com.stardust.autojs.runtime.exception.ScriptInterruptedException;
 import com.stardust.util.Nath;
 
 import org.opencv.core.Core;
@@ -13,13 +16,15 @@ import com.stardust.autojs.core.opencv.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
-import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 
 /**
@@ -71,10 +76,28 @@ public class TemplateMatching {
      * @return
      */
     public static List<Match> fastTemplateMatching(Mat img, Mat template, int matchMethod, float weakThreshold, float strictThreshold, int maxLevel, int limit) {
+        ImagePyramid imgPyramid = new ImagePyramid(img, false);
+        CompiledTemplate compiledTemplate = new CompiledTemplate(template, false);
+        try {
+            return fastTemplateMatching(imgPyramid, compiledTemplate, matchMethod, weakThreshold, strictThreshold, maxLevel, limit, false);
+        } finally {
+            imgPyramid.recycle();
+            compiledTemplate.recycle();
+        }
+    }
+
+    /**
+     * 与{@link #fastTemplateMatching(Mat, Mat, int, float, float, int, int)}相同，但图片和模板的金字塔各层会被缓存，
+     * 可以在多次匹配之间复用。
+     *
+     * @param grayscale 是否在灰度图上匹配
+     */
+    public static List<Match> fastTemplateMatching(ImagePyramid img, CompiledTemplate template, int matchMethod, float weakThreshold,
+                                                   float strictThreshold, int maxLevel, int limit, boolean grayscale) {
         TimingLogger logger = new TimingLogger(LOG_TAG, "fast_tm");
         if (maxLevel == MAX_LEVEL_AUTO) {
             //自动选取金字塔层数
-            maxLevel = selectPyramidLevel(img, template);
+            maxLevel = selectPyramidLevel(img.getMat(), template.getMat());
             logger.addSplit("selectPyramidLevel:" + maxLevel);
         }
         //保存每一轮匹配到模板图片在原图片的位置
@@ -82,17 +105,18 @@ public class TemplateMatching {
         List<Match> previousMatchResult = Collections.emptyList();
         boolean isFirstMatching = true;
         for (int level = maxLevel; level >= 0; level--) {
-            // 放缩图片
+            // 放缩图片，各层缩小后的图片由金字塔缓存，不需要在这里释放
             List<Match> currentMatchResult = new ArrayList<>();
-            Mat src = getPyramidDownAtLevel(img, level);
-            Mat currentTemplate = getPyramidDownAtLevel(template, level);
+            Mat src = grayscale ? img.getGrayLevel(level) : img.getLevel(level);
+            Mat currentTemplate = grayscale ? template.getGrayLevel(level) : template.getLevel(level);
+            Mat mask = supportsMask(matchMethod) ? template.getMask(level, grayscale) : null;
             // 如果在上一轮中没有匹配到图片，则考虑是否退出匹配
             if (previousMatchResult.isEmpty()) {
                 // 如果不是第一次匹配，并且不满足shouldContinueMatching的条件，则直接退出匹配
                 if (!isFirstMatching && !shouldContinueMatching(level, maxLevel)) {
                     break;
                 }
-                Mat matchResult = matchTemplate(src, currentTemplate, matchMethod);
+                Mat matchResult = matchTemplate(src, currentTemplate, matchMethod, mask);
                 getBestMatched(matchResult, currentTemplate, matchMethod, weakThreshold, currentMatchResult, limit, null);
                 OpenCVHelper.release(matchResult);
             } else {
@@ -100,18 +124,13 @@ public class TemplateMatching {
                     // 根据上一轮的匹配点，计算本次匹配的区域
                     Rect r = getROI(match.point, src, currentTemplate);
                     Mat m = new Mat(src, r);
-                    Mat matchResult = matchTemplate(m, currentTemplate, matchMethod);
+                    Mat matchResult = matchTemplate(m, currentTemplate, matchMethod, mask);
                     getBestMatched(matchResult, currentTemplate, matchMethod, weakThreshold, currentMatchResult, limit, r);
                     OpenCVHelper.release(m);
                     OpenCVHelper.release(matchResult);
                 }
             }
 
-            if (src != img)
-                OpenCVHelper.release(src);
-            if (currentTemplate != template)
-                OpenCVHelper.release(currentTemplate);
-
             logger.addSplit("level:" + level + ", result:" + previousMatchResult);
 
             // 把满足强阈值的点找出来，加到最终结果列表
@@ -138,20 +157,44 @@ public class TemplateMatching {
         return finalMatchResult;
     }
 
-
-    private static Mat getPyramidDownAtLevel(Mat m, int level) {
-        if (level == 0) {
-            return m;
+    /**
+     * 在同一张图片中匹配多个模板。图片的金字塔只计算一次并在所有模板之间共享。
+     *
+     * @param executor 用于并行匹配各个模板的线程池，为null时在当前线程依次匹配
+     * @return 与templates一一对应的匹配结果
+     */
+    public static List<List<Match>> fastTemplateMatching(ImagePyramid img, List<CompiledTemplate> templates, int matchMethod, float weakThreshold,
+                                                         float strictThreshold, int maxLevel, int limit, boolean grayscale,
+                                                         @Nullable ExecutorService executor) {
+        List<List<Match>> results = new ArrayList<>(templates.size());
+        if (executor == null || templates.size() <= 1) {
+            for (CompiledTemplate template : templates) {
+                results.add(fastTemplateMatching(img, template, matchMethod, weakThreshold, strictThreshold, maxLevel, limit, grayscale));
+            }
+            return results;
         }
-        int cols = m.cols();
-        int rows = m.rows();
-        for (int i = 0; i < level; i++) {
-            cols = (cols + 1) / 2;
-            rows = (rows + 1) / 2;
+        List<Future<List<Match>>> futures = new ArrayList<>(templates.size());
+        for (CompiledTemplate template : templates) {
+            futures.add(executor.submit(() ->
+                    fastTemplateMatching(img, template, matchMethod, weakThreshold, strictThreshold, maxLevel, limit, grayscale)));
+        }
+        try {
+            for (Future<List<Match>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            for (Future<List<Match>> future : futures) {
+                future.cancel(true);
+            }
+            throw new ScriptInterruptedException();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
-        Mat r = new Mat(rows, cols, m.type());
-        Imgproc.resize(m, r, new Size(cols, rows));
-        return r;
+        return results;
+    }
+
+    private static boolean supportsMask(int matchMethod) {
+        return matchMethod == Imgproc.TM_SQDIFF || matchMethod == Imgproc.TM_CCORR_NORMED;
     }
 
     private static void pyrUp(Point p, int level) {
@@ -199,11 +242,15 @@ public class TemplateMatching {
     }
 
 
-    private static Mat matchTemplate(Mat img, Mat temp, int match_method) {
+    private static Mat matchTemplate(Mat img, Mat temp, int match_method, Mat mask) {
         int result_cols = img.cols() - temp.cols() + 1;
         int result_rows = img.rows() - temp.rows() + 1;
         Mat result = new Mat(result_rows, result_cols, CvType.CV_32FC1);
-        Imgproc.matchTemplate(img, temp, result, match_method);
+        if (mask == null) {
+            Imgproc.matchTemplate(img, temp, result, match_method);
+        } else {
+            Imgproc.matchTemplate(img, temp, result, match_method, mask);
+        }
         return result;
     }
 
@@ -24,8 +24,6 @@ import com.stardust.autojs.runtime.exception.ScriptInterruptedException;
 import com.stardust.lang.ThreadCompat;
 import com.stardust.util.ScreenMetrics;
 
-import java.util.concurrent.atomic.AtomicReference;
-
 /**
  * Created by Stardust on 2017/5/17.
  */
@@ -36,6 +34,14 @@ public class ScreenCapturer {
     public static final int ORIENTATION_LANDSCAPE = Configuration.ORIENTATION_LANDSCAPE ;
     public static final int ORIENTATION_PORTRAIT = Configuration.ORIENTATION_PORTRAIT ;
 
+    /**
+     * 等待一帧尚未被取走的新画面
+     */
+    public static final int MODE_NEXT_FRAME = 0;
+    /**
+     * 如果没有新画面，则直接返回上一次取到的画面
+     */
+    public static final int MODE_LATEST_FRAME = 1;
 
     private static final String LOG_TAG = "ScreenCapturer";
     private final MediaProjectionManager mProjectionManager;
@@ -43,8 +49,9 @@ public class ScreenCapturer {
     private MediaProjection mMediaProjection;
     private VirtualDisplay mVirtualDisplay;
     private volatile Looper mImageAcquireLooper;
-    private volatile Image mUnderUsingImage;
-    private volatile AtomicReference<Image> mCachedImage = new AtomicReference<>();
+    private final Object mImageLock = new Object();
+    private Image mUnderUsingImage;
+    private Image mCachedImage;
     private volatile Exception mException;
     private final int mScreenDensity;
     private Handler mHandler;
@@ -101,6 +108,12 @@ public class ScreenCapturer {
         if (mImageAcquireLooper != null) {
             mImageAcquireLooper.quit();
         }
+        synchronized (mImageLock) {
+            if (mCachedImage != null) {
+                mCachedImage.close();
+                mCachedImage = null;
+            }
+        }
         if (mImageReader != null) {
             mImageReader.close();
         }
@@ -141,14 +154,17 @@ public class ScreenCapturer {
 
     private void setImageListener(Handler handler) {
         mImageReader.setOnImageAvailableListener(reader -> {
-            try {
-                Image oldCacheImage = mCachedImage.getAndSet(null);
-                if (oldCacheImage != null) {
-                    oldCacheImage.close();
+            synchronized (mImageLock) {
+                try {
+                    if (mCachedImage != null) {
+                        mCachedImage.close();
+                        mCachedImage = null;
+                    }
+                    mCachedImage = reader.acquireLatestImage();
+                } catch (Exception e) {
+                    mException = e;
                 }
-                mCachedImage.set(reader.acquireLatestImage());
-            } catch (Exception e) {
-                mException = e;
+                mImageLock.notifyAll();
             }
 
         }, handler);
@@ -156,23 +172,60 @@ public class ScreenCapturer {
 
     @Nullable
     public Image capture() {
+        return capture(-1, MODE_NEXT_FRAME);
+    }
+
+    @Nullable
+    public Image capture(long timeout) {
+        return capture(timeout, MODE_NEXT_FRAME);
+    }
+
+    /**
+     * 获取一帧屏幕画面。调用线程会阻塞等待ImageReader的回调，而不是忙等。
+     *
+     * @param timeout 等待的最长时间(毫秒)，小于0表示一直等待
+     * @param mode    {@link #MODE_NEXT_FRAME} 或 {@link #MODE_LATEST_FRAME}
+     * @return 屏幕画面，超时则返回null。返回的Image在下一次获取到新画面时会被关闭。
+     */
+    @Nullable
+    public Image capture(long timeout, int mode) {
+        Thread thread = ThreadCompat.currentThread();
+        long deadline = timeout < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        synchronized (mImageLock) {
+            throwExceptionIfNeeded();
+            while (mCachedImage == null) {
+                if (mode == MODE_LATEST_FRAME && mUnderUsingImage != null) {
+                    return mUnderUsingImage;
+                }
+                if (thread.isInterrupted()) {
+                    throw new ScriptInterruptedException();
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                try {
+                    mImageLock.wait(timeout < 0 ? 0 : remaining);
+                } catch (InterruptedException e) {
+                    throw new ScriptInterruptedException();
+                }
+                throwExceptionIfNeeded();
+            }
+            if (mUnderUsingImage != null) {
+                mUnderUsingImage.close();
+            }
+            mUnderUsingImage = mCachedImage;
+            mCachedImage = null;
+            return mUnderUsingImage;
+        }
+    }
+
+    private void throwExceptionIfNeeded() {
         Exception e = mException;
         if (e != null) {
             mException = null;
             throw new ScriptException(e);
         }
-        Thread thread = ThreadCompat.currentThread();
-        while (!thread.isInterrupted()) {
-            Image cachedImage = mCachedImage.getAndSet(null);
-            if (cachedImage != null) {
-                if (mUnderUsingImage != null) {
-                    mUnderUsingImage.close();
-                }
-                mUnderUsingImage = cachedImage;
-                return cachedImage;
-            }
-        }
-        throw new ScriptInterruptedException();
     }
 
     public int getScreenDensity() {
@@ -194,12 +247,16 @@ public class ScreenCapturer {
         if (mImageReader != null) {
             mImageReader.close();
         }
-        if (mUnderUsingImage != null) {
-            mUnderUsingImage.close();
-        }
-        Image cachedImage = mCachedImage.getAndSet(null);
-        if (cachedImage != null) {
-            cachedImage.close();
+        synchronized (mImageLock) {
+            if (mUnderUsingImage != null) {
+                mUnderUsingImage.close();
+                mUnderUsingImage = null;
+            }
+            if (mCachedImage != null) {
+                mCachedImage.close();
+                mCachedImage = null;
+            }
+            mImageLock.notifyAll();
         }
         if (mOrientationEventListener != null) {
             mOrientationEventListener.disable();
@@ -0,0 +1,296 @@
+package com.stardust.autojs.core.inputevent;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.stardust.lang.ThreadCompat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 通过root进程读取/dev/input/eventN中原始的input_event结构体，按SYN_REPORT分帧后交给回调。
+ * 相比解析getevent -t的文本输出，省去了文本格式化、正则匹配和十六进制解析。
+ * <p>
+ * 所有设备共用一个root shell：shell为每个设备启动一个cat，分别写入应用创建的命名管道，
+ * 应用为每个管道启动一个读取线程。标准输入关闭时shell会结束所有cat。
+ */
+public class BinaryInputEventReader {
+
+    public interface Callback {
+
+        /**
+         * 在读取线程中调用，frame只在回调期间有效
+         */
+        void onInputEventFrame(@NonNull InputEventFrame frame);
+
+        /**
+         * root进程意外结束或者读取失败(例如没有root权限、cat无法打开设备)，之后不会再有事件。可能在任意线程中调用
+         */
+        void onError(@NonNull String message);
+    }
+
+    // struct input_event { struct timeval time; __u16 type; __u16 code; __s32 value; }
+    // timeval在64位用户空间中为两个8字节的long，在32位中为两个4字节的long
+    public static final int EVENT_SIZE_64 = 24;
+    public static final int EVENT_SIZE_32 = 16;
+
+    private static final String LOG_TAG = "BinaryInputEventReader";
+    private static final String INPUT_DEVICE_PATH = "/dev/input/event";
+    private static final int BUFFER_EVENTS = 64;
+
+    private final List<Integer> mDevices;
+    private final int mEventSize;
+    private final File mFifoDir;
+    private final Callback mCallback;
+    private final List<File> mFifos = new ArrayList<>();
+    private final AtomicBoolean mFailed = new AtomicBoolean(false);
+    private volatile boolean mStopped = false;
+    private Process mProcess;
+    private final List<Thread> mThreads = new ArrayList<>();
+
+    /**
+     * @param fifoDir 存放命名管道的目录，应该只被这个读取器使用
+     */
+    public BinaryInputEventReader(List<Integer> devices, int eventSize, File fifoDir, Callback callback) {
+        if (eventSize != EVENT_SIZE_64 && eventSize != EVENT_SIZE_32) {
+            throw new IllegalArgumentException("eventSize = " + eventSize);
+        }
+        if (devices.isEmpty()) {
+            throw new IllegalArgumentException("no devices");
+        }
+        mDevices = new ArrayList<>(devices);
+        mEventSize = eventSize;
+        mFifoDir = fifoDir;
+        mCallback = callback;
+    }
+
+    /**
+     * 读取设备节点的cat进程与系统的用户空间位数相同
+     */
+    public static int getDefaultEventSize() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && Build.SUPPORTED_64_BIT_ABIS.length > 0) {
+            return EVENT_SIZE_64;
+        }
+        return EVENT_SIZE_32;
+    }
+
+    public List<Integer> getDevices() {
+        return mDevices;
+    }
+
+    /**
+     * @throws IOException 无法创建命名管道或启动root进程。启动后的失败通过{@link Callback#onError(String)}通知
+     */
+    public synchronized void start() throws IOException {
+        if (mProcess != null) {
+            throw new IllegalStateException("start() should be called only once");
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            throw new IOException("mkfifo requires API 21");
+        }
+        StringBuilder script = new StringBuilder("pids=''\n");
+        for (int device : mDevices) {
+            File fifo = createFifo(device);
+            script.append("cat ").append(INPUT_DEVICE_PATH).append(device).append(" > ").append(fifo.getPath()).append(" &\n")
+                    .append("pids=\"$pids $!\"\n");
+        }
+        // 标准输入关闭时(调用stop()或者应用进程结束)结束所有cat
+        script.append("read line\n")
+                .append("kill $pids\n")
+                .append("exit\n");
+        Process process = Runtime.getRuntime().exec("su");
+        mProcess = process;
+        OutputStream os = process.getOutputStream();
+        os.write(script.toString().getBytes());
+        os.flush();
+        startThread(LOG_TAG + "-stderr", () -> drainErrorStream(process));
+        startThread(LOG_TAG + "-stdout", () -> drain(process.getInputStream()));
+        for (int i = 0; i < mDevices.size(); i++) {
+            int device = mDevices.get(i);
+            File fifo = mFifos.get(i);
+            startThread(LOG_TAG + "-" + device, () -> read(device, fifo));
+        }
+    }
+
+    private File createFifo(int device) throws IOException {
+        if (!mFifoDir.exists() && !mFifoDir.mkdirs()) {
+            throw new IOException("cannot create " + mFifoDir);
+        }
+        File fifo = new File(mFifoDir, "event" + device);
+        fifo.delete();
+        try {
+            Os.mkfifo(fifo.getPath(), OsConstants.S_IRUSR | OsConstants.S_IWUSR);
+        } catch (ErrnoException e) {
+            throw new IOException("mkfifo " + fifo, e);
+        }
+        mFifos.add(fifo);
+        return fifo;
+    }
+
+    private void startThread(String name, Runnable runnable) {
+        Thread thread = new ThreadCompat(runnable, name);
+        mThreads.add(thread);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (mStopped) {
+            return;
+        }
+        mStopped = true;
+        if (mProcess != null) {
+            // 关闭标准输入后shell会以root身份结束所有cat，再由读取错误输出的线程销毁进程
+            try {
+                mProcess.getOutputStream().close();
+            } catch (IOException e) {
+                mProcess.destroy();
+            }
+        }
+        for (File fifo : mFifos) {
+            unblockReader(fifo);
+        }
+        for (Thread thread : mThreads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * cat没有打开管道时读取线程会阻塞在打开管道上，以非阻塞方式打开一次写端使其返回
+     */
+    private static void unblockReader(File fifo) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        try {
+            FileDescriptor fd = Os.open(fifo.getPath(), OsConstants.O_WRONLY | OsConstants.O_NONBLOCK, 0);
+            Os.close(fd);
+        } catch (ErrnoException ignored) {
+            // ENXIO: 管道没有读端，读取线程已经结束
+        }
+    }
+
+    private void fail(String message) {
+        if (mStopped || !mFailed.compareAndSet(false, true)) {
+            return;
+        }
+        Log.w(LOG_TAG, "fail: " + message);
+        stop();
+        mCallback.onError(message);
+    }
+
+    /**
+     * 读取错误输出，避免管道写满后shell阻塞。root进程结束(例如su被拒绝)或者cat无法打开设备时视为失败，
+     * 后者的读取线程会一直阻塞在打开管道上，只能通过错误输出发现
+     */
+    private void drainErrorStream(Process process) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains(INPUT_DEVICE_PATH)) {
+                    fail(line);
+                } else {
+                    Log.w(LOG_TAG, "stderr: " + line);
+                }
+            }
+            fail("root process exited");
+        } catch (IOException e) {
+            fail(e.toString());
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private static void drain(InputStream is) {
+        byte[] buffer = new byte[256];
+        try {
+            while (is.read(buffer) >= 0) {
+                // 丢弃标准输出
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void read(int device, File fifo) {
+        InputEventFrame frame = new InputEventFrame(device);
+        byte[] buffer = new byte[mEventSize * BUFFER_EVENTS];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+        int length = 0;
+        InputStream is = null;
+        try {
+            // 阻塞直到cat打开管道的写端
+            is = new FileInputStream(fifo);
+            while (!mStopped) {
+                int n = is.read(buffer, length, buffer.length - length);
+                if (n < 0) {
+                    fail("input device closed: " + device);
+                    break;
+                }
+                length += n;
+                int offset = 0;
+                while (length - offset >= mEventSize) {
+                    decode(byteBuffer, offset, frame);
+                    offset += mEventSize;
+                }
+                // 把不完整的结构体移到缓冲区开头，等待剩余的字节
+                if (offset < length) {
+                    System.arraycopy(buffer, offset, buffer, 0, length - offset);
+                }
+                length -= offset;
+            }
+        } catch (IOException e) {
+            if (!mStopped) {
+                Log.w(LOG_TAG, "read: device = " + device, e);
+                fail(e.toString());
+            }
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ignored) {
+                }
+            }
+            fifo.delete();
+        }
+    }
+
+    private void decode(ByteBuffer buffer, int offset, InputEventFrame frame) {
+        long sec, usec;
+        int typeOffset;
+        if (mEventSize == EVENT_SIZE_64) {
+            sec = buffer.getLong(offset);
+            usec = buffer.getLong(offset + 8);
+            typeOffset = offset + 16;
+        } else {
+            sec = buffer.getInt(offset) & 0xffffffffL;
+            usec = buffer.getInt(offset + 4) & 0xffffffffL;
+            typeOffset = offset + 8;
+        }
+        int type = buffer.getShort(typeOffset) & 0xffff;
+        int code = buffer.getShort(typeOffset + 2) & 0xffff;
+        int value = buffer.getInt(typeOffset + 4);
+        frame.add(sec * 1000000L + usec, type, code, value);
+        if (InputEventFrame.isSynReport(type, code)) {
+            mCallback.onInputEventFrame(frame);
+            frame.clear();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.stardust.autojs.core.inputevent;
+
+import com.stardust.autojs.engine.RootAutomatorEngine;
+import com.stardust.pio.UncheckedIOException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 把一组输入事件以及事件之间的等待编码为root_automator可以直接执行的.auto格式，
+ * 使一个完整的手势作为一个二进制文件交给root_automator，而不是逐行通过终端发送。
+ */
+public class InputEventBatch {
+
+    public interface Player {
+
+        void onEvent(int type, int code, int value) throws IOException;
+
+        void onSleep(int millis) throws IOException;
+    }
+
+    public static final int FILE_MAGIC = 0x00B87B6D;
+    private static final int FILE_HEADER_PADDING = 240;
+
+    private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream mOutput = new DataOutputStream(mBuffer);
+    private int mEventCount = 0;
+
+    public static void writeFileHeader(DataOutputStream os, int screenWidth, int screenHeight) throws IOException {
+        os.writeInt(FILE_MAGIC);
+        os.writeInt(RootAutomatorEngine.VERSION);
+        os.writeInt(screenWidth);
+        os.writeInt(screenHeight);
+        for (int i = 0; i < FILE_HEADER_PADDING; i++) {
+            os.writeByte(0);
+        }
+    }
+
+    public void addEvent(int type, int code, int value) {
+        try {
+            if (type == InputEventCodes.EV_SYN && code == InputEventCodes.SYN_REPORT && value == 0) {
+                mOutput.writeByte(RootAutomator.DATA_TYPE_EVENT_SYNC_REPORT);
+            } else {
+                mOutput.writeByte(RootAutomator.DATA_TYPE_EVENT);
+                mOutput.writeShort(type);
+                mOutput.writeShort(code);
+                mOutput.writeInt(value);
+            }
+        } catch (IOException e) {
+            // 写入内存不会失败
+            throw new UncheckedIOException(e);
+        }
+        mEventCount++;
+    }
+
+    /**
+     * @param events 每三个数为一组，分别为type、code和value
+     */
+    public void addEvents(int[] events) {
+        if (events.length % 3 != 0) {
+            throw new IllegalArgumentException("events.length = " + events.length);
+        }
+        for (int i = 0; i < events.length; i += 3) {
+            addEvent(events[i], events[i + 1], events[i + 2]);
+        }
+    }
+
+    public void addSleep(int millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            mOutput.writeByte(RootAutomator.DATA_TYPE_SLEEP);
+            mOutput.writeInt(millis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    public boolean isEmpty() {
+        return mBuffer.size() == 0;
+    }
+
+    /**
+     * 按记录的顺序把事件和等待交给player
+     */
+    public void play(Player player) throws IOException {
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(mBuffer.toByteArray()));
+        while (is.available() > 0) {
+            byte dataType = is.readByte();
+            switch (dataType) {
+                case RootAutomator.DATA_TYPE_EVENT_SYNC_REPORT:
+                    player.onEvent(InputEventCodes.EV_SYN, InputEventCodes.SYN_REPORT, 0);
+                    break;
+                case RootAutomator.DATA_TYPE_EVENT:
+                    player.onEvent(is.readUnsignedShort(), is.readUnsignedShort(), is.readInt());
+                    break;
+                case RootAutomator.DATA_TYPE_SLEEP:
+                    player.onSleep(is.readInt());
+                    break;
+                default:
+                    throw new IllegalStateException("unknown data type: " + dataType);
+            }
+        }
+    }
+
+    public void writeTo(File file, int screenWidth, int screenHeight) throws IOException {
+        DataOutputStream os = new DataOutputStream(new FileOutputStream(file));
+        try {
+            writeFileHeader(os, screenWidth, screenHeight);
+            mBuffer.writeTo(os);
+        } finally {
+            os.close();
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.stardust.autojs.core.inputevent;
+
+import java.util.Arrays;
+
+/**
+ * 一个输入设备在两次SYN_REPORT之间产生的所有事件，最后一个事件为SYN_REPORT本身。
+ * <p>
+ * 事件以基本类型数组保存，对象会被重复使用，只在回调期间有效。
+ */
+public class InputEventFrame {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int mDevice;
+    private int mSize;
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+    private int[] mTypes = new int[INITIAL_CAPACITY];
+    private int[] mCodes = new int[INITIAL_CAPACITY];
+    private int[] mValues = new int[INITIAL_CAPACITY];
+
+    public InputEventFrame(int device) {
+        mDevice = device;
+    }
+
+    /**
+     * @return 设备编号，即/dev/input/eventN中的N
+     */
+    public int getDevice() {
+        return mDevice;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return 事件的时间戳(微秒)
+     */
+    public long getTimeMicros(int i) {
+        return mTimes[i];
+    }
+
+    /**
+     * @return 事件的时间戳(秒)，与getevent -t的输出相同
+     */
+    public double getTime(int i) {
+        return mTimes[i] / 1e6;
+    }
+
+    public int getType(int i) {
+        return mTypes[i];
+    }
+
+    public int getCode(int i) {
+        return mCodes[i];
+    }
+
+    public int getValue(int i) {
+        return mValues[i];
+    }
+
+    void add(long timeMicros, int type, int code, int value) {
+        if (mSize == mTypes.length) {
+            int capacity = mSize * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mCodes = Arrays.copyOf(mCodes, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+        }
+        mTimes[mSize] = timeMicros;
+        mTypes[mSize] = type;
+        mCodes[mSize] = code;
+        mValues[mSize] = value;
+        mSize++;
+    }
+
+    void clear() {
+        mSize = 0;
+    }
+
+    static boolean isSynReport(int type, int code) {
+        return type == InputEventCodes.EV_SYN && code == InputEventCodes.SYN_REPORT;
+    }
+
+}
@@ -3,10 +3,20 @@ package com.stardust.autojs.core.inputevent;
 import android.content.Context;
 import androidx.annotation.NonNull;
 import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
 
 import com.stardust.autojs.core.record.inputevent.EventFormatException;
+import com.stardust.autojs.core.record.inputevent.InputEventRecorder;
+import com.stardust.autojs.core.util.ProcessShell;
 import com.stardust.autojs.core.util.Shell;
+import com.stardust.autojs.runtime.api.AbstractShell;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -66,8 +76,25 @@ public class InputEventObserver {
         void onInputEvent(@NonNull InputEvent e);
     }
 
+    /**
+     * 按帧接收事件，不需要为每个事件创建对象和解析字符串。frame只在回调期间有效。
+     */
+    public interface InputEventFrameListener {
+        void onInputEventFrame(@NonNull InputEventFrame frame);
+    }
+
+    private static final String LOG_TAG = "InputEventObserver";
+    private static final String INPUT_DEVICE_DIR = "/dev/input";
+    private static final String INPUT_DEVICE_PREFIX = "event";
+    private static final String FIFO_DIR_NAME = "input-event";
+
     private static InputEventObserver sGlobal;
     private CopyOnWriteArrayList<InputEventListener> mInputEventListeners = new CopyOnWriteArrayList<>();
+    private CopyOnWriteArrayList<InputEventFrameListener> mInputEventFrameListeners = new CopyOnWriteArrayList<>();
+    private BinaryInputEventReader mReader;
+    private final Object mDispatchLock = new Object();
+    // 文本模式下按设备组装的帧
+    private final SparseArray<InputEventFrame> mTextFrames = new SparseArray<>();
     private Context mContext;
     private Shell mShell;
 
@@ -89,9 +116,80 @@ public class InputEventObserver {
         sGlobal.observe();
     }
 
-    public void observe() {
-        if (mShell != null)
+    public synchronized void observe() {
+        if (mShell != null || mReader != null)
             throw new IllegalStateException("observe() should be called only once");
+        if (observeBinary()) {
+            return;
+        }
+        observeText();
+    }
+
+    /**
+     * 启动一个root进程读取所有输入设备的原始input_event
+     */
+    private boolean observeBinary() {
+        List<Integer> devices = listInputDevices();
+        if (devices.isEmpty()) {
+            return false;
+        }
+        BinaryInputEventReader reader = new BinaryInputEventReader(devices, BinaryInputEventReader.getDefaultEventSize(),
+                new File(mContext.getCacheDir(), FIFO_DIR_NAME), new BinaryInputEventReader.Callback() {
+            @Override
+            public void onInputEventFrame(@NonNull InputEventFrame frame) {
+                dispatchInputEventFrame(frame);
+            }
+
+            @Override
+            public void onError(@NonNull String message) {
+                fallbackToText();
+            }
+        });
+        try {
+            reader.start();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "observeBinary", e);
+            reader.stop();
+            return false;
+        }
+        mReader = reader;
+        return true;
+    }
+
+    /**
+     * 二进制读取启动后失败(例如su被拒绝、cat无法读取设备)时改用getevent
+     */
+    private synchronized void fallbackToText() {
+        if (mReader == null) {
+            // 已经被回收
+            return;
+        }
+        Log.w(LOG_TAG, "binary reader failed, fallback to getevent");
+        mReader = null;
+        observeText();
+    }
+
+    private static List<Integer> listInputDevices() {
+        String[] names = new File(INPUT_DEVICE_DIR).list();
+        if (names == null) {
+            // 部分系统不允许应用列出/dev/input
+            AbstractShell.Result result = ProcessShell.execCommand("ls " + INPUT_DEVICE_DIR, true);
+            names = result.code == 0 && result.result != null ? result.result.split("\\s+") : new String[0];
+        }
+        List<Integer> devices = new ArrayList<>();
+        for (String name : names) {
+            if (!name.startsWith(INPUT_DEVICE_PREFIX)) {
+                continue;
+            }
+            try {
+                devices.add(Integer.parseInt(name.substring(INPUT_DEVICE_PREFIX.length())));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return devices;
+    }
+
+    private void observeText() {
         mShell = new Shell(mContext, true);
         mShell.setCallback(new Shell.SimpleCallback() {
             @Override
@@ -115,17 +213,67 @@ public class InputEventObserver {
         try {
             InputEvent event = InputEvent.parse(eventStr);
             dispatchInputEvent(event);
+            if (!mInputEventFrameListeners.isEmpty()) {
+                appendToTextFrame(event);
+            }
         } catch (Exception ignored) {
 
         }
     }
 
+    private void appendToTextFrame(InputEvent event) {
+        int device = InputEventRecorder.parseDeviceNumber(event.device);
+        InputEventFrame frame = mTextFrames.get(device);
+        if (frame == null) {
+            frame = new InputEventFrame(device);
+            mTextFrames.put(device, frame);
+        }
+        int type = (int) Long.parseLong(event.type, 16);
+        int code = (int) Long.parseLong(event.code, 16);
+        int value = (int) Long.parseLong(event.value, 16);
+        frame.add((long) (event.time * 1e6), type, code, value);
+        if (InputEventFrame.isSynReport(type, code)) {
+            dispatchFrame(frame);
+            frame.clear();
+        }
+    }
+
     private void dispatchInputEvent(InputEvent event) {
         for (InputEventListener listener : mInputEventListeners) {
             listener.onInputEvent(event);
         }
     }
 
+    /**
+     * 二进制模式下每个设备有一个读取线程，分发时加锁以保证监听器不会被并发调用
+     */
+    private void dispatchInputEventFrame(InputEventFrame frame) {
+        synchronized (mDispatchLock) {
+            dispatchInputEventFrameLocked(frame);
+        }
+    }
+
+    private void dispatchInputEventFrameLocked(InputEventFrame frame) {
+        dispatchFrame(frame);
+        if (mInputEventListeners.isEmpty()) {
+            return;
+        }
+        // 只有存在按字符串接收事件的监听器(例如录制)时才转换为getevent格式
+        String device = INPUT_DEVICE_DIR + "/" + INPUT_DEVICE_PREFIX + frame.getDevice();
+        for (int i = 0; i < frame.size(); i++) {
+            dispatchInputEvent(new InputEvent(frame.getTime(i), device,
+                    String.format(Locale.US, "%04x", frame.getType(i)),
+                    String.format(Locale.US, "%04x", frame.getCode(i)),
+                    String.format(Locale.US, "%08x", frame.getValue(i))));
+        }
+    }
+
+    private void dispatchFrame(InputEventFrame frame) {
+        for (InputEventFrameListener listener : mInputEventFrameListeners) {
+            listener.onInputEventFrame(frame);
+        }
+    }
+
     public void addListener(InputEventListener listener) {
         mInputEventListeners.add(listener);
     }
@@ -134,9 +282,22 @@ public class InputEventObserver {
         return mInputEventListeners.remove(listener);
     }
 
+    public void addFrameListener(InputEventFrameListener listener) {
+        mInputEventFrameListeners.add(listener);
+    }
+
+    public boolean removeFrameListener(InputEventFrameListener listener) {
+        return mInputEventFrameListeners.remove(listener);
+    }
 
-    public void recycle() {
-        mShell.exit();
+    public synchronized void recycle() {
+        if (mShell != null) {
+            mShell.exit();
+        }
+        if (mReader != null) {
+            mReader.stop();
+            mReader = null;
+        }
     }
 
 
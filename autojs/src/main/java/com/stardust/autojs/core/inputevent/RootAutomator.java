@@ -1,7 +1,6 @@
 package com.stardust.autojs.core.inputevent;
 
 import android.content.Context;
-import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import android.util.Log;
 import android.util.SparseIntArray;
@@ -12,7 +11,9 @@ import com.stardust.autojs.engine.RootAutomatorEngine;
 import com.stardust.autojs.runtime.exception.ScriptInterruptedException;
 import com.stardust.util.ScreenMetrics;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -32,6 +33,13 @@ public class RootAutomator implements Shell.Callback {
     public static final byte DATA_TYPE_EVENT_TOUCH_X = 3;
     public static final byte DATA_TYPE_EVENT_TOUCH_Y = 4;
 
+    // 手势中相邻两次移动的间隔(毫秒)
+    private static final int GESTURE_STEP_INTERVAL = 8;
+
+    private interface BatchAction {
+        void run() throws IOException;
+    }
+
     @Nullable
     private ScreenMetrics mScreenMetrics;
     private Shell mShell;
@@ -42,6 +50,9 @@ public class RootAutomator implements Shell.Callback {
     private volatile boolean mReady = false;
     private final Context mContext;
     private String mInputDevice;
+    @Nullable
+    private InputEventBatch mBatch;
+    private String mExecutablePath;
 
     public RootAutomator(Context context, String inputDevice, boolean waitForReady) throws IOException {
         mContext = context;
@@ -59,10 +70,129 @@ public class RootAutomator implements Shell.Callback {
 
 
     public void sendEvent(int type, int code, int value) throws IOException {
+        if (mBatch != null) {
+            mBatch.addEvent(type, code, value);
+            return;
+        }
         waitForReady();
         sendEventInternal(type, code, value);
     }
 
+    /**
+     * 一次发送多个事件。不在批处理中时，两次等待之间的事件一次性写入root_automator的终端。
+     *
+     * @param events 每三个数为一组，分别为type、code和value
+     */
+    public void sendEvents(int[] events) throws IOException {
+        inBatch(() -> mBatch.addEvents(events));
+    }
+
+    /**
+     * 开始批处理：之后的事件和手势中的等待只记录在内存中，直到{@link #commit()}时一次性交给root_automator执行。
+     * 适用于较长的事件序列；单次点击、滑动等由{@link #tap}等方法直接通过已经运行的root_automator发送。
+     */
+    public void beginBatch() {
+        if (mBatch != null) {
+            throw new IllegalStateException("batch already begun");
+        }
+        mBatch = new InputEventBatch();
+    }
+
+    public boolean isBatching() {
+        return mBatch != null;
+    }
+
+    /**
+     * 结束批处理，把记录的事件写入临时文件并由root_automator执行，阻塞直到执行完毕。
+     */
+    public void commit() throws IOException {
+        InputEventBatch batch = mBatch;
+        if (batch == null) {
+            throw new IllegalStateException("no batch begun");
+        }
+        mBatch = null;
+        if (batch.isEmpty()) {
+            return;
+        }
+        File file = File.createTempFile("batch", ".auto", mContext.getCacheDir());
+        try {
+            batch.writeTo(file, ScreenMetrics.getDeviceScreenWidth(), ScreenMetrics.getDeviceScreenHeight());
+            executeAutoFile(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void executeAutoFile(File file) throws IOException {
+        if (mExecutablePath == null) {
+            mExecutablePath = RootAutomatorEngine.getExecutablePath(mContext);
+        }
+        Process process = Runtime.getRuntime().exec("su");
+        try {
+            OutputStream os = process.getOutputStream();
+            os.write(String.format("chmod 755 \"%s\"\nexec \"%s\" \"%s\" -d \"%s\"\n",
+                    mExecutablePath, mExecutablePath, file.getAbsolutePath(), mInputDevice).getBytes());
+            os.flush();
+            process.waitFor();
+        } catch (InterruptedException e) {
+            throw new ScriptInterruptedException();
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * 在批处理中执行action；当前不在批处理中时，先在内存中生成action的整个事件序列，
+     * 再通过已经运行的root_automator发送，而不是为每个手势启动新的root进程
+     */
+    private void inBatch(BatchAction action) throws IOException {
+        if (mBatch != null) {
+            action.run();
+            return;
+        }
+        InputEventBatch batch = new InputEventBatch();
+        mBatch = batch;
+        try {
+            action.run();
+        } finally {
+            mBatch = null;
+        }
+        playOnShell(batch);
+    }
+
+    /**
+     * 两次等待之间的事件合并为一次写入终端，等待在本线程中进行
+     */
+    private void playOnShell(InputEventBatch batch) throws IOException {
+        waitForReady();
+        StringBuilder lines = new StringBuilder();
+        batch.play(new InputEventBatch.Player() {
+            @Override
+            public void onEvent(int type, int code, int value) {
+                if (lines.length() > 0) {
+                    lines.append('\n');
+                }
+                lines.append(type).append(' ').append(code).append(' ').append(value);
+            }
+
+            @Override
+            public void onSleep(int millis) throws IOException {
+                flush();
+                sleep(millis);
+            }
+
+            private void flush() {
+                if (lines.length() > 0) {
+                    mShell.exec(lines.toString());
+                    lines.setLength(0);
+                }
+            }
+        });
+        if (lines.length() > 0) {
+            mShell.exec(lines.toString());
+        }
+    }
+
     private void sendEventInternal(int type, int code, int value) {
         mShell.exec(type + " " + code + " " + value);
     }
@@ -126,26 +256,18 @@ public class RootAutomator implements Shell.Callback {
     }
 
     public void tap(int x, int y, int id) throws IOException {
-        touchDown(x, y, id);
-        touchUp(id);
+        inBatch(() -> {
+            touchDown(x, y, id);
+            touchUp(id);
+        });
     }
 
     public void tap(int x, int y) throws IOException {
-        sendEvent(x, y, mDefaultId);
+        tap(x, y, mDefaultId);
     }
 
     public void swipe(int x1, int y1, int x2, int y2, int duration, int id) throws IOException {
-        long now = SystemClock.uptimeMillis();
-        touchDown(x1, y1, id);
-        long startTime = now;
-        long endTime = startTime + duration;
-        while (now < endTime) {
-            long elapsedTime = now - startTime;
-            float alpha = (float) elapsedTime / duration;
-            touchMove((int) lerp(x1, x2, alpha), (int) lerp(y1, y2, alpha), id);
-            now = SystemClock.uptimeMillis();
-        }
-        touchUp(id);
+        gesture(duration, new int[][]{{x1, y1, x2, y2}}, new int[]{id});
     }
 
     public void swipe(int x1, int y1, int x2, int y2, int duration) throws IOException {
@@ -157,9 +279,66 @@ public class RootAutomator implements Shell.Callback {
     }
 
     public void press(int x, int y, int duration, int id) throws IOException {
-        touchDown(x, y, id);
-        sleep(duration);
-        touchUp(id);
+        inBatch(() -> {
+            touchDown(x, y, id);
+            sleep(duration);
+            touchUp(id);
+        });
+    }
+
+    /**
+     * 多个手指同时沿各自的路径移动，整个事件序列在执行前一次性生成。
+     *
+     * @param duration 持续时间(毫秒)
+     * @param paths    每个手指的路径，依次为各个点的x、y坐标，至少包含一个点；手指的id为路径的下标
+     */
+    public void gesture(int duration, int[][] paths) throws IOException {
+        int[] ids = new int[paths.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        gesture(duration, paths, ids);
+    }
+
+    private void gesture(int duration, int[][] paths, int[] ids) throws IOException {
+        for (int[] path : paths) {
+            if (path.length < 2 || path.length % 2 != 0) {
+                throw new IllegalArgumentException("path.length = " + path.length);
+            }
+        }
+        inBatch(() -> {
+            for (int i = 0; i < paths.length; i++) {
+                touchDown(paths[i][0], paths[i][1], ids[i]);
+            }
+            int steps = Math.max(1, duration / GESTURE_STEP_INTERVAL);
+            int[] point = new int[2];
+            for (int step = 1; step <= steps; step++) {
+                // 把不能整除的部分分摊到各步，使总时长准确
+                sleep((long) duration * step / steps - (long) duration * (step - 1) / steps);
+                float alpha = (float) step / steps;
+                for (int i = 0; i < paths.length; i++) {
+                    pointAt(paths[i], alpha, point);
+                    touchMove(point[0], point[1], ids[i]);
+                }
+            }
+            for (int i = paths.length - 1; i >= 0; i--) {
+                touchUp(ids[i]);
+            }
+        });
+    }
+
+    private static void pointAt(int[] path, float alpha, int[] out) {
+        int segments = path.length / 2 - 1;
+        if (segments == 0) {
+            out[0] = path[0];
+            out[1] = path[1];
+            return;
+        }
+        float position = alpha * segments;
+        int segment = Math.min((int) position, segments - 1);
+        float t = position - segment;
+        out[0] = (int) lerp(path[segment * 2], path[segment * 2 + 2], t);
+        out[1] = (int) lerp(path[segment * 2 + 1], path[segment * 2 + 3], t);
     }
 
     public void press(int x, int y, int duration) throws IOException {
@@ -251,6 +430,10 @@ public class RootAutomator implements Shell.Callback {
     }
 
     private void sleep(long duration) throws IOException {
+        if (mBatch != null) {
+            mBatch.addSleep((int) duration);
+            return;
+        }
         try {
             Thread.sleep(duration);
         } catch (InterruptedException e) {
@@ -264,6 +447,7 @@ public class RootAutomator implements Shell.Callback {
     }
 
     public void exit() throws IOException {
+        mBatch = null;
         sleep(1);
         sendEventInternal(0xffff, 0xffff, 0xefefefef);
         mShell.exec("exit");
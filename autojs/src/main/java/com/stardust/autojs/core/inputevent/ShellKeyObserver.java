@@ -11,7 +11,7 @@ import java.util.Map;
  * Created by Stardust on 2017/5/4.
  */
 
-public class ShellKeyObserver implements InputEventObserver.InputEventListener {
+public class ShellKeyObserver implements InputEventObserver.InputEventFrameListener {
 
     public interface KeyListener {
 
@@ -35,15 +35,17 @@ public class ShellKeyObserver implements InputEventObserver.InputEventListener {
     }
 
     @Override
-    public void onInputEvent(@NonNull InputEventObserver.InputEvent event) {
-        if (!event.type.equals("0001")) {
-            return;
-        }
-        if (event.value.equalsIgnoreCase("00000000")) {
-            notifyKeyUp(keyCodeToKeyName(Integer.parseInt(event.code, 16)));
-        }
-        if (event.value.equalsIgnoreCase("00000001")) {
-            notifyKeyDown(keyCodeToKeyName(Integer.parseInt(event.code, 16)));
+    public void onInputEventFrame(@NonNull InputEventFrame frame) {
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.getType(i) != InputEventCodes.EV_KEY) {
+                continue;
+            }
+            int value = frame.getValue(i);
+            if (value == 0) {
+                notifyKeyUp(keyCodeToKeyName(frame.getCode(i)));
+            } else if (value == 1) {
+                notifyKeyDown(keyCodeToKeyName(frame.getCode(i)));
+            }
         }
     }
 
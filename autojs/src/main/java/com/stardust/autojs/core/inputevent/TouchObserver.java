@@ -2,14 +2,12 @@ package com.stardust.autojs.core.inputevent;
 
 import androidx.annotation.NonNull;
 
-import static com.stardust.autojs.core.record.inputevent.InputEventRecorder.parseDeviceNumber;
-
 
 /**
  * Created by Stardust on 2017/7/20.
  */
 
-public class TouchObserver implements InputEventObserver.InputEventListener {
+public class TouchObserver implements InputEventObserver.InputEventFrameListener {
 
 
     public interface OnTouchEventListener {
@@ -18,7 +16,6 @@ public class TouchObserver implements InputEventObserver.InputEventListener {
 
     private int mTouchX, mTouchY;
     private OnTouchEventListener mOnTouchEventListener;
-    private int mLastTouchX = -1, mLastTouchY = -1;
     private InputEventObserver mInputEventObserver;
 
     public TouchObserver(InputEventObserver observer) {
@@ -26,11 +23,11 @@ public class TouchObserver implements InputEventObserver.InputEventListener {
     }
 
     public void observe() {
-        mInputEventObserver.addListener(this);
+        mInputEventObserver.addFrameListener(this);
     }
 
     public void stop() {
-        mInputEventObserver.removeListener(this);
+        mInputEventObserver.removeFrameListener(this);
     }
 
     public void setOnTouchEventListener(OnTouchEventListener onTouchEventListener) {
@@ -38,8 +35,6 @@ public class TouchObserver implements InputEventObserver.InputEventListener {
     }
 
     private void onTouch(int x, int y) {
-        mTouchX = x;
-        mTouchY = y;
         if (mOnTouchEventListener != null) {
             mOnTouchEventListener.onTouch(x, y);
         }
@@ -47,43 +42,25 @@ public class TouchObserver implements InputEventObserver.InputEventListener {
 
 
     @Override
-    public void onInputEvent(@NonNull InputEventObserver.InputEvent event) {
-        int device = parseDeviceNumber(event.device);
-        int type = (int) Long.parseLong(event.type, 16);
-        int code = (int) Long.parseLong(event.code, 16);
-        int value = (int) Long.parseLong(event.value, 16);
-        if (type != 3) {
-            return;
-        }
-        if (code == 53) {
-            onTouchX(value);
-            return;
-        }
-        if (code == 54) {
-            onTouchY(value);
-            return;
-        }
-        if (mLastTouchX >= 0) {
-            onTouch(mLastTouchX, mTouchY);
-            mLastTouchX = -1;
-            return;
-        }
-        if (mLastTouchY >= 0) {
-            onTouch(mTouchX, mLastTouchY);
-            mLastTouchY = -1;
+    public void onInputEventFrame(@NonNull InputEventFrame frame) {
+        boolean moved = false;
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.getType(i) != InputEventCodes.EV_ABS) {
+                continue;
+            }
+            int code = frame.getCode(i);
+            if (code == InputEventCodes.ABS_MT_POSITION_X) {
+                mTouchX = frame.getValue(i);
+                moved = true;
+            } else if (code == InputEventCodes.ABS_MT_POSITION_Y) {
+                mTouchY = frame.getValue(i);
+                moved = true;
+            }
         }
-    }
-
-    private void onTouchX(int value) {
-        mLastTouchX = value;
-    }
-
-    private void onTouchY(int value) {
-        if (mLastTouchX > 0) {
-            onTouch(mLastTouchX, value);
-            return;
+        // 一帧内的坐标变化合并为一次触摸回调
+        if (moved) {
+            onTouch(mTouchX, mTouchY);
         }
-        mLastTouchY = value;
     }
 
 }
@@ -9,6 +9,7 @@ import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Mat extends org.opencv.core.Mat implements ResourceMonitor.Resource {
@@ -43,6 +44,11 @@ public class Mat extends org.opencv.core.Mat implements ResourceMonitor.Resource
         ResourceMonitor.onOpen(this);
     }
 
+    public Mat(int rows, int cols, int type, ByteBuffer data) {
+        super(rows, cols, type, data);
+        ResourceMonitor.onOpen(this);
+    }
+
     public Mat(Size size, int type) {
         super(size, type);
         ResourceMonitor.onOpen(this);
@@ -4,6 +4,7 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import android.util.Log;
 
+import com.stardust.autojs.core.inputevent.InputEventBatch;
 import com.stardust.autojs.core.inputevent.InputEventCodes;
 import com.stardust.autojs.core.inputevent.InputEventObserver;
 import com.stardust.autojs.core.inputevent.RootAutomator;
@@ -42,13 +43,8 @@ public class InputEventToAutoFileRecorder extends InputEventRecorder {
     }
 
     private void writeFileHeader() throws IOException {
-        mDataOutputStream.writeInt(0x00B87B6D);
-        mDataOutputStream.writeInt(RootAutomatorEngine.VERSION);
-        mDataOutputStream.writeInt(ScreenMetrics.getDeviceScreenWidth());
-        mDataOutputStream.writeInt(ScreenMetrics.getDeviceScreenHeight());
-        for (int i = 0; i < 240; i++) {
-            mDataOutputStream.writeByte(0);
-        }
+        InputEventBatch.writeFileHeader(mDataOutputStream, ScreenMetrics.getDeviceScreenWidth(),
+                ScreenMetrics.getDeviceScreenHeight());
     }
 
 
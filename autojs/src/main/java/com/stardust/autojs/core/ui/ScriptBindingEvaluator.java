@@ -0,0 +1,120 @@
+package com.stardust.autojs.core.ui;
+
+import androidx.annotation.Nullable;
+
+import com.stardust.autojs.core.ui.inflater.BindingEvaluator;
+import com.stardust.autojs.core.ui.inflater.BindingExpression;
+import com.stardust.autojs.runtime.ScriptBridges;
+import com.stardust.autojs.runtime.ScriptRuntime;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 在脚本的绑定上下文(ui.bindingContext)中计算{{...}}表达式。
+ * <p>
+ * 每个表达式只编译一次为函数，函数以绑定上下文为this并通过with(this)访问其属性，与原先在JavaScript中使用eval的语义相同。
+ * 编译结果依赖于运行时的作用域，因此由每个运行时各自缓存，而表达式本身随布局模板在运行时之间共享。
+ */
+public class ScriptBindingEvaluator implements BindingEvaluator {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    // 表达式不能作为一个完整的表达式编译(例如包含多条语句)时，退回到eval
+    private static final String EVAL_FUNCTION_SOURCE = "function(__expr__){ with(this){ return eval(__expr__); } }";
+
+    private final ScriptRuntime mRuntime;
+    // 表达式 -> 其中每个{{...}}编译后的函数，编译失败的为null
+    private final Map<BindingExpression, Function[]> mCompiledExpressions = new WeakHashMap<>();
+    private Function mEvalFunction;
+
+    public ScriptBindingEvaluator(ScriptRuntime runtime) {
+        mRuntime = runtime;
+    }
+
+    @Nullable
+    @Override
+    public String evaluate(BindingExpression expression) {
+        Object bindingContext = mRuntime.ui.getBindingContext();
+        if (bindingContext == null) {
+            return null;
+        }
+        Context cx = Context.getCurrentContext();
+        boolean entered = false;
+        if (cx == null) {
+            cx = ContextFactory.getGlobal().enterContext();
+            cx.setOptimizationLevel(-1);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            entered = true;
+        }
+        try {
+            Scriptable scope = mRuntime.getTopLevelScope();
+            Function[] functions = getCompiledExpression(cx, scope, expression);
+            Scriptable thisObj = toThisObject(cx, scope, bindingContext);
+            int count = expression.getExpressionCount();
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                value.append(expression.getText(i));
+                Object result = functions[i] != null
+                        ? functions[i].call(cx, scope, thisObj, NO_ARGUMENTS)
+                        : getEvalFunction(cx, scope).call(cx, scope, thisObj, new Object[]{expression.getExpression(i)});
+                value.append(Context.toString(result));
+            }
+            value.append(expression.getText(count));
+            return value.toString();
+        } catch (RuntimeException e) {
+            mRuntime.exit(e);
+            return null;
+        } finally {
+            if (entered) {
+                Context.exit();
+            }
+        }
+    }
+
+    private Function[] getCompiledExpression(Context cx, Scriptable scope, BindingExpression expression) {
+        synchronized (mCompiledExpressions) {
+            Function[] functions = mCompiledExpressions.get(expression);
+            if (functions != null) {
+                return functions;
+            }
+        }
+        int count = expression.getExpressionCount();
+        Function[] functions = new Function[count];
+        for (int i = 0; i < count; i++) {
+            functions[i] = compile(cx, scope, expression.getExpression(i), expression.getSource());
+        }
+        synchronized (mCompiledExpressions) {
+            mCompiledExpressions.put(expression, functions);
+        }
+        return functions;
+    }
+
+    @Nullable
+    private static Function compile(Context cx, Scriptable scope, String expr, String sourceName) {
+        try {
+            return cx.compileFunction(scope, "function(){ with(this){ return (" + expr + "\n); } }", sourceName, 1, null);
+        } catch (EvaluatorException e) {
+            return null;
+        }
+    }
+
+    private synchronized Function getEvalFunction(Context cx, Scriptable scope) {
+        if (mEvalFunction == null) {
+            mEvalFunction = cx.compileFunction(scope, EVAL_FUNCTION_SOURCE, "<binding>", 1, null);
+        }
+        return mEvalFunction;
+    }
+
+    private static Scriptable toThisObject(Context cx, Scriptable scope, Object bindingContext) {
+        if (bindingContext instanceof Scriptable) {
+            return (Scriptable) bindingContext;
+        }
+        return Context.toObject(ScriptBridges.javaToJS(cx, scope, bindingContext), scope);
+    }
+}
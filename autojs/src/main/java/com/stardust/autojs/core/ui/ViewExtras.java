@@ -1,6 +1,5 @@
 package com.stardust.autojs.core.ui;
 
-import android.util.Log;
 import android.view.View;
 
 import com.stardust.autojs.R;
@@ -14,7 +13,6 @@ import org.mozilla.javascript.Scriptable;
 
 public class ViewExtras {
 
-    private static final String LOG_TAG = "ViewExtras";
     private NativeView mNativeView;
 
     private ViewAttributes mViewAttributes;
@@ -22,7 +20,6 @@ public class ViewExtras {
     public static ViewExtras get(View view) {
         ViewExtras extras;
         Object tag = view.getTag(R.id.view_tag_view_extras);
-        Log.d(LOG_TAG, "view = " + view + ", tag = " + tag);
         if (tag instanceof ViewExtras) {
             extras = (ViewExtras) tag;
         } else {
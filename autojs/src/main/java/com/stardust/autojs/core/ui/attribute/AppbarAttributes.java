@@ -13,8 +13,8 @@ public class AppbarAttributes extends ViewAttributes {
     @Override
     protected void onRegisterAttrs() {
         super.onRegisterAttrs();
-        registerPixelAttr("elevation", getView()::setTargetElevation);
-        registerBooleanAttr("expanded", getView()::setExpanded);
+        registerPixelAttr("elevation", AppBarLayout::setTargetElevation);
+        registerBooleanAttr("expanded", (AppBarLayout view, Boolean expanded) -> view.setExpanded(expanded));
     }
 
     @Override
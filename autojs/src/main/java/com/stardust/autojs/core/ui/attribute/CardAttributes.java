@@ -17,48 +17,45 @@ public class CardAttributes extends ViewAttributes {
     @Override
     protected void onRegisterAttrs() {
         super.onRegisterAttrs();
-        registerAttr("cardBackgroundColor", Color::parseColor, getView()::setCardBackgroundColor);
-        registerPixelAttr("cardCornerRadius", getView()::setRadius);
-        registerPixelAttr("cardElevation", getView()::setCardElevation);
-        registerPixelAttr("cardMaxElevation", getView()::setMaxCardElevation);
-        registerBooleanAttr("cardPreventCornerOverlap", getView()::setPreventCornerOverlap);
-        registerBooleanAttr("cardUseCompatPadding", getView()::setUseCompatPadding);
-        registerAttr("contentPadding", this::setContentPadding);
-        registerIntPixelAttr("contentPaddingBottom", this::setContentPaddingBottom);
-        registerIntPixelAttr("contentPaddingLeft", this::setContentPaddingLeft);
-        registerIntPixelAttr("contentPaddingTop", this::setContentPaddingTop);
-        registerIntPixelAttr("contentPaddingRight", this::setContentPaddingRight);
+        registerAttr("cardBackgroundColor", Color::parseColor,
+                (CardView view, Integer color) -> view.setCardBackgroundColor(color));
+        registerPixelAttr("cardCornerRadius", CardView::setRadius);
+        registerPixelAttr("cardElevation", CardView::setCardElevation);
+        registerPixelAttr("cardMaxElevation", CardView::setMaxCardElevation);
+        registerBooleanAttr("cardPreventCornerOverlap", CardView::setPreventCornerOverlap);
+        registerBooleanAttr("cardUseCompatPadding", CardView::setUseCompatPadding);
+        registerAttr("contentPadding", CardAttributes::setContentPadding);
+        registerIntPixelAttr("contentPaddingBottom", CardAttributes::setContentPaddingBottom);
+        registerIntPixelAttr("contentPaddingLeft", CardAttributes::setContentPaddingLeft);
+        registerIntPixelAttr("contentPaddingTop", CardAttributes::setContentPaddingTop);
+        registerIntPixelAttr("contentPaddingRight", CardAttributes::setContentPaddingRight);
     }
 
-    private void setContentPadding(String value) {
-        int[] pixels = Dimensions.parseToIntPixelArray(getView(), value);
-        getView().setContentPadding(pixels[0], pixels[1], pixels[2], pixels[3]);
+    private static void setContentPadding(CardView cardView, String value) {
+        int[] pixels = Dimensions.parseToIntPixelArray(cardView, value);
+        cardView.setContentPadding(pixels[0], pixels[1], pixels[2], pixels[3]);
     }
 
 
-    private void setContentPaddingBottom(int value) {
-        CardView cardView = getView();
+    private static void setContentPaddingBottom(CardView cardView, int value) {
         cardView.setContentPadding(cardView.getContentPaddingLeft(), cardView.getContentPaddingTop(),
                 cardView.getContentPaddingRight(), value);
     }
 
 
-    private void setContentPaddingLeft(int value) {
-        CardView cardView = getView();
+    private static void setContentPaddingLeft(CardView cardView, int value) {
         cardView.setContentPadding(value, cardView.getContentPaddingTop(),
                 cardView.getContentPaddingRight(), cardView.getContentPaddingBottom());
     }
 
 
-    private void setContentPaddingTop(int value) {
-        CardView cardView = getView();
+    private static void setContentPaddingTop(CardView cardView, int value) {
         cardView.setContentPadding(cardView.getContentPaddingLeft(), value,
                 cardView.getContentPaddingRight(), cardView.getContentPaddingBottom());
     }
 
 
-    private void setContentPaddingRight(int value) {
-        CardView cardView = getView();
+    private static void setContentPaddingRight(CardView cardView, int value) {
         cardView.setContentPadding(cardView.getContentPaddingLeft(), cardView.getContentPaddingTop(),
                 value, cardView.getContentPaddingBottom());
     }
@@ -15,11 +15,12 @@ public class FabViewAttributes extends ImageViewAttributes {
     @Override
     protected void onRegisterAttrs() {
         super.onRegisterAttrs();
-        registerPixelAttr("elevation", getView()::setCompatElevation);
-        registerIntPixelAttr("fabCustomSize", getView()::setCustomSize);
-        registerIntPixelAttr("fabSize", getView()::setSize);
-        registerAttr("rippleColor", Color::parseColor, getView()::setRippleColor);
-        registerBooleanAttr("useCompatPadding", getView()::setUseCompatPadding);
+        registerPixelAttr("elevation", FloatingActionButton::setCompatElevation);
+        registerIntPixelAttr("fabCustomSize", FloatingActionButton::setCustomSize);
+        registerIntPixelAttr("fabSize", FloatingActionButton::setSize);
+        registerAttr("rippleColor", Color::parseColor,
+                (FloatingActionButton view, Integer color) -> view.setRippleColor(color));
+        registerBooleanAttr("useCompatPadding", FloatingActionButton::setUseCompatPadding);
     }
 
     @Override
@@ -33,40 +33,41 @@ public class ImageViewAttributes extends ViewAttributes {
     @Override
     protected void onRegisterAttrs() {
         super.onRegisterAttrs();
-        registerBooleanAttr("adjustViewBounds", getView()::setAdjustViewBounds);
-        registerIntPixelAttr("baseline", getView()::setBaseline);
-        registerBooleanAttr("baselineAlignBottom", getView()::setBaselineAlignBottom);
-        registerBooleanAttr("cropToPadding", getView()::setCropToPadding);
-        registerIntPixelAttr("maxHeight", getView()::setMaxHeight);
-        registerIntPixelAttr("maxWidth", getView()::setMaxWidth);
-        registerAttr("path", value ->
-                getDrawables().setupWithImage(getView(), wrapAsPath(value))
-        );
-        registerAttr("scaleType", getView()::getScaleType, getView()::setScaleType, SCALE_TYPES);
-        registerAttr("src", value ->
-                getDrawables().setupWithImage(getView(), value)
-        );
-        registerAttr("tint", Color::parseColor, value -> {
+        registerBooleanAttr("adjustViewBounds", ImageView::setAdjustViewBounds);
+        registerIntPixelAttr("baseline", ImageView::setBaseline);
+        registerBooleanAttr("baselineAlignBottom", ImageView::setBaselineAlignBottom);
+        registerBooleanAttr("cropToPadding", ImageView::setCropToPadding);
+        registerIntPixelAttr("maxHeight", ImageView::setMaxHeight);
+        registerIntPixelAttr("maxWidth", ImageView::setMaxWidth);
+        registerImageAttr("path", ImageViewAttributes::wrapAsPath);
+        registerAttr("scaleType", ImageView::getScaleType, ImageView::setScaleType, SCALE_TYPES);
+        registerImageAttr("src", value -> value);
+        registerAttr("tint", Color::parseColor, (ImageView view, Integer value) -> {
             // FIXME: 2018/10/13 setImageTineList not working
-            PorterDuff.Mode mode = ImageViewCompat.getImageTintMode(getView());
-            getView().setColorFilter(value, mode == null ? PorterDuff.Mode.SRC_ATOP : mode);
+            PorterDuff.Mode mode = ImageViewCompat.getImageTintMode(view);
+            view.setColorFilter(value, mode == null ? PorterDuff.Mode.SRC_ATOP : mode);
         });
-        registerAttr("tintMode", TINT_MODES::get, value -> {
-            ImageViewCompat.setImageTintMode(getView(), value);
+        registerAttr("tintMode", TINT_MODES::get, ImageViewCompat::setImageTintMode);
+        registerImageAttr("url", ImageViewAttributes::wrapAsUrl);
+    }
+
+    private void registerImageAttr(String name, ValueConverter<String> uriConverter) {
+        registerAttr(name, new ValueAttributeSpec() {
+            @Override
+            protected void apply(ViewAttributes attributes, String value) {
+                attributes.getDrawables().setupWithImage((ImageView) attributes.getView(), uriConverter.convert(value));
+            }
         });
-        registerAttr("url", value ->
-                getDrawables().setupWithImage(getView(), wrapAsUrl(value))
-        );
     }
 
-    private String wrapAsPath(String value) {
+    private static String wrapAsPath(String value) {
         if (!value.startsWith("file://")) {
             return "file://" + value;
         }
         return value;
     }
 
-    private String wrapAsUrl(String value) {
+    private static String wrapAsUrl(String value) {
         if (!value.startsWith("http://") && !value.startsWith("https://")) {
             return "http://" + value;
         }
@@ -1,6 +1,5 @@
 package com.stardust.autojs.core.ui.attribute;
 
-import android.annotation.SuppressLint;
 import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
@@ -15,7 +14,6 @@ import android.widget.CompoundButton;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 
-import com.stardust.autojs.core.internal.Functions;
 import com.stardust.autojs.core.ui.inflater.ResourceParser;
 import com.stardust.autojs.core.ui.inflater.util.Dimensions;
 import com.stardust.autojs.core.ui.inflater.util.Drawables;
@@ -26,8 +24,10 @@ import com.stardust.util.BiMap;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.stardust.autojs.core.ui.inflater.inflaters.BaseViewInflater.DRAWABLE_CACHE_QUALITIES;
 import static com.stardust.autojs.core.ui.inflater.inflaters.BaseViewInflater.IMPORTANT_FOR_ACCESSIBILITY;
@@ -39,73 +39,72 @@ import static com.stardust.autojs.core.ui.inflater.inflaters.BaseViewInflater.TE
 import static com.stardust.autojs.core.ui.inflater.inflaters.BaseViewInflater.TINT_MODES;
 import static com.stardust.autojs.core.ui.inflater.inflaters.BaseViewInflater.VISIBILITY;
 
+/**
+ * 视图属性表。每个ViewAttributes子类的属性只在第一次创建该类的实例时注册一次，所有实例共享同一张不可变的属性表，
+ * 表中的setter以视图为参数而不是捕获某个视图；每个实例只保存自身设置过的属性值和{@link ViewAttributeDelegate}。
+ */
 public class ViewAttributes {
 
-    public interface Getter<T> {
-        T get();
-    }
-
-    public interface Setter<T> {
-        void set(T value);
-    }
-
     public interface Attribute {
         String get();
 
         void set(String value);
     }
 
+    protected interface ValueConverter<T> {
+        T convert(String value);
+    }
 
-    protected class BaseAttribute implements Attribute {
-
-        private String mValue;
-        private final AttributeSetter mAttributeSetter;
-
-        public BaseAttribute(AttributeSetter attributeSetter) {
-            mAttributeSetter = attributeSetter;
-        }
-
-        @Override
-        public String get() {
-            return mValue;
-        }
+    protected interface ViewValueConverter<T> {
+        T convert(View view, String value);
+    }
 
-        @Override
-        public void set(String value) {
-            mValue = value;
-            mAttributeSetter.set(value);
-        }
+    protected interface ViewGetter<V extends View, T> {
+        T get(V view);
     }
 
-    protected interface AttributeGetter extends Getter<String> {
+    protected interface ViewSetter<V extends View, T> {
+        void set(V view, T value);
     }
 
+    /**
+     * 共享属性表中的一项，不能持有任何视图或ViewAttributes实例
+     */
+    protected static abstract class AttributeSpec {
 
-    protected interface AttributeSetter extends Setter<String> {
-    }
+        public abstract String get(ViewAttributes attributes);
 
-    protected interface ValueConverter<T> {
-        T convert(String value);
+        public abstract void set(ViewAttributes attributes, String value);
     }
 
-    protected static class MappingAttributeSetter<T> implements AttributeSetter {
-
-        private final ValueConverter<T> mValueConverter;
-        private final Setter<T> mSetter;
+    /**
+     * get()返回该视图最后一次设置的值
+     */
+    protected static abstract class ValueAttributeSpec extends AttributeSpec {
 
-        public MappingAttributeSetter(ValueConverter<T> valueConverter, Setter<T> Setter) {
-            mValueConverter = valueConverter;
-            mSetter = Setter;
+        @Override
+        public String get(ViewAttributes attributes) {
+            return attributes.mValues == null ? null : attributes.mValues.get(this);
         }
 
         @Override
-        public void set(String value) {
-            mSetter.set(mValueConverter.convert(value));
+        public void set(ViewAttributes attributes, String value) {
+            if (attributes.mValues == null) {
+                attributes.mValues = new HashMap<>(4);
+            }
+            attributes.mValues.put(this, value);
+            apply(attributes, value);
         }
+
+        protected abstract void apply(ViewAttributes attributes, String value);
     }
 
+    private static final Map<Class<?>, Map<String, AttributeSpec>> sAttributeTables = new ConcurrentHashMap<>();
 
-    private Map<String, Attribute> mAttributes = new HashMap<>();
+    private final Map<String, AttributeSpec> mAttributes;
+    // 只在构建属性表时不为null
+    private HashMap<String, AttributeSpec> mRegisteringAttributes;
+    private HashMap<AttributeSpec, String> mValues;
     private final Drawables mDrawables;
     private final View mView;
     private ViewAttributeDelegate mViewAttributeDelegate;
@@ -113,7 +112,21 @@ public class ViewAttributes {
     public ViewAttributes(ResourceParser resourceParser, View view) {
         mDrawables = resourceParser.getDrawables();
         mView = view;
-        init();
+        mAttributes = getAttributeTable();
+    }
+
+    private Map<String, AttributeSpec> getAttributeTable() {
+        Map<String, AttributeSpec> table = sAttributeTables.get(getClass());
+        if (table != null) {
+            return table;
+        }
+        // 并发时可能重复构建，得到的表是等价的
+        mRegisteringAttributes = new HashMap<>();
+        onRegisterAttrs();
+        table = Collections.unmodifiableMap(mRegisteringAttributes);
+        mRegisteringAttributes = null;
+        sAttributeTables.put(getClass(), table);
+        return table;
     }
 
     public void setViewAttributeDelegate(ViewAttributeDelegate viewAttributeDelegate) {
@@ -147,389 +160,413 @@ public class ViewAttributes {
                 }
             };
         }
-        return mAttributes.get(name);
+        AttributeSpec spec = mAttributes.get(name);
+        if (spec == null) {
+            return null;
+        }
+        return new Attribute() {
+            @Override
+            public String get() {
+                return spec.get(ViewAttributes.this);
+            }
+
+            @Override
+            public void set(String value) {
+                spec.set(ViewAttributes.this, value);
+            }
+        };
+    }
+
+    /**
+     * 设置属性，与get(name).set(value)等价但不创建Attribute对象
+     *
+     * @return 是否存在该属性
+     */
+    public boolean setAttr(String name, String value) {
+        if (mViewAttributeDelegate != null && mViewAttributeDelegate.has(name)) {
+            mViewAttributeDelegate.set(getView(), name, value, this::setAttrValue);
+            return true;
+        }
+        AttributeSpec spec = mAttributes.get(name);
+        if (spec == null) {
+            return false;
+        }
+        spec.set(this, value);
+        return true;
     }
 
     public String getAttrValue(String name) {
-        Attribute attribute = mAttributes.get(name);
-        if (attribute != null) {
-            return attribute.get();
+        AttributeSpec spec = mAttributes.get(name);
+        if (spec != null) {
+            return spec.get(this);
         }
         return null;
     }
 
     public void setAttrValue(String name, String value) {
-        Attribute attribute = mAttributes.get(name);
-        if (attribute != null) {
-            attribute.set(value);
+        AttributeSpec spec = mAttributes.get(name);
+        if (spec != null) {
+            spec.set(this, value);
         }
     }
 
-    @SuppressLint("ClickableViewAccessibility")
-    private void init() {
-        onRegisterAttrs();
-    }
-
-
+    /**
+     * 注册当前类的属性。每个类只调用一次，注册的setter不能引用当前实例或其视图。
+     */
     @CallSuper
     protected void onRegisterAttrs() {
-        registerAttr("id", Ids::parse, mView::setId);
-        registerAttr("gravity", Gravities::parse, this::setGravity);
-        registerAttrs(new String[]{"width", "layout_width", "w"}, this::parseDimension, this::setWidth);
-        registerAttrs(new String[]{"height", "layout_height", "h"}, this::parseDimension, this::setHeight);
-        registerDrawableAttrs(new String[]{"bg", "background"}, mView::setBackground);
-        registerAttr("layout_gravity", Gravities::parse, this::setLayoutGravity);
-        registerAttr("layout_weight", Float::parseFloat, this::setLayoutWeight);
-        registerAttr("layout_margin", this::setMargin);
-        registerAttr("layout_marginLeft", this::parseDimension, this::setMarginLeft);
-        registerAttr("layout_marginRight", this::parseDimension, this::setMarginRight);
-        registerAttr("layout_marginTop", this::parseDimension, this::setMarginTop);
-        registerAttr("layout_marginBottom", this::parseDimension, this::setMarginBottom);
-        registerAttr("layout_marginStart", this::parseDimension, this::setMarginStart);
-        registerAttr("layout_marginEnd", this::parseDimension, this::setMarginEnd);
-        registerAttr("padding",this::setPadding);
-        registerAttr("paddingLeft", this::parseDimension, this::setPaddingLeft);
-        registerAttr("paddingRight", this::parseDimension, this::setPaddingRight);
-        registerAttr("paddingTop", this::parseDimension, this::setPaddingTop);
-        registerAttr("paddingBottom", this::parseDimension, this::setPaddingBottom);
-        registerAttr("paddingStart", this::parseDimension, this::setPaddingStart);
-        registerAttr("paddingEnd", this::parseDimension, this::setPaddingEnd);
-        registerAttr("alpha", Float::parseFloat, mView::setAlpha);
-        registerAttr("backgroundTint", Color::parseColor, this::setBackgroundTint);
-        registerAttr("backgroundTintMode", TINT_MODES::get,
-                bind(ViewCompat::setBackgroundTintMode, mView));
-        registerAttr("clickable", Boolean::parseBoolean, mView::setClickable);
-        registerAttr("checked", Boolean::parseBoolean, this::setChecked);
-        registerAttr("contentDescription", this::parseString, mView::setContentDescription);
-        registerAttr("contextClickable", Boolean::parseBoolean, this::setContextClickable);
-        registerAttr("scaleX", Float::parseFloat, mView::setScaleX);
-        registerAttr("scaleY", Float::parseFloat, mView::setScaleY);
-        registerAttr("rotation", Float::parseFloat, mView::setRotation);
-        registerAttr("rotationX", Float::parseFloat, mView::setRotationX);
-        registerAttr("rotationY", Float::parseFloat, mView::setRotationY);
-        registerAttr("saveEnabled", Boolean::parseBoolean, mView::setSaveEnabled);
-        registerAttr("transformPivotX", this::parseDimensionToPixel, mView::setPivotX);
-        registerAttr("transformPivotY", this::parseDimensionToPixel, mView::setPivotY);
-        registerAttr("translationX", this::parseDimensionToPixel, mView::setTranslationX);
-        registerAttr("translationY", this::parseDimensionToPixel, mView::setTranslationY);
-        registerAttr("visibility", VISIBILITY::get, mView::setVisibility);
-        registerAttr("tag", this::parseString, mView::setTag);
-        registerAttr("soundEffectsEnabled", Boolean::parseBoolean, mView::setSoundEffectsEnabled);
-        registerAttr("scrollbarStyle", SCROLLBARS_STYLES::get, mView::setScrollBarStyle);
-        registerAttr("scrollX", this::parseDimensionToIntPixel, mView::setScrollX);
-        registerAttr("scrollY", this::parseDimensionToIntPixel, mView::setScrollY);
-        registerAttr("scrollIndicators", SCROLL_INDICATORS::get, bind(ViewCompat::setScrollIndicators, mView));
-        registerAttr("scrollbarDefaultDelayBeforeFade", Integer::valueOf, mView::setScrollBarDefaultDelayBeforeFade);
-        registerAttr("scrollbarFadeDuration", Integer::valueOf, mView::setScrollBarFadeDuration);
-        registerAttr("scrollbarSize", this::parseDimensionToIntPixel, mView::setScrollBarSize);
-        registerAttr("textAlignment", TEXT_ALIGNMENTS::get, mView::setTextAlignment);
-        registerAttr("textDirection", TEXT_DIRECTIONS::get, mView::setTextDirection);
-        registerAttr("transitionName", this::parseString, bind(ViewCompat::setTransitionName, mView));
-        registerAttr("translationZ", this::parseDimensionToPixel, bind(ViewCompat::setTranslationZ, mView));
-        registerAttr("scrollbars", this::setScrollbars);
-        registerAttr("drawingCacheQuality", DRAWABLE_CACHE_QUALITIES::get, mView::setDrawingCacheQuality);
-        registerAttr("duplicateParentState", Boolean::parseBoolean, mView::setDuplicateParentStateEnabled);
-        registerAttr("fadeScrollbars", Boolean::valueOf, mView::setScrollbarFadingEnabled);
-        registerAttr("fadingEdgeLength", this::parseDimensionToIntPixel, mView::setFadingEdgeLength);
-        registerAttr("filterTouchesWhenObscured", Boolean::valueOf, mView::setFilterTouchesWhenObscured);
-        registerAttr("fitsSystemWindows", Boolean::valueOf, mView::setFitsSystemWindows);
-        registerAttr("focusable", Boolean::valueOf, mView::setFocusable);
-        registerAttr("focusableInTouchMode", Boolean::valueOf, mView::setFocusableInTouchMode);
-        registerAttr("hapticFeedbackEnabled", Boolean::valueOf, mView::setHapticFeedbackEnabled);
-        registerAttr("isScrollContainer", Boolean::valueOf, mView::setScrollContainer);
-        registerAttr("keepScreenOn", Boolean::valueOf, mView::setKeepScreenOn);
-        registerAttr("longClickable", Boolean::valueOf, mView::setLongClickable);
-        registerAttr("minHeight", this::parseDimensionToIntPixel, mView::setMinimumHeight);
-        registerAttr("minWidth", this::parseDimensionToIntPixel, mView::setMinimumWidth);
-        registerAttr("elevation", this::parseDimensionToIntPixel, this::setElevation);
-        registerAttr("forceHasOverlappingRendering", Boolean::valueOf, this::forceHasOverlappingRendering);
-        registerDrawableAttr("foreground", this::setForeground);
-        registerAttr("foregroundGravity", Gravities::parse, this::setForegroundGravity);
-        registerAttr("foregroundTintMode", TINT_MODES::get, this::setForegroundTintMode);
-        registerAttr("importantForAccessibility", IMPORTANT_FOR_ACCESSIBILITY::get, mView::setImportantForAccessibility);
-        registerAttr("layoutDirection", LAYOUT_DIRECTIONS::get, mView::setLayoutDirection);
-    }
-
-    protected void setForegroundTintMode(PorterDuff.Mode mode) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            mView.setForegroundTintMode(mode);
+        registerIdAttr("id", View::setId);
+        registerAttr("gravity", Gravities::parse, ViewAttributes::setGravity);
+        registerDimensionAttrs(new String[]{"width", "layout_width", "w"}, ViewAttributes::setWidth);
+        registerDimensionAttrs(new String[]{"height", "layout_height", "h"}, ViewAttributes::setHeight);
+        registerDrawableAttrs(new String[]{"bg", "background"}, View::setBackground);
+        registerAttr("layout_gravity", Gravities::parse, ViewAttributes::setLayoutGravity);
+        registerAttr("layout_weight", Float::parseFloat, ViewAttributes::setLayoutWeight);
+        registerAttr("layout_margin", ViewAttributes::setMargin);
+        registerDimensionAttr("layout_marginLeft", ViewAttributes::setMarginLeft);
+        registerDimensionAttr("layout_marginRight", ViewAttributes::setMarginRight);
+        registerDimensionAttr("layout_marginTop", ViewAttributes::setMarginTop);
+        registerDimensionAttr("layout_marginBottom", ViewAttributes::setMarginBottom);
+        registerDimensionAttr("layout_marginStart", ViewAttributes::setMarginStart);
+        registerDimensionAttr("layout_marginEnd", ViewAttributes::setMarginEnd);
+        registerAttr("padding", ViewAttributes::setPadding);
+        registerDimensionAttr("paddingLeft", ViewAttributes::setPaddingLeft);
+        registerDimensionAttr("paddingRight", ViewAttributes::setPaddingRight);
+        registerDimensionAttr("paddingTop", ViewAttributes::setPaddingTop);
+        registerDimensionAttr("paddingBottom", ViewAttributes::setPaddingBottom);
+        registerDimensionAttr("paddingStart", ViewAttributes::setPaddingStart);
+        registerDimensionAttr("paddingEnd", ViewAttributes::setPaddingEnd);
+        registerAttr("alpha", Float::parseFloat, View::setAlpha);
+        registerAttr("backgroundTint", Color::parseColor, ViewAttributes::setBackgroundTint);
+        registerAttr("backgroundTintMode", TINT_MODES::get, ViewCompat::setBackgroundTintMode);
+        registerBooleanAttr("clickable", View::setClickable);
+        registerBooleanAttr("checked", ViewAttributes::setChecked);
+        registerStringAttr("contentDescription", View::setContentDescription);
+        registerBooleanAttr("contextClickable", ViewAttributes::setContextClickable);
+        registerAttr("scaleX", Float::parseFloat, View::setScaleX);
+        registerAttr("scaleY", Float::parseFloat, View::setScaleY);
+        registerAttr("rotation", Float::parseFloat, View::setRotation);
+        registerAttr("rotationX", Float::parseFloat, View::setRotationX);
+        registerAttr("rotationY", Float::parseFloat, View::setRotationY);
+        registerBooleanAttr("saveEnabled", View::setSaveEnabled);
+        registerPixelAttr("transformPivotX", View::setPivotX);
+        registerPixelAttr("transformPivotY", View::setPivotY);
+        registerPixelAttr("translationX", View::setTranslationX);
+        registerPixelAttr("translationY", View::setTranslationY);
+        registerAttr("visibility", VISIBILITY::get, View::setVisibility);
+        registerStringAttr("tag", (View view, String tag) -> view.setTag(tag));
+        registerBooleanAttr("soundEffectsEnabled", View::setSoundEffectsEnabled);
+        registerAttr("scrollbarStyle", SCROLLBARS_STYLES::get, View::setScrollBarStyle);
+        registerIntPixelAttr("scrollX", View::setScrollX);
+        registerIntPixelAttr("scrollY", View::setScrollY);
+        registerAttr("scrollIndicators", SCROLL_INDICATORS::get,
+                (View view, Integer indicators) -> ViewCompat.setScrollIndicators(view, indicators));
+        registerAttr("scrollbarDefaultDelayBeforeFade", Integer::parseInt, View::setScrollBarDefaultDelayBeforeFade);
+        registerAttr("scrollbarFadeDuration", Integer::parseInt, View::setScrollBarFadeDuration);
+        registerIntPixelAttr("scrollbarSize", View::setScrollBarSize);
+        registerAttr("textAlignment", TEXT_ALIGNMENTS::get, View::setTextAlignment);
+        registerAttr("textDirection", TEXT_DIRECTIONS::get, View::setTextDirection);
+        registerStringAttr("transitionName", ViewCompat::setTransitionName);
+        registerPixelAttr("translationZ", ViewCompat::setTranslationZ);
+        registerAttr("scrollbars", ViewAttributes::setScrollbars);
+        registerAttr("drawingCacheQuality", DRAWABLE_CACHE_QUALITIES::get, View::setDrawingCacheQuality);
+        registerBooleanAttr("duplicateParentState", View::setDuplicateParentStateEnabled);
+        registerBooleanAttr("fadeScrollbars", View::setScrollbarFadingEnabled);
+        registerIntPixelAttr("fadingEdgeLength", View::setFadingEdgeLength);
+        registerBooleanAttr("filterTouchesWhenObscured", View::setFilterTouchesWhenObscured);
+        registerBooleanAttr("fitsSystemWindows", View::setFitsSystemWindows);
+        registerBooleanAttr("focusable", (View view, Boolean focusable) -> view.setFocusable(focusable));
+        registerBooleanAttr("focusableInTouchMode", View::setFocusableInTouchMode);
+        registerBooleanAttr("hapticFeedbackEnabled", View::setHapticFeedbackEnabled);
+        registerBooleanAttr("isScrollContainer", View::setScrollContainer);
+        registerBooleanAttr("keepScreenOn", View::setKeepScreenOn);
+        registerBooleanAttr("longClickable", View::setLongClickable);
+        registerIntPixelAttr("minHeight", View::setMinimumHeight);
+        registerIntPixelAttr("minWidth", View::setMinimumWidth);
+        registerIntPixelAttr("elevation", ViewAttributes::setElevation);
+        registerBooleanAttr("forceHasOverlappingRendering", ViewAttributes::forceHasOverlappingRendering);
+        registerDrawableAttr("foreground", ViewAttributes::setForeground);
+        registerAttr("foregroundGravity", Gravities::parse, ViewAttributes::setForegroundGravity);
+        registerAttr("foregroundTintMode", TINT_MODES::get, ViewAttributes::setForegroundTintMode);
+        registerAttr("importantForAccessibility", IMPORTANT_FOR_ACCESSIBILITY::get, View::setImportantForAccessibility);
+        registerAttr("layoutDirection", LAYOUT_DIRECTIONS::get, View::setLayoutDirection);
+    }
+
+    protected void registerAttr(String name, AttributeSpec spec) {
+        if (mRegisteringAttributes == null) {
+            throw new IllegalStateException("attributes can only be registered in onRegisterAttrs()");
         }
+        mRegisteringAttributes.put(name, spec);
     }
 
-    protected void setForegroundGravity(int g) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            mView.setForegroundGravity(g);
+    protected void registerAttrs(String[] names, AttributeSpec spec) {
+        for (String name : names) {
+            registerAttr(name, spec);
         }
     }
 
-    protected void setForeground(Drawable foreground) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            mView.setForeground(foreground);
-        }
+    protected <V extends View, T> void registerAttr(String name, ValueConverter<T> converter, ViewSetter<V, T> setter) {
+        registerAttr(name, convertingSpec((view, value) -> converter.convert(value), setter));
     }
 
-    protected void forceHasOverlappingRendering(boolean b) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            mView.forceHasOverlappingRendering(b);
-        }
+    protected <V extends View, T> void registerAttrs(String[] names, ValueConverter<T> converter, ViewSetter<V, T> setter) {
+        registerAttrs(names, convertingSpec((view, value) -> converter.convert(value), setter));
     }
 
-    protected void setElevation(int e) {
-        ViewCompat.setElevation(mView, e);
+    protected <V extends View> void registerAttr(String name, ViewSetter<V, String> setter) {
+        registerAttr(name, convertingSpec((view, value) -> value, setter));
     }
 
-    protected void setScrollbars(String scrollbars) {
-        for (String str : scrollbars.split("\\|")) {
-            if (str.equals("horizontal")) {
-                mView.setHorizontalScrollBarEnabled(true);
-            } else if (str.equals("vertical")) {
-                mView.setVerticalScrollBarEnabled(true);
+    protected <V extends View, T> void registerAttr(String name, ViewGetter<V, T> getter, ViewSetter<V, T> setter, BiMap<String, T> biMap) {
+        registerAttr(name, new AttributeSpec() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public String get(ViewAttributes attributes) {
+                return biMap.getKey(getter.get((V) attributes.getView()));
             }
-        }
-    }
 
-
-    protected float parseDimensionToPixel(String value) {
-        return Dimensions.parseToPixel(mView, value);
+            @SuppressWarnings("unchecked")
+            @Override
+            public void set(ViewAttributes attributes, String value) {
+                setter.set((V) attributes.getView(), biMap.get(value));
+            }
+        });
     }
 
-    protected int parseDimensionToIntPixel(String value) {
-        return Dimensions.parseToIntPixel(value, mView);
+    protected <V extends View> void registerDrawableAttr(String name, ViewSetter<V, Drawable> setter) {
+        registerAttr(name, drawableSpec(setter));
     }
 
-
-    protected int parseDimension(String dim) {
-        switch (dim) {
-            case "wrap_content":
-                return ViewGroup.LayoutParams.WRAP_CONTENT;
-            case "fill_parent":
-            case "match_parent":
-                return ViewGroup.LayoutParams.MATCH_PARENT;
-            default:
-                return Dimensions.parseToPixel(dim, mView, (ViewGroup) mView.getParent(), true);
-        }
+    protected <V extends View> void registerDrawableAttrs(String[] names, ViewSetter<V, Drawable> setter) {
+        registerAttrs(names, drawableSpec(setter));
     }
 
-    protected void registerAttr(String name, Attribute attribute) {
-        mAttributes.put(name, attribute);
+    protected <V extends View> void registerDimensionAttr(String name, ViewSetter<V, Integer> setter) {
+        registerAttr(name, convertingSpec(ViewAttributes::parseDimension, setter));
     }
 
-    protected <V> void registerAttr(String name, Getter<V> getter, Setter<V> setter, BiMap<String, V> biMap) {
-        mAttributes.put(name, new Attribute() {
-            @Override
-            public String get() {
-                return biMap.getKey(getter.get());
-            }
-
-            @Override
-            public void set(String value) {
-                V v = biMap.get(value);
-                setter.set(v);
-            }
-        });
+    protected <V extends View> void registerDimensionAttrs(String[] names, ViewSetter<V, Integer> setter) {
+        registerAttrs(names, convertingSpec(ViewAttributes::parseDimension, setter));
     }
 
-    protected void registerAttr(String name, AttributeGetter getter, AttributeSetter setter) {
-        mAttributes.put(name, new Attribute() {
-            @Override
-            public String get() {
-                return getter.get();
-            }
-
-            @Override
-            public void set(String value) {
-                setter.set(value);
-            }
-        });
+    protected <V extends View> void registerPixelAttr(String name, ViewSetter<V, Float> setter) {
+        registerAttr(name, convertingSpec((view, value) -> Dimensions.parseToPixel(view, value), setter));
     }
 
-    protected void registerAttr(String name, AttributeSetter setter) {
-        mAttributes.put(name, new BaseAttribute(setter));
+    protected <V extends View> void registerIntPixelAttr(String name, ViewSetter<V, Integer> setter) {
+        registerAttr(name, convertingSpec((view, value) -> Dimensions.parseToIntPixel(value, view), setter));
     }
 
-    protected <T> void registerAttr(String name, ValueConverter<T> converter, Setter<T> applier) {
-        mAttributes.put(name, new BaseAttribute(new MappingAttributeSetter<>(converter, applier)));
+    protected <V extends View> void registerStringAttr(String name, ViewSetter<V, String> setter) {
+        registerAttr(name, convertingSpec((view, value) -> Strings.parse(view, value), setter));
     }
 
-    protected <T> void registerAttrs(String[] names, ValueConverter<T> converter, Setter<T> applier) {
-        registerAttrs(names, new MappingAttributeSetter<>(converter, applier));
+    protected <V extends View> void registerIdAttr(String name, ViewSetter<V, Integer> setter) {
+        registerAttr(name, Ids::parse, setter);
     }
 
-    protected <T> void registerAttrs(String[] names, AttributeSetter setter) {
-        registerAttrs(names, new BaseAttribute(setter));
+    protected <V extends View> void registerBooleanAttr(String name, ViewSetter<V, Boolean> setter) {
+        registerAttr(name, Boolean::parseBoolean, setter);
     }
 
-    protected <T> void registerAttrs(String[] names, Attribute attribute) {
-        for (String name : names) {
-            mAttributes.put(name, attribute);
-        }
+    private static <V extends View, T> AttributeSpec convertingSpec(ViewValueConverter<T> converter, ViewSetter<V, T> setter) {
+        return new ValueAttributeSpec() {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void apply(ViewAttributes attributes, String value) {
+                View view = attributes.getView();
+                setter.set((V) view, converter.convert(view, value));
+            }
+        };
     }
 
-    protected void registerDrawableAttr(String name, Setter<Drawable> applier) {
-        mAttributes.put(name, new BaseAttribute(new MappingAttributeSetter<>(
-                this::parseDrawable, applier)));
+    private static <V extends View> AttributeSpec drawableSpec(ViewSetter<V, Drawable> setter) {
+        return new ValueAttributeSpec() {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void apply(ViewAttributes attributes, String value) {
+                setter.set((V) attributes.getView(), attributes.parseDrawable(value));
+            }
+        };
     }
 
+    protected Drawable parseDrawable(String value) {
+        return mDrawables.parse(mView, value);
+    }
 
-    protected void registerDrawableAttrs(String[] names, Setter<Drawable> applier) {
-        registerAttrs(names, new BaseAttribute(new MappingAttributeSetter<>(
-                this::parseDrawable, applier)));
+    protected static int parseDimension(View view, String dim) {
+        switch (dim) {
+            case "wrap_content":
+                return ViewGroup.LayoutParams.WRAP_CONTENT;
+            case "fill_parent":
+            case "match_parent":
+                return ViewGroup.LayoutParams.MATCH_PARENT;
+            default:
+                return Dimensions.parseToPixel(dim, view, (ViewGroup) view.getParent(), true);
+        }
     }
 
-    protected void registerPixelAttr(String name, Setter<Float> applier) {
-        registerAttr(name, this::parseDimensionToPixel, applier);
+    protected static void setForegroundTintMode(View view, PorterDuff.Mode mode) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            view.setForegroundTintMode(mode);
+        }
     }
 
-    protected void registerIntPixelAttr(String name, Setter<Integer> applier) {
-        registerAttr(name, this::parseDimensionToIntPixel, applier);
+    protected static void setForegroundGravity(View view, int g) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            view.setForegroundGravity(g);
+        }
     }
 
-    protected void registerIdAttr(String name, Setter<Integer> applier) {
-        registerAttr(name, Ids::parse, applier);
+    protected static void setForeground(View view, Drawable foreground) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            view.setForeground(foreground);
+        }
     }
 
-    protected void registerBooleanAttr(String name, Setter<Boolean> applier) {
-        registerAttr(name, Boolean::parseBoolean, applier);
+    protected static void forceHasOverlappingRendering(View view, boolean b) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            view.forceHasOverlappingRendering(b);
+        }
     }
 
+    protected static void setElevation(View view, int e) {
+        ViewCompat.setElevation(view, e);
+    }
 
-    protected Drawable parseDrawable(String value) {
-        return mDrawables.parse(mView, value);
+    protected static void setScrollbars(View view, String scrollbars) {
+        for (String str : scrollbars.split("\\|")) {
+            if (str.equals("horizontal")) {
+                view.setHorizontalScrollBarEnabled(true);
+            } else if (str.equals("vertical")) {
+                view.setVerticalScrollBarEnabled(true);
+            }
+        }
     }
 
-    protected boolean setGravity(int g) {
+    protected static void setGravity(View view, int g) {
         try {
-            Method setGravity = mView.getClass().getMethod("setGravity", int.class);
-            setGravity.invoke(mView, g);
-            return true;
+            Method setGravity = view.getClass().getMethod("setGravity", int.class);
+            setGravity.invoke(view, g);
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
         }
     }
 
-    protected void setMargin(String  margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
-            int[] pixels = Dimensions.parseToIntPixelArray(getView(), margin);
+    protected static void setMargin(View view, String margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
+            int[] pixels = Dimensions.parseToIntPixelArray(view, margin);
             params.setMargins(pixels[0], pixels[1], pixels[2], pixels[3]);
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
                 params.setMarginStart(pixels[0]);
                 params.setMarginEnd(pixels[2]);
             }
-            getView().setLayoutParams(params);
+            view.setLayoutParams(params);
         }
     }
 
-    protected void setMarginLeft(int margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
+    protected static void setMarginLeft(View view, int margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
             params.leftMargin = margin;
         }
     }
 
-    protected void setMarginRight(int margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
+    protected static void setMarginRight(View view, int margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
             params.rightMargin = margin;
         }
     }
 
-    protected void setMarginTop(int margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
+    protected static void setMarginTop(View view, int margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
             params.topMargin = margin;
         }
     }
 
-    protected void setMarginBottom(int margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
+    protected static void setMarginBottom(View view, int margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
             params.bottomMargin = margin;
-
-
         }
     }
 
-    protected void setMarginStart(int margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
+    protected static void setMarginStart(View view, int margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
             params.setMarginStart(margin);
         }
     }
 
-    protected void setMarginEnd(int margin) {
-        if (mView.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
-            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) mView.getLayoutParams();
+    protected static void setMarginEnd(View view, int margin) {
+        if (view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
             params.setMarginEnd(margin);
         }
     }
 
-    protected void setPadding(String padding) {
-        int[] pixels = Dimensions.parseToIntPixelArray(getView(), padding);
-        mView.setPadding(pixels[0], pixels[1], pixels[2], pixels[3]);
+    protected static void setPadding(View view, String padding) {
+        int[] pixels = Dimensions.parseToIntPixelArray(view, padding);
+        view.setPadding(pixels[0], pixels[1], pixels[2], pixels[3]);
     }
 
-    protected void setPaddingLeft(int padding) {
-        mView.setPadding(padding, mView.getPaddingTop(), mView.getPaddingRight(), mView.getPaddingBottom());
+    protected static void setPaddingLeft(View view, int padding) {
+        view.setPadding(padding, view.getPaddingTop(), view.getPaddingRight(), view.getPaddingBottom());
     }
 
-
-    protected void setPaddingRight(int padding) {
-        mView.setPadding(mView.getPaddingLeft(), mView.getPaddingTop(), padding, mView.getPaddingBottom());
+    protected static void setPaddingRight(View view, int padding) {
+        view.setPadding(view.getPaddingLeft(), view.getPaddingTop(), padding, view.getPaddingBottom());
     }
 
-
-    protected void setPaddingTop(int padding) {
-        mView.setPadding(mView.getPaddingLeft(), padding, mView.getPaddingRight(), mView.getPaddingBottom());
+    protected static void setPaddingTop(View view, int padding) {
+        view.setPadding(view.getPaddingLeft(), padding, view.getPaddingRight(), view.getPaddingBottom());
     }
 
-
-    protected void setPaddingStart(int padding) {
-        mView.setPaddingRelative(padding, mView.getPaddingTop(), mView.getPaddingEnd(), mView.getPaddingBottom());
+    protected static void setPaddingStart(View view, int padding) {
+        view.setPaddingRelative(padding, view.getPaddingTop(), view.getPaddingEnd(), view.getPaddingBottom());
     }
 
-
-    protected void setPaddingEnd(int padding) {
-        mView.setPaddingRelative(mView.getPaddingStart(), mView.getPaddingTop(), padding, mView.getPaddingBottom());
+    protected static void setPaddingEnd(View view, int padding) {
+        view.setPaddingRelative(view.getPaddingStart(), view.getPaddingTop(), padding, view.getPaddingBottom());
     }
 
-
-    protected void setPaddingBottom(int padding) {
-        mView.setPadding(mView.getPaddingLeft(), mView.getPaddingTop(), mView.getPaddingRight(), padding);
+    protected static void setPaddingBottom(View view, int padding) {
+        view.setPadding(view.getPaddingLeft(), view.getPaddingTop(), view.getPaddingRight(), padding);
     }
 
-    protected void setBackgroundTint(int color) {
-        ViewCompat.setBackgroundTintList(mView, ColorStateList.valueOf(color));
+    protected static void setBackgroundTint(View view, int color) {
+        ViewCompat.setBackgroundTintList(view, ColorStateList.valueOf(color));
     }
 
-    protected void setContextClickable(boolean clickable) {
+    protected static void setContextClickable(View view, boolean clickable) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            mView.setContextClickable(clickable);
+            view.setContextClickable(clickable);
         }
-
     }
 
-    protected void setChecked(boolean checked) {
-        if (mView instanceof CompoundButton) {
-            ((CompoundButton) mView).setChecked(checked);
+    protected static void setChecked(View view, boolean checked) {
+        if (view instanceof CompoundButton) {
+            ((CompoundButton) view).setChecked(checked);
         }
     }
 
-    protected void setLayoutGravity(int gravity) {
-        ViewParent parent = mView.getParent();
-        ViewGroup.LayoutParams layoutParams = mView.getLayoutParams();
+    protected static void setLayoutGravity(View view, int gravity) {
+        ViewParent parent = view.getParent();
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
         if (parent instanceof LinearLayout) {
             ((LinearLayout.LayoutParams) layoutParams).gravity = gravity;
-            mView.setLayoutParams(layoutParams);
+            view.setLayoutParams(layoutParams);
         } else if (parent instanceof FrameLayout) {
             ((FrameLayout.LayoutParams) layoutParams).gravity = gravity;
-            mView.setLayoutParams(layoutParams);
+            view.setLayoutParams(layoutParams);
         } else {
             try {
                 Field field = layoutParams.getClass().getField("gravity");
                 field.set(layoutParams, gravity);
-                mView.setLayoutParams(layoutParams);
+                view.setLayoutParams(layoutParams);
             } catch (Exception e) {
                 e.printStackTrace();
                 //TODO throw or ?
@@ -537,35 +574,25 @@ public class ViewAttributes {
         }
     }
 
-    protected void setLayoutWeight(float weight) {
-        ViewParent parent = mView.getParent();
-        ViewGroup.LayoutParams layoutParams = mView.getLayoutParams();
+    protected static void setLayoutWeight(View view, float weight) {
+        ViewParent parent = view.getParent();
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
         if (parent instanceof LinearLayout) {
             ((LinearLayout.LayoutParams) layoutParams).weight = weight;
-            mView.setLayoutParams(layoutParams);
+            view.setLayoutParams(layoutParams);
         }
     }
 
-
-    protected void setWidth(int width) {
-        ViewGroup.LayoutParams layoutParams = mView.getLayoutParams();
+    protected static void setWidth(View view, int width) {
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
         layoutParams.width = width;
-        mView.setLayoutParams(layoutParams);
+        view.setLayoutParams(layoutParams);
     }
 
-
-    protected void setHeight(int height) {
-        ViewGroup.LayoutParams layoutParams = mView.getLayoutParams();
+    protected static void setHeight(View view, int height) {
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
         layoutParams.height = height;
-        mView.setLayoutParams(layoutParams);
-    }
-
-    protected String parseString(String value) {
-        return Strings.parse(mView, value);
-    }
-
-    protected static <T1, T2> Setter<T2> bind(Functions.VoidFunc2<T1, T2> func2, T1 t1) {
-        return value -> func2.call(t1, value);
+        view.setLayoutParams(layoutParams);
     }
 
 }
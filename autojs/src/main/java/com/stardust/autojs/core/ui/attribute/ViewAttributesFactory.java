@@ -9,6 +9,8 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.stardust.autojs.core.ui.inflater.ResourceParser;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import androidx.cardview.widget.CardView;
 
@@ -20,6 +22,8 @@ public class ViewAttributesFactory {
     }
 
     private static HashMap<Class<? extends View>, ViewAttributesCreator> sViewAttributesCreators = new HashMap<>();
+    // 具体的视图类 -> 沿父类查找到的creator
+    private static final Map<Class<?>, ViewAttributesCreator> sResolvedCreators = new ConcurrentHashMap<>();
 
     static {
         sViewAttributesCreators.put(ImageView.class, ImageViewAttributes::new);
@@ -31,17 +35,26 @@ public class ViewAttributesFactory {
 
     public static void put(Class<? extends View> clazz, ViewAttributesCreator creator) {
         sViewAttributesCreators.put(clazz, creator);
+        sResolvedCreators.clear();
     }
 
     public static ViewAttributes create(ResourceParser resourceParser, View view) {
-        Class viewClass = view.getClass();
+        ViewAttributesCreator creator = sResolvedCreators.get(view.getClass());
+        if (creator == null) {
+            creator = resolveCreator(view.getClass());
+            sResolvedCreators.put(view.getClass(), creator);
+        }
+        return creator.create(resourceParser, view);
+    }
+
+    private static ViewAttributesCreator resolveCreator(Class<?> viewClass) {
         while (viewClass != null && !viewClass.equals(Object.class)) {
             ViewAttributesCreator creator = sViewAttributesCreators.get(viewClass);
             if (creator != null) {
-                return creator.create(resourceParser, view);
+                return creator;
             }
             viewClass = viewClass.getSuperclass();
         }
-        return new ViewAttributes(resourceParser, view);
+        return ViewAttributes::new;
     }
 }
@@ -0,0 +1,15 @@
+package com.stardust.autojs.core.ui.inflater;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 计算动态属性的值
+ */
+public interface BindingEvaluator {
+
+    /**
+     * @return 绑定后的属性值，为null时不设置该属性(例如没有绑定上下文或者计算出错)
+     */
+    @Nullable
+    String evaluate(BindingExpression expression);
+}
@@ -0,0 +1,90 @@
+package com.stardust.autojs.core.ui.inflater;
+
+import com.stardust.util.LimitedHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 动态属性值(例如"名字: {{this.name}}")预先拆分后的结果，由若干文本片段和{{...}}中的表达式组成。
+ * <p>
+ * 同一个属性值只解析一次，表达式对象可以作为缓存编译结果的键。
+ */
+public class BindingExpression {
+
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+    private static final Map<String, BindingExpression> sCache = new LimitedHashMap<>(MAX_CACHED_EXPRESSIONS);
+
+    private final String mSource;
+    // 依次为文本片段和表达式，偶数下标为文本(可能为空字符串)，奇数下标为表达式
+    private final List<String> mParts;
+
+    private BindingExpression(String source, List<String> parts) {
+        mSource = source;
+        mParts = parts;
+    }
+
+    /**
+     * 解析属性值，相同的属性值返回同一个对象
+     */
+    public static BindingExpression parse(String value) {
+        synchronized (sCache) {
+            BindingExpression expression = sCache.get(value);
+            if (expression != null) {
+                return expression;
+            }
+        }
+        BindingExpression expression = new BindingExpression(value, split(value));
+        synchronized (sCache) {
+            sCache.put(value, expression);
+        }
+        return expression;
+    }
+
+    private static List<String> split(String value) {
+        ArrayList<String> parts = new ArrayList<>(3);
+        int start = 0;
+        int i;
+        while ((i = value.indexOf("{{", start)) >= 0) {
+            int j = value.indexOf("}}", i + 1);
+            if (j < 0) {
+                break;
+            }
+            parts.add(value.substring(start, i));
+            parts.add(value.substring(i + 2, j));
+            start = j + 2;
+        }
+        parts.add(value.substring(start));
+        parts.trimToSize();
+        return Collections.unmodifiableList(parts);
+    }
+
+    public String getSource() {
+        return mSource;
+    }
+
+    public int getExpressionCount() {
+        return mParts.size() / 2;
+    }
+
+    /**
+     * @return 第i个{{...}}中的表达式
+     */
+    public String getExpression(int i) {
+        return mParts.get(i * 2 + 1);
+    }
+
+    /**
+     * @return 第i个表达式之前的文本，i等于表达式个数时为最后一个表达式之后的文本
+     */
+    public String getText(int i) {
+        return mParts.get(i * 2);
+    }
+
+    @Override
+    public String toString() {
+        return mSource;
+    }
+}
@@ -39,15 +39,18 @@ import com.stardust.autojs.core.ui.widget.JsSpinner;
 import com.stardust.autojs.core.ui.widget.JsTabLayout;
 import com.stardust.autojs.core.ui.widget.JsToolbar;
 import com.stardust.autojs.core.ui.xml.XmlConverter;
+import com.stardust.util.LimitedHashMap;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.io.ByteArrayInputStream;
+import java.lang.reflect.Constructor;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -60,13 +63,22 @@ public class DynamicLayoutInflater {
     public static final int FLAG_JUST_DYNAMIC_ATTRS = 2;
 
     private static final String LOG_TAG = "DynamicLayoutInflater";
+    private static final int MAX_CACHED_LAYOUTS = 32;
+
+    // 布局xml -> 转换后的xml，以及转换后的xml -> 解析后的文档(其节点上挂有LayoutTemplate)。缓存的文档只读
+    private static final Map<String, String> sConvertedXmlCache = new LimitedHashMap<>(MAX_CACHED_LAYOUTS);
+    private static final Map<String, Document> sDocumentCache = new LimitedHashMap<>(MAX_CACHED_LAYOUTS);
+    private static final Map<String, Constructor<?>> sViewConstructors = new ConcurrentHashMap<>();
 
     private Map<String, ViewInflater<?>> mViewAttrSetters = new HashMap<>();
     private Map<String, ViewCreator<?>> mViewCreators = new HashMap<>();
+    private final Map<Class<?>, ViewInflater<?>> mViewInflaterCache = new HashMap<>();
     private Context mContext;
     private ResourceParser mResourceParser;
     @NonNull
     private LayoutInflaterDelegate mLayoutInflaterDelegate = LayoutInflaterDelegate.NO_OP;
+    @Nullable
+    private BindingEvaluator mBindingEvaluator;
     private int mInflateFlags;
 
     public DynamicLayoutInflater(ResourceParser resourceParser) {
@@ -80,6 +92,7 @@ public class DynamicLayoutInflater {
         this.mContext = inflater.mContext;
         this.mViewAttrSetters = new HashMap<>(inflater.mViewAttrSetters);
         this.mViewCreators = new HashMap<>(inflater.mViewCreators);
+        this.mBindingEvaluator = inflater.mBindingEvaluator;
     }
 
     public int getInflateFlags() {
@@ -113,6 +126,18 @@ public class DynamicLayoutInflater {
         mLayoutInflaterDelegate = layoutInflaterDelegate;
     }
 
+    @Nullable
+    public BindingEvaluator getBindingEvaluator() {
+        return mBindingEvaluator;
+    }
+
+    /**
+     * 设置后动态属性在交给delegate和ViewInflater之前先计算为绑定后的值，并且值没有变化时不会重新设置
+     */
+    public void setBindingEvaluator(@Nullable BindingEvaluator bindingEvaluator) {
+        mBindingEvaluator = bindingEvaluator;
+    }
+
     protected void registerViewAttrSetters() {
         registerViewAttrSetter(TextView.class.getName(), new TextViewInflater<>(mResourceParser));
         registerViewAttrSetter(EditText.class.getName(), new TextViewInflater<>(mResourceParser));
@@ -132,6 +157,9 @@ public class DynamicLayoutInflater {
 
     public void registerViewAttrSetter(String fullName, ViewInflater<?> inflater) {
         mViewAttrSetters.put(fullName, inflater);
+        synchronized (mViewInflaterCache) {
+            mViewInflaterCache.clear();
+        }
         ViewCreator<?> creator = inflater.getCreator();
         if (creator != null) {
             mViewCreators.put(fullName, creator);
@@ -165,26 +193,59 @@ public class DynamicLayoutInflater {
 
 
     protected View doInflation(InflateContext context, String xml, @Nullable ViewGroup parent, boolean attachToParent) {
+        return inflate(context, parseLayout(xml).getDocumentElement(), parent, attachToParent);
+    }
+
+    /**
+     * 解析转换后的布局xml。结果会被缓存并在多次inflate之间共享，不能修改。
+     */
+    public Document parseLayout(String xml) {
+        synchronized (sDocumentCache) {
+            Document document = sDocumentCache.get(xml);
+            if (document != null) {
+                return document;
+            }
+        }
+        Document document;
         try {
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             dbf.setNamespaceAware(true);
             DocumentBuilder db = dbf.newDocumentBuilder();
-            Document document = db.parse(new ByteArrayInputStream(xml.getBytes()));
-            return inflate(context, document.getDocumentElement(), parent, attachToParent);
+            document = db.parse(new ByteArrayInputStream(xml.getBytes()));
         } catch (Exception e) {
             throw new InflateException(e);
         }
+        // 在文档被共享之前构建好整棵模板树
+        LayoutTemplate.of(document.getDocumentElement());
+        synchronized (sDocumentCache) {
+            sDocumentCache.put(xml, document);
+        }
+        return document;
+    }
+
+    public LayoutTemplate getLayoutTemplate(Node node) {
+        return LayoutTemplate.of(node);
     }
 
     protected String convertXml(InflateContext context, String xml) {
         String str = mLayoutInflaterDelegate.beforeConvertXml(context, xml);
         if (str != null)
             return str;
-        try {
-            return mLayoutInflaterDelegate.afterConvertXml(context, XmlConverter.convertToAndroidLayout(xml));
-        } catch (Exception e) {
-            throw new InflateException(e);
+        String converted;
+        synchronized (sConvertedXmlCache) {
+            converted = sConvertedXmlCache.get(xml);
+        }
+        if (converted == null) {
+            try {
+                converted = XmlConverter.convertToAndroidLayout(xml);
+            } catch (Exception e) {
+                throw new InflateException(e);
+            }
+            synchronized (sConvertedXmlCache) {
+                sConvertedXmlCache.put(xml, converted);
+            }
         }
+        return mLayoutInflaterDelegate.afterConvertXml(context, converted);
     }
 
     public View inflate(InflateContext context, Node node, @Nullable ViewGroup parent, boolean attachToParent) {
@@ -199,15 +260,16 @@ public class DynamicLayoutInflater {
         View view = mLayoutInflaterDelegate.beforeInflateView(context, node, parent, attachToParent);
         if (view != null)
             return view;
-        HashMap<String, String> attrs = getAttributesMap(node);
-        view = doCreateView(context, node, node.getNodeName(), parent, attrs);
+        LayoutTemplate template = getLayoutTemplate(node);
+        HashMap<String, String> attrs = template.newAttributesMap();
+        view = doCreateView(context, node, template.getViewName(), parent, attrs);
         if (parent != null) {
             parent.addView(view); // have to add to parent to generate layout params
             if (!attachToParent) {
                 parent.removeView(view);
             }
         }
-        ViewInflater<View> inflater = applyAttributes(context, view, attrs, parent);
+        ViewInflater<View> inflater = applyAttributes(context, view, template, attrs, parent);
         if (view instanceof ViewGroup && node.hasChildNodes()) {
             inflateChildren(context, inflater, node, (ViewGroup) view);
             if (inflater instanceof ViewGroupInflater) {
@@ -239,14 +301,67 @@ public class DynamicLayoutInflater {
         return inflater;
     }
 
+    @SuppressWarnings("unchecked")
+    public ViewInflater<View> applyAttributes(InflateContext context, View view, LayoutTemplate template, HashMap<String, String> attrs, @Nullable ViewGroup parent) {
+        ViewInflater<View> inflater = (ViewInflater<View>) getViewInflater(view);
+        if (mLayoutInflaterDelegate.beforeApplyAttributes(context, view, inflater, attrs, parent)) {
+            return inflater;
+        }
+        applyAttributes(context, view, inflater, template, attrs, parent);
+        mLayoutInflaterDelegate.afterApplyAttributes(context, view, inflater, attrs, parent);
+        return inflater;
+    }
+
+    /**
+     * 按照模板只重新设置view及其子view的动态属性，用于列表项的绑定。view必须是由该模板inflate得到的。
+     */
+    public void applyDynamicAttributes(InflateContext context, LayoutTemplate template, View view, @Nullable ViewGroup parent) {
+        if (!template.hasDynamicAttributesInTree()) {
+            return;
+        }
+        int flags = mInflateFlags;
+        mInflateFlags = FLAG_JUST_DYNAMIC_ATTRS;
+        try {
+            doApplyDynamicAttributes(context, template, view, parent);
+        } finally {
+            mInflateFlags = flags;
+        }
+    }
+
+    private void doApplyDynamicAttributes(InflateContext context, LayoutTemplate template, View view, @Nullable ViewGroup parent) {
+        if (!template.getDynamicAttributes().isEmpty()) {
+            applyAttributes(context, view, template, template.getAttributesMap(), parent);
+        }
+        if (!(view instanceof ViewGroup))
+            return;
+        ViewGroup viewGroup = (ViewGroup) view;
+        List<LayoutTemplate> children = template.getChildren();
+        int count = Math.min(children.size(), viewGroup.getChildCount());
+        for (int i = 0; i < count; i++) {
+            LayoutTemplate child = children.get(i);
+            if (child.hasDynamicAttributesInTree()) {
+                doApplyDynamicAttributes(context, child, viewGroup.getChildAt(i), viewGroup);
+            }
+        }
+    }
+
     @Nullable
     public ViewInflater<?> getViewInflater(View view) {
-        ViewInflater<?> setter = mViewAttrSetters.get(view.getClass().getName());
-        Class c = view.getClass();
+        Class<?> viewClass = view.getClass();
+        synchronized (mViewInflaterCache) {
+            if (mViewInflaterCache.containsKey(viewClass)) {
+                return mViewInflaterCache.get(viewClass);
+            }
+        }
+        ViewInflater<?> setter = mViewAttrSetters.get(viewClass.getName());
+        Class c = viewClass;
         while (setter == null && c != View.class) {
             c = c.getSuperclass();
             setter = mViewAttrSetters.get(c.getName());
         }
+        synchronized (mViewInflaterCache) {
+            mViewInflaterCache.put(viewClass, setter);
+        }
         return setter;
     }
 
@@ -289,13 +404,17 @@ public class DynamicLayoutInflater {
             if (creator != null) {
                 return creator.create(mContext, attrs);
             }
-            Class<?> clazz = Class.forName(name);
             String style = attrs.get("style");
             if (style == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-                return (View) clazz.getConstructor(Context.class).newInstance(mContext);
+                Constructor<?> constructor = sViewConstructors.get(name);
+                if (constructor == null) {
+                    constructor = Class.forName(name).getConstructor(Context.class);
+                    sViewConstructors.put(name, constructor);
+                }
+                return (View) constructor.newInstance(mContext);
             } else {
                 int styleRes = Res.parseStyle(mContext, style);
-                return (View) clazz.getConstructor(Context.class, AttributeSet.class, int.class, int.class)
+                return (View) Class.forName(name).getConstructor(Context.class, AttributeSet.class, int.class, int.class)
                         .newInstance(mContext, null, 0, styleRes);
             }
         } catch (Exception e) {
@@ -305,15 +424,7 @@ public class DynamicLayoutInflater {
 
 
     public HashMap<String, String> getAttributesMap(Node currentNode) {
-        NamedNodeMap attributeMap = currentNode.getAttributes();
-        int attributeCount = attributeMap.getLength();
-        HashMap<String, String> attributes = new HashMap<>(attributeCount);
-        for (int j = 0; j < attributeCount; j++) {
-            Node attr = attributeMap.item(j);
-            String nodeName = attr.getNodeName();
-            attributes.put(nodeName, attr.getNodeValue());
-        }
-        return attributes;
+        return getLayoutTemplate(currentNode).newAttributesMap();
     }
 
     @SuppressWarnings("unchecked")
@@ -336,25 +447,59 @@ public class DynamicLayoutInflater {
 
     }
 
-    protected void applyAttribute(InflateContext context, ViewInflater<View> inflater, View view, String ns, String attrName, String value, ViewGroup parent, Map<String, String> attrs) {
-        if (mLayoutInflaterDelegate.beforeApplyAttribute(context, inflater, view, ns, attrName, value, parent, attrs)) {
+    /**
+     * 按照模板中预先拆分好的属性设置view的属性。inflate标志为只设置动态属性或忽略动态属性时，另一类属性不会经过delegate。
+     */
+    protected void applyAttributes(InflateContext context, View view, ViewInflater<View> setter, LayoutTemplate template, Map<String, String> attrs, @Nullable ViewGroup parent) {
+        if (setter == null) {
+            Log.e(LOG_TAG, "cannot set attributes for view: " + view.getClass());
             return;
         }
-        boolean isDynamic = isDynamicValue(value);
+        List<LayoutTemplate.Attribute> attributes = mInflateFlags == FLAG_JUST_DYNAMIC_ATTRS ? template.getDynamicAttributes()
+                : mInflateFlags == FLAG_IGNORES_DYNAMIC_ATTRS ? template.getStaticAttributes()
+                : template.getAttributes();
+        // 模板的属性表可能被ViewCreator修改过，例如移除了已经在创建时处理的属性
+        boolean checkRemoved = attrs != template.getAttributesMap();
+        for (int i = 0; i < attributes.size(); i++) {
+            LayoutTemplate.Attribute attr = attributes.get(i);
+            if (checkRemoved && !attrs.containsKey(attr.getKey())) {
+                continue;
+            }
+            applyAttribute(context, setter, view, attr.getNamespace(), attr.getName(), attr.getValue(), attr.getBindingExpression(), parent, attrs);
+        }
+        setter.applyPendingAttributes(view, parent);
+    }
+
+    protected void applyAttribute(InflateContext context, ViewInflater<View> inflater, View view, String ns, String attrName, String value, ViewGroup parent, Map<String, String> attrs) {
+        applyAttribute(context, inflater, view, ns, attrName, value, isDynamicValue(value) ? BindingExpression.parse(value) : null, parent, attrs);
+    }
+
+    /**
+     * @param binding 动态属性的绑定表达式，静态属性为null
+     */
+    protected void applyAttribute(InflateContext context, ViewInflater<View> inflater, View view, String ns, String attrName, String value, @Nullable BindingExpression binding, ViewGroup parent, Map<String, String> attrs) {
+        boolean isDynamic = binding != null;
         if ((isDynamic && mInflateFlags == FLAG_IGNORES_DYNAMIC_ATTRS)
                 || (!isDynamic && mInflateFlags == FLAG_JUST_DYNAMIC_ATTRS)) {
             return;
         }
+        if (isDynamic && mBindingEvaluator != null) {
+            // 列表项重新绑定时即使值与上次相同也要设置，用户可能已经改变了view的状态(例如勾选、输入的文本)
+            value = mBindingEvaluator.evaluate(binding);
+            if (value == null) {
+                return;
+            }
+        }
+        if (mLayoutInflaterDelegate.beforeApplyAttribute(context, inflater, view, ns, attrName, value, parent, attrs)) {
+            return;
+        }
         inflater.setAttr(view, ns, attrName, value, parent, attrs);
         mLayoutInflaterDelegate.afterApplyAttribute(context, inflater, view, ns, attrName, value, parent, attrs);
 
     }
 
     public boolean isDynamicValue(String value) {
-        int i = value.indexOf("{{");
-        if (i < 0)
-            return false;
-        return value.indexOf("}}", i + 1) >= 0;
+        return LayoutTemplate.isDynamicValue(value);
     }
 
 
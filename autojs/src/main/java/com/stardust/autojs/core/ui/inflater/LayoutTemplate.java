@@ -0,0 +1,183 @@
+package com.stardust.autojs.core.ui.inflater;
+
+import android.view.InflateException;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 布局中一个元素预处理后的结果：属性名已拆分出命名空间，静态属性和动态属性({{...}})已分开，
+ * 子元素只包含元素节点。创建后不再修改，可以被多次inflate和绑定共享。
+ * <p>
+ * 模板通过{@link Node#setUserData}挂在对应的DOM节点上，同一份布局只需要构建一次。
+ */
+public class LayoutTemplate {
+
+    public static class Attribute {
+
+        private final String mKey;
+        private final String mNamespace;
+        private final String mName;
+        private final String mValue;
+        private final boolean mDynamic;
+        private final BindingExpression mBindingExpression;
+
+        Attribute(String key, String value) {
+            String[] attr = key.split(":");
+            if (attr.length == 1) {
+                mNamespace = null;
+                mName = attr[0];
+            } else if (attr.length == 2) {
+                mNamespace = attr[0];
+                mName = attr[1];
+            } else {
+                throw new InflateException("illegal attr name: " + key);
+            }
+            mKey = key;
+            mValue = value;
+            mDynamic = isDynamicValue(value);
+            mBindingExpression = mDynamic ? BindingExpression.parse(value) : null;
+        }
+
+        public String getKey() {
+            return mKey;
+        }
+
+        public String getNamespace() {
+            return mNamespace;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public String getValue() {
+            return mValue;
+        }
+
+        public boolean isDynamic() {
+            return mDynamic;
+        }
+
+        /**
+         * @return 动态属性预先解析好的绑定表达式，静态属性为null
+         */
+        public BindingExpression getBindingExpression() {
+            return mBindingExpression;
+        }
+    }
+
+    private static final String USER_DATA_KEY = LayoutTemplate.class.getName();
+
+    private final Node mNode;
+    private final String mViewName;
+    private final HashMap<String, String> mAttributesMap;
+    private final List<Attribute> mAttributes;
+    private final List<Attribute> mStaticAttributes;
+    private final List<Attribute> mDynamicAttributes;
+    private final List<LayoutTemplate> mChildren;
+    // 自身或任意子元素是否有动态属性
+    private final boolean mHasDynamicAttributesInTree;
+
+    private LayoutTemplate(Node node) {
+        mNode = node;
+        mViewName = node.getNodeName();
+        NamedNodeMap attributeMap = node.getAttributes();
+        int attributeCount = attributeMap == null ? 0 : attributeMap.getLength();
+        HashMap<String, String> attributesMap = new HashMap<>(attributeCount);
+        ArrayList<Attribute> attributes = new ArrayList<>(attributeCount);
+        ArrayList<Attribute> staticAttributes = new ArrayList<>(attributeCount);
+        ArrayList<Attribute> dynamicAttributes = new ArrayList<>();
+        for (int i = 0; i < attributeCount; i++) {
+            Node attr = attributeMap.item(i);
+            Attribute attribute = new Attribute(attr.getNodeName(), attr.getNodeValue());
+            attributesMap.put(attribute.getKey(), attribute.getValue());
+            attributes.add(attribute);
+            (attribute.isDynamic() ? dynamicAttributes : staticAttributes).add(attribute);
+        }
+        mAttributesMap = attributesMap;
+        mAttributes = Collections.unmodifiableList(attributes);
+        mStaticAttributes = Collections.unmodifiableList(staticAttributes);
+        mDynamicAttributes = Collections.unmodifiableList(dynamicAttributes);
+        ArrayList<LayoutTemplate> children = new ArrayList<>();
+        boolean hasDynamicAttributes = !dynamicAttributes.isEmpty();
+        NodeList nodeList = node.getChildNodes();
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Node child = nodeList.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+            LayoutTemplate template = of(child);
+            hasDynamicAttributes |= template.mHasDynamicAttributesInTree;
+            children.add(template);
+        }
+        mChildren = Collections.unmodifiableList(children);
+        mHasDynamicAttributesInTree = hasDynamicAttributes;
+    }
+
+    /**
+     * 获取节点对应的模板，不存在时构建整棵子树的模板。节点所在的文档在构建后不应再被修改。
+     */
+    public static LayoutTemplate of(Node node) {
+        LayoutTemplate template = (LayoutTemplate) node.getUserData(USER_DATA_KEY);
+        if (template == null) {
+            template = new LayoutTemplate(node);
+            node.setUserData(USER_DATA_KEY, template, null);
+        }
+        return template;
+    }
+
+    public static boolean isDynamicValue(String value) {
+        int i = value.indexOf("{{");
+        if (i < 0)
+            return false;
+        return value.indexOf("}}", i + 1) >= 0;
+    }
+
+    public Node getNode() {
+        return mNode;
+    }
+
+    public String getViewName() {
+        return mViewName;
+    }
+
+    /**
+     * @return 新的可修改的属性表，ViewCreator等可能会从中移除已处理的属性
+     */
+    public HashMap<String, String> newAttributesMap() {
+        return new HashMap<>(mAttributesMap);
+    }
+
+    /**
+     * @return 模板共享的属性表，不能修改
+     */
+    public HashMap<String, String> getAttributesMap() {
+        return mAttributesMap;
+    }
+
+    public List<Attribute> getAttributes() {
+        return mAttributes;
+    }
+
+    public List<Attribute> getStaticAttributes() {
+        return mStaticAttributes;
+    }
+
+    public List<Attribute> getDynamicAttributes() {
+        return mDynamicAttributes;
+    }
+
+    public List<LayoutTemplate> getChildren() {
+        return mChildren;
+    }
+
+    public boolean hasDynamicAttributesInTree() {
+        return mHasDynamicAttributesInTree;
+    }
+
+}
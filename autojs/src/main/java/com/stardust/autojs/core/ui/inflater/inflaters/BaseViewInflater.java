@@ -4,7 +4,6 @@ import android.content.res.ColorStateList;
 import android.graphics.PorterDuff;
 import android.os.Build;
 import androidx.annotation.Nullable;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
@@ -39,7 +38,6 @@ import java.util.Map;
 
 public class BaseViewInflater<V extends View> implements ViewInflater<V> {
 
-    private static final String LOG_TAG = "BaseViewInflater";
 
     public static final ValueMapper<PorterDuff.Mode> TINT_MODES = new ValueMapper<PorterDuff.Mode>("tintMode")
             .map("add", PorterDuff.Mode.ADD)
@@ -116,13 +114,9 @@ public class BaseViewInflater<V extends View> implements ViewInflater<V> {
     @Override
     public boolean setAttr(V view, String attr, String value, ViewGroup parent, Map<String, String> attrs) {
         ViewAttributes viewAttributes = ViewExtras.getViewAttributes(view, getResourceParser());
-        ViewAttributes.Attribute attribute = viewAttributes.get(attr);
-        if (attribute != null) {
-            Log.d(LOG_TAG, "setAttr use ViewAttributes: attr = " + attr);
-            attribute.set(value);
+        if (viewAttributes.setAttr(attr, value)) {
             return true;
         }
-        Log.d(LOG_TAG, "setAttr cannot use ViewAttributes: attr = " + attr);
         Integer layoutRule = null;
         boolean layoutTarget = false;
         ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
@@ -6,12 +6,12 @@ import android.view.ViewGroup;
 
 import com.stardust.autojs.core.ui.ViewExtras;
 import com.stardust.autojs.core.ui.inflater.DynamicLayoutInflater;
+import com.stardust.autojs.core.ui.inflater.LayoutTemplate;
 import com.stardust.autojs.core.ui.nativeview.NativeView;
 import com.stardust.autojs.core.ui.nativeview.ViewPrototype;
 import com.stardust.autojs.runtime.ScriptRuntime;
 
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import com.stardust.autojs.workground.WrapContentLinearLayoutManager;
 
@@ -39,6 +39,7 @@ public class JsListView extends RecyclerView {
     }
 
     private Node mItemTemplate;
+    private LayoutTemplate mItemLayoutTemplate;
     private DynamicLayoutInflater mDynamicLayoutInflater;
     private ScriptRuntime mScriptRuntime;
     private Object mDataSource;
@@ -83,6 +84,7 @@ public class JsListView extends RecyclerView {
     public void setItemTemplate(DynamicLayoutInflater inflater, Node itemTemplate) {
         mDynamicLayoutInflater = inflater;
         mItemTemplate = itemTemplate;
+        mItemLayoutTemplate = inflater.getLayoutTemplate(itemTemplate);
     }
 
 
@@ -151,29 +153,15 @@ public class JsListView extends RecyclerView {
                 Object oldCtx = mScriptRuntime.ui.getBindingContext();
                 Object item = mDataSourceAdapter.getItem(mDataSource, position);
                 holder.item = item;
+                if (!mItemLayoutTemplate.hasDynamicAttributesInTree()) {
+                    return;
+                }
                 mScriptRuntime.ui.setBindingContext(item);
-                mDynamicLayoutInflater.setInflateFlags(DynamicLayoutInflater.FLAG_JUST_DYNAMIC_ATTRS);
-                applyDynamicAttrs(mItemTemplate, holder.itemView, JsListView.this);
+                mDynamicLayoutInflater.applyDynamicAttributes(mDynamicLayoutInflater.newInflateContext(),
+                        mItemLayoutTemplate, holder.itemView, JsListView.this);
                 mScriptRuntime.ui.setBindingContext(oldCtx);
             } catch (Exception e) {
                 mScriptRuntime.exit(e);
-            } finally {
-                mDynamicLayoutInflater.setInflateFlags(DynamicLayoutInflater.FLAG_DEFAULT);
-            }
-        }
-
-        private void applyDynamicAttrs(Node node, View itemView, ViewGroup parent) {
-            mDynamicLayoutInflater.applyAttributes(mDynamicLayoutInflater.newInflateContext(), itemView, mDynamicLayoutInflater.getAttributesMap(node), parent);
-            if (!(itemView instanceof ViewGroup))
-                return;
-            ViewGroup viewGroup = (ViewGroup) itemView;
-            NodeList nodeList = node.getChildNodes();
-            int j = 0;
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node child = nodeList.item(i);
-                if (child.getNodeType() != Node.ELEMENT_NODE) continue;
-                applyDynamicAttrs(child, viewGroup.getChildAt(j), viewGroup);
-                j++;
             }
         }
 
@@ -4,20 +4,24 @@ import android.util.Log
 import android.view.View
 import com.stardust.autojs.core.ui.ViewExtras
 import com.stardust.autojs.engine.module.AssetAndUrlModuleSourceProvider
+import com.stardust.autojs.engine.module.ModuleScriptCache
+import com.stardust.autojs.engine.module.SharedModuleScriptProvider
 import com.stardust.autojs.execution.ExecutionConfig
 import com.stardust.autojs.project.ScriptConfig
+import com.stardust.autojs.rhino.AndroidClassLoader
+import com.stardust.autojs.rhino.AutoJsContext
+import com.stardust.autojs.rhino.DexScriptCompiler
 import com.stardust.autojs.rhino.RhinoAndroidHelper
 import com.stardust.autojs.rhino.TopLevelScope
 import com.stardust.autojs.runtime.ScriptRuntime
 import com.stardust.autojs.script.JavaScriptSource
 import com.stardust.automator.UiObjectCollection
+import com.stardust.pio.PFiles
 import com.stardust.pio.UncheckedIOException
 import org.mozilla.javascript.*
 import org.mozilla.javascript.commonjs.module.RequireBuilder
-import org.mozilla.javascript.commonjs.module.provider.SoftCachingModuleScriptProvider
 import java.io.File
 import java.io.IOException
-import java.io.InputStreamReader
 import java.io.Reader
 import java.net.URI
 import java.util.*
@@ -36,16 +40,16 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
 
     private val initScript: Script
         get() {
-            return sInitScript ?: {
+            val source = sInitScriptSource ?: {
                 try {
-                    val reader = InputStreamReader(mAndroidContext.assets.open("init.js"))
-                    val script = context.compileReader(reader, SOURCE_NAME_INIT, 1, null)
-                    sInitScript = script
-                    script
+                    val source = PFiles.read(mAndroidContext.assets.open("init.js"))
+                    sInitScriptSource = source
+                    source
                 } catch (e: IOException) {
                     throw UncheckedIOException(e)
                 }
             }()
+            return ModuleScriptCache.getInstance().compile(context, SOURCE_NAME_INIT, source, null)
         }
 
     val scriptable: Scriptable
@@ -69,7 +73,7 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
         var reader = source.nonNullScriptReader
         try {
             reader = preprocess(reader)
-            val script = context.compileReader(reader, source.toString(), 1, null)
+            val script = compile(reader, source.toString())
             return if (hasFeature(ScriptConfig.FEATURE_CONTINUATION)) {
                 context.executeScriptWithContinuations(script, mScriptable)
             } else {
@@ -81,6 +85,29 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
 
     }
 
+    /**
+     * 编译脚本。开启了[ScriptConfig.FEATURE_OPTIMIZATION]时编译为字节码并转换为dex执行；
+     * 需要解释模式的功能(例如continuation)开启时仍然使用解释器。
+     */
+    @Throws(IOException::class)
+    private fun compile(reader: Reader, sourceName: String): Script {
+        if (!hasFeature(ScriptConfig.FEATURE_OPTIMIZATION) || hasFeature(ScriptConfig.FEATURE_CONTINUATION)
+                || !DexScriptCompiler.isSupported(context)) {
+            return context.compileReader(reader, sourceName, 1, null)
+        }
+        val source = reader.readText()
+        return try {
+            DexScriptCompiler.compile(context, sourceName, source, DexScriptCompiler.DEFAULT_OPTIMIZATION_LEVEL)
+        } catch (e: AndroidClassLoader.FatalLoadingException) {
+            Log.w(LOG_TAG, "compile: fallback to interpreter", e)
+            context.compileString(source, sourceName, 1, null)
+        } catch (e: EvaluatorException) {
+            // 方法过大等字节码生成错误；语法错误会在解释模式编译时再次抛出
+            Log.w(LOG_TAG, "compile: fallback to interpreter", e)
+            context.compileString(source, sourceName, 1, null)
+        }
+    }
+
     fun hasFeature(feature: String): Boolean {
         val config = getTag(ExecutionConfig.tag) as ExecutionConfig?
         return config != null && config.scriptConfig.hasFeature(feature)
@@ -93,12 +120,15 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
 
     override fun forceStop() {
         Log.d(LOG_TAG, "forceStop: interrupt Thread: $thread")
+        (context as? AutoJsContext)?.requestStop()
         thread.interrupt()
     }
 
 
     @Synchronized
     override fun destroy() {
+        // 与清除线程中断状态一样，清除停止标记以便执行exit事件的回调
+        (context as? AutoJsContext)?.clearStopRequest()
         super.destroy()
         Log.d(LOG_TAG, "on destroy")
         sContextEngineMap.remove(context)
@@ -107,6 +137,7 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
 
     override fun init() {
         thread = Thread.currentThread()
+        setupCpuTimeLimit()
         ScriptableObject.putProperty(mScriptable, "__engine__", this)
         initRequireBuilder(context, mScriptable)
         try {
@@ -120,11 +151,26 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
         }
     }
 
+    private fun setupCpuTimeLimit() {
+        val scriptConfig = (getTag(ExecutionConfig.tag) as ExecutionConfig?)?.scriptConfig ?: return
+        val cx = context as? AutoJsContext ?: return
+        if (scriptConfig.cpuTimeLimit <= 0) {
+            return
+        }
+        val warnOnly = scriptConfig.cpuTimeLimitAction == ScriptConfig.CPU_TIME_LIMIT_ACTION_WARN
+        cx.setCpuTimeLimit(scriptConfig.cpuTimeLimit, warnOnly, object : AutoJsContext.CpuTimeLimitListener {
+            override fun onCpuTimeLimitExceeded(cpuTime: Long, limit: Long) {
+                runtime.console.warn("CPU time limit exceeded: $cpuTime ms > $limit ms" + if (warnOnly) "" else ", stopping")
+            }
+        })
+    }
+
     internal fun initRequireBuilder(context: Context, scope: Scriptable) {
         val provider = AssetAndUrlModuleSourceProvider(mAndroidContext, MODULES_PATH,
                 listOf<URI>(File("/").toURI()))
+        // 模块在整个进程中共享编译结果，新的引擎不需要重新编译内置模块
         RequireBuilder()
-                .setModuleScriptProvider(SoftCachingModuleScriptProvider(provider))
+                .setModuleScriptProvider(SharedModuleScriptProvider(provider))
                 .setSandboxed(true)
                 .createRequire(context, scope)
                 .install(scope)
@@ -137,6 +183,32 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
         return topLevelScope
     }
 
+    /**
+     * 使引擎的Context脱离当前线程，之后可以通过[attachToCurrentThread]在其他线程中继续使用。用于预热引擎。
+     */
+    fun detachFromCurrentThread() {
+        Context.exit()
+    }
+
+    /**
+     * 把通过[detachFromCurrentThread]脱离的Context关联到当前线程。当前线程不能已经有其他Context。
+     */
+    fun attachToCurrentThread() {
+        val cx = ContextFactory.getGlobal().enterContext(context)
+        if (cx !== context) {
+            Context.exit()
+            throw IllegalStateException("current thread has already entered another context")
+        }
+    }
+
+    /**
+     * 丢弃一个没有初始化过、并且已经脱离线程的引擎，同时释放其运行时在构造时创建的资源
+     */
+    fun discard() {
+        sContextEngineMap.remove(context)
+        runtime?.recycleUninitialized()
+    }
+
     fun enterContext(): Context {
         val context = RhinoAndroidHelper(mAndroidContext).enterContext()
         setupContext(context)
@@ -155,7 +227,8 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
 
         override fun wrap(cx: Context, scope: Scriptable, obj: Any?, staticType: Class<*>?): Any? {
             return when {
-                obj is String -> runtime.bridges.toString(obj.toString())
+                // Rhino把java.lang.String直接当作JavaScript字符串，不需要再经过bridges转换
+                obj is String -> obj
                 staticType == UiObjectCollection::class.java -> runtime.bridges.asArray(obj)
                 else -> super.wrap(cx, scope, obj, staticType)
             }
@@ -179,7 +252,8 @@ open class RhinoJavaScriptEngine(private val mAndroidContext: android.content.Co
         private val LOG_TAG = "RhinoJavaScriptEngine"
 
         private val MODULES_PATH = "modules"
-        private var sInitScript: Script? = null
+        @Volatile
+        private var sInitScriptSource: String? = null
         private val sContextEngineMap = ConcurrentHashMap<Context, RhinoJavaScriptEngine>()
 
 
@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Stardust on 2017/1/27.
@@ -31,6 +32,7 @@ public class ScriptEngineManager {
     private final Set<ScriptEngine> mEngines = new HashSet<>();
     private EngineLifecycleCallback mEngineLifecycleCallback;
     private Map<String, Supplier<ScriptEngine>> mEngineSuppliers = new HashMap<>();
+    private final Map<String, ScriptEnginePool> mEnginePools = new ConcurrentHashMap<>();
     private Map<String, Object> mGlobalVariableMap = new HashMap<>();
     private android.content.Context mAndroidContext;
     private ScriptEngine.OnDestroyListener mOnEngineDestroyListener = new ScriptEngine.OnDestroyListener() {
@@ -102,7 +104,14 @@ public class ScriptEngineManager {
         if (s == null) {
             return null;
         }
-        ScriptEngine engine = s.get();
+        ScriptEngine engine = null;
+        ScriptEnginePool pool = mEnginePools.get(name);
+        if (pool != null) {
+            engine = pool.acquire();
+        }
+        if (engine == null) {
+            engine = s.get();
+        }
         engine.setId(id);
         putProperties(engine);
         addEngine(engine);
@@ -129,10 +138,44 @@ public class ScriptEngineManager {
 
     public void registerEngine(String name, Supplier<ScriptEngine> supplier) {
         mEngineSuppliers.put(name, supplier);
+        shutdownEnginePool(name);
     }
 
     public void unregisterEngine(String name) {
         mEngineSuppliers.remove(name);
+        shutdownEnginePool(name);
+    }
+
+    /**
+     * 设置某个引擎的预热池。
+     *
+     * @param size        预热的引擎数量，小于等于0表示不预热
+     * @param idleTimeout 预热的引擎空闲多长时间(毫秒)后被丢弃
+     */
+    public void setEnginePool(String name, int size, long idleTimeout) {
+        if (size <= 0) {
+            shutdownEnginePool(name);
+            return;
+        }
+        Supplier<ScriptEngine> s = mEngineSuppliers.get(name);
+        if (s == null) {
+            throw new IllegalArgumentException("engine not found: " + name);
+        }
+        ScriptEnginePool old = mEnginePools.get(name);
+        if (old != null && old.getMaxSize() == size && old.getIdleTimeout() == idleTimeout) {
+            return;
+        }
+        old = mEnginePools.put(name, new ScriptEnginePool(name, s, size, idleTimeout));
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    private void shutdownEnginePool(String name) {
+        ScriptEnginePool pool = mEnginePools.remove(name);
+        if (pool != null) {
+            pool.shutdown();
+        }
     }
 
 }
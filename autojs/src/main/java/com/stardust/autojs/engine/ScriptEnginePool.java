@@ -0,0 +1,192 @@
+package com.stardust.autojs.engine;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.stardust.util.Supplier;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 预热的脚本引擎池。在后台线程中提前创建引擎(包括Rhino的Context、顶层作用域和ScriptRuntime)，
+ * 新的脚本执行时直接取用，取用后在后台补充；空闲超过一定时间的引擎会被丢弃。
+ * <p>
+ * 只有与线程无关的部分能够预热，ScriptRuntime.init()和init.js仍然在脚本线程中执行。
+ */
+public class ScriptEnginePool {
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+
+    private static final String LOG_TAG = "ScriptEnginePool";
+
+    private static class Entry {
+
+        final ScriptEngine engine;
+        final long createdTime;
+
+        Entry(ScriptEngine engine, long createdTime) {
+            this.engine = engine;
+            this.createdTime = createdTime;
+        }
+    }
+
+    private final Supplier<ScriptEngine> mSupplier;
+    private final ArrayDeque<Entry> mIdleEngines = new ArrayDeque<>();
+    private final HandlerThread mWarmThread;
+    private final Handler mHandler;
+    private final int mMaxSize;
+    private final long mIdleTimeout;
+    private final Runnable mEvictIdleEngines = this::evictIdleEngines;
+    private boolean mShutdown = false;
+    private boolean mEvictionScheduled = false;
+
+    public ScriptEnginePool(String name, Supplier<ScriptEngine> supplier, int maxSize, long idleTimeout) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize = " + maxSize);
+        }
+        mSupplier = supplier;
+        mMaxSize = maxSize;
+        mIdleTimeout = idleTimeout;
+        mWarmThread = new HandlerThread(LOG_TAG + "-" + name);
+        mWarmThread.start();
+        mHandler = new Handler(mWarmThread.getLooper());
+        mHandler.post(this::fill);
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public long getIdleTimeout() {
+        return mIdleTimeout;
+    }
+
+    public synchronized int getIdleCount() {
+        return mIdleEngines.size();
+    }
+
+    /**
+     * 取出一个预热的引擎并关联到当前线程，同时在后台补充一个新的引擎。
+     *
+     * @return 预热的引擎；池为空或当前线程无法接管预热的引擎(例如已经有一个Rhino Context)时返回null
+     */
+    @Nullable
+    public ScriptEngine acquire() {
+        if (org.mozilla.javascript.Context.getCurrentContext() != null) {
+            return null;
+        }
+        Entry entry;
+        synchronized (this) {
+            if (mShutdown) {
+                return null;
+            }
+            entry = mIdleEngines.pollFirst();
+        }
+        mHandler.post(this::fill);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.engine instanceof RhinoJavaScriptEngine) {
+            ((RhinoJavaScriptEngine) entry.engine).attachToCurrentThread();
+        }
+        return entry.engine;
+    }
+
+    public void shutdown() {
+        List<Entry> entries;
+        synchronized (this) {
+            if (mShutdown) {
+                return;
+            }
+            mShutdown = true;
+            entries = new ArrayList<>(mIdleEngines);
+            mIdleEngines.clear();
+        }
+        mHandler.removeCallbacks(mEvictIdleEngines);
+        for (Entry entry : entries) {
+            discard(entry.engine);
+        }
+        mWarmThread.quit();
+    }
+
+    private void fill() {
+        while (true) {
+            synchronized (this) {
+                if (mShutdown || mIdleEngines.size() >= mMaxSize) {
+                    return;
+                }
+            }
+            ScriptEngine engine;
+            try {
+                engine = mSupplier.get();
+                if (engine instanceof RhinoJavaScriptEngine) {
+                    ((RhinoJavaScriptEngine) engine).detachFromCurrentThread();
+                }
+            } catch (Throwable e) {
+                Log.e(LOG_TAG, "failed to warm up engine", e);
+                return;
+            }
+            synchronized (this) {
+                if (mShutdown || mIdleEngines.size() >= mMaxSize) {
+                    discard(engine);
+                    return;
+                }
+                mIdleEngines.addLast(new Entry(engine, SystemClock.uptimeMillis()));
+                scheduleEviction();
+            }
+        }
+    }
+
+    /**
+     * 在最早创建的空闲引擎超时的时候执行一次淘汰。同一时间只有一次淘汰在等待执行
+     */
+    private synchronized void scheduleEviction() {
+        if (mEvictionScheduled || mShutdown) {
+            return;
+        }
+        Entry oldest = mIdleEngines.peekFirst();
+        if (oldest == null) {
+            return;
+        }
+        mEvictionScheduled = true;
+        mHandler.postAtTime(mEvictIdleEngines, oldest.createdTime + mIdleTimeout);
+    }
+
+    /**
+     * 丢弃空闲超时的引擎。被丢弃的引擎不会立即补充，直到下一次取用时才重新预热。
+     */
+    private void evictIdleEngines() {
+        List<ScriptEngine> evicted = new ArrayList<>();
+        long now = SystemClock.uptimeMillis();
+        synchronized (this) {
+            mEvictionScheduled = false;
+            Iterator<Entry> iterator = mIdleEngines.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (now - entry.createdTime >= mIdleTimeout) {
+                    iterator.remove();
+                    evicted.add(entry.engine);
+                }
+            }
+            scheduleEviction();
+        }
+        for (ScriptEngine engine : evicted) {
+            discard(engine);
+        }
+    }
+
+    private static void discard(ScriptEngine engine) {
+        // 预热的引擎没有初始化过，不持有线程相关的资源，不能调用destroy()
+        if (engine instanceof RhinoJavaScriptEngine) {
+            ((RhinoJavaScriptEngine) engine).discard();
+        }
+    }
+
+}
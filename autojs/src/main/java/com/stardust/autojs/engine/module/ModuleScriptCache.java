@@ -0,0 +1,101 @@
+package com.stardust.autojs.engine.module;
+
+import com.stardust.util.MD5;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内共享的已编译脚本缓存，供所有脚本引擎复用内置模块、init.js以及require()加载的用户模块。
+ * <p>
+ * 以"来源 + 内容哈希 + 编译参数"为键，因此文件被修改后会自动重新编译。按源码长度估计占用的内存，超过预算时淘汰最久未使用的脚本。
+ * 编译得到的Script与作用域无关，可以在多个线程、多个引擎中同时执行。
+ */
+public class ModuleScriptCache {
+
+    public static final long DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+
+    // 解释执行的Script占用的内存大约为源码字符数的若干倍
+    private static final int BYTES_PER_CHAR = 8;
+
+    private static final ModuleScriptCache sInstance = new ModuleScriptCache(DEFAULT_MAX_SIZE);
+
+    private final LinkedHashMap<String, Entry> mScripts = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMaxSize;
+    private long mSize = 0;
+
+    private static class Entry {
+        final Script script;
+        final long size;
+
+        Entry(Script script, long size) {
+            this.script = script;
+            this.size = size;
+        }
+    }
+
+    public ModuleScriptCache(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    public static ModuleScriptCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * 获取已编译的脚本，没有缓存时用cx编译并放入缓存。
+     *
+     * @param sourceName     脚本的来源(通常为URI)，同时作为报错时的文件名
+     * @param source         脚本内容
+     * @param securityDomain 编译时使用的安全域，可以为null
+     */
+    public Script compile(Context cx, String sourceName, String source, Object securityDomain) {
+        String key = sourceName + "#" + MD5.md5(source) + "#" + cx.getOptimizationLevel() + "#" + cx.getLanguageVersion();
+        synchronized (mScripts) {
+            Entry entry = mScripts.get(key);
+            if (entry != null) {
+                return entry.script;
+            }
+        }
+        // 编译不持有锁，多个线程同时编译同一脚本时只保留一份
+        Script script = cx.compileString(source, sourceName, 1, securityDomain);
+        long size = (long) source.length() * BYTES_PER_CHAR;
+        synchronized (mScripts) {
+            Entry entry = mScripts.get(key);
+            if (entry != null) {
+                return entry.script;
+            }
+            mScripts.put(key, new Entry(script, size));
+            mSize += size;
+            trimToSize();
+        }
+        return script;
+    }
+
+    public void setMaxSize(long maxSize) {
+        synchronized (mScripts) {
+            mMaxSize = maxSize;
+            trimToSize();
+        }
+    }
+
+    public void clear() {
+        synchronized (mScripts) {
+            mScripts.clear();
+            mSize = 0;
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = mScripts.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            mSize -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+}
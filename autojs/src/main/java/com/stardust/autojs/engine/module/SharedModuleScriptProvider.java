@@ -0,0 +1,61 @@
+package com.stardust.autojs.engine.module;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.commonjs.module.ModuleScript;
+import org.mozilla.javascript.commonjs.module.ModuleScriptProvider;
+import org.mozilla.javascript.commonjs.module.provider.ModuleSource;
+import org.mozilla.javascript.commonjs.module.provider.ModuleSourceProvider;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+
+/**
+ * 通过{@link ModuleScriptCache}编译模块的ModuleScriptProvider。每个引擎仍然读取模块源码，但相同内容的模块在整个进程中只编译一次。
+ */
+public class SharedModuleScriptProvider implements ModuleScriptProvider {
+
+    private final ModuleSourceProvider mModuleSourceProvider;
+    private final ModuleScriptCache mCache;
+
+    public SharedModuleScriptProvider(ModuleSourceProvider moduleSourceProvider, ModuleScriptCache cache) {
+        mModuleSourceProvider = moduleSourceProvider;
+        mCache = cache;
+    }
+
+    public SharedModuleScriptProvider(ModuleSourceProvider moduleSourceProvider) {
+        this(moduleSourceProvider, ModuleScriptCache.getInstance());
+    }
+
+    @Override
+    public ModuleScript getModuleScript(Context cx, String moduleId, URI uri, URI base, Scriptable paths) throws Exception {
+        ModuleSource moduleSource = uri == null
+                ? mModuleSourceProvider.loadSource(moduleId, paths, null)
+                : mModuleSourceProvider.loadSource(uri, base, null);
+        if (moduleSource == null) {
+            return null;
+        }
+        String source = readFully(moduleSource.getReader());
+        Script script = mCache.compile(cx, moduleSource.getUri().toString(), source, moduleSource.getSecurityDomain());
+        return new ModuleScript(script, moduleSource.getUri(), moduleSource.getBase());
+    }
+
+    static String readFully(Reader reader) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                sb.append(buffer, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
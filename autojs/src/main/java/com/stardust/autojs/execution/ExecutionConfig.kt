@@ -28,7 +28,11 @@ data class ExecutionConfig(var workingDirectory: String = "",
             parcel.readInt(),
             parcel.readLong(),
             parcel.readLong(),
-            parcel.readInt())
+            parcel.readInt(),
+            ScriptConfig(parcel.createStringArrayList().orEmpty(),
+                    parcel.readInt() != 0,
+                    parcel.readLong(),
+                    parcel.readString() ?: ScriptConfig.CPU_TIME_LIMIT_ACTION_STOP))
 
     fun setArgument(key: String, `object`: Any) {
         mArguments[key] = `object`
@@ -50,6 +54,7 @@ data class ExecutionConfig(var workingDirectory: String = "",
         if (delay != other.delay) return false
         if (interval != other.interval) return false
         if (loopTimes != other.loopTimes) return false
+        if (scriptConfig != other.scriptConfig) return false
         if (mArguments != other.mArguments) return false
 
         return true
@@ -62,6 +67,7 @@ data class ExecutionConfig(var workingDirectory: String = "",
         result = 31 * result + delay.hashCode()
         result = 31 * result + interval.hashCode()
         result = 31 * result + loopTimes
+        result = 31 * result + scriptConfig.hashCode()
         result = 31 * result + mArguments.hashCode()
         return result
     }
@@ -73,6 +79,10 @@ data class ExecutionConfig(var workingDirectory: String = "",
         parcel.writeLong(delay)
         parcel.writeLong(interval)
         parcel.writeInt(loopTimes)
+        parcel.writeStringList(scriptConfig.features)
+        parcel.writeInt(if (scriptConfig.uiMode) 1 else 0)
+        parcel.writeLong(scriptConfig.cpuTimeLimit)
+        parcel.writeString(scriptConfig.cpuTimeLimitAction)
     }
 
     override fun describeContents(): Int {
@@ -245,7 +245,7 @@ public class ProjectConfig {
                 features.add(feature);
             }
         }
-        config.setFeatures(features);
-        return config;
+        // 不修改mScriptConfigs中的配置，多次调用时结果相同
+        return new ScriptConfig(features, config.getUiMode(), config.getCpuTimeLimit(), config.getCpuTimeLimitAction());
     }
 }
@@ -21,7 +21,7 @@ public class ProjectLauncher {
     public void launch(ScriptEngineService service) {
         ExecutionConfig config = new ExecutionConfig();
         config.setWorkingDirectory(mProjectDir);
-        config.getScriptConfig().setFeatures(mProjectConfig.getFeatures());
+        config.setScriptConfig(mProjectConfig.getScriptConfig(mProjectConfig.getMainScriptFile()));
         service.execute(new JavaScriptFileSource(mMainScriptFile), config);
     }
 
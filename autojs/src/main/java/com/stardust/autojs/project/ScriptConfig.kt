@@ -4,7 +4,10 @@ import com.google.gson.annotations.SerializedName
 
 data class ScriptConfig(
         @SerializedName("useFeatures") var features: List<String>,
-        @SerializedName("uiMode") var uiMode: Boolean
+        @SerializedName("uiMode") var uiMode: Boolean,
+        // 脚本线程可以占用的CPU时间(毫秒)，0表示不限制
+        @SerializedName("cpuTimeLimit") var cpuTimeLimit: Long = 0,
+        @SerializedName("cpuTimeLimitAction") var cpuTimeLimitAction: String = CPU_TIME_LIMIT_ACTION_STOP
 ) {
     constructor() : this(emptyList(), false)
 
@@ -14,5 +17,10 @@ data class ScriptConfig(
 
     companion object {
         val FEATURE_CONTINUATION = "continuation"
+        // 把脚本编译为字节码执行，适合计算密集的脚本；与continuation同时开启时无效
+        val FEATURE_OPTIMIZATION = "optimization"
+
+        const val CPU_TIME_LIMIT_ACTION_STOP = "stop"
+        const val CPU_TIME_LIMIT_ACTION_WARN = "warn"
     }
 }
\ No newline at end of file
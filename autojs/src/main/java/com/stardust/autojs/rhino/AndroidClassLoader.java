@@ -17,9 +17,19 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import dalvik.system.DexClassLoader;
 
@@ -31,9 +41,18 @@ public class AndroidClassLoader extends ClassLoader implements GeneratedClassLoa
 
 
     private static final String LOG_TAG = "AndroidClassLoader";
+    private static final String DEX_CACHE_DIR_NAME = "dex-cache";
+    private static final long DEFAULT_MAX_DEX_CACHE_SIZE = 32 * 1024 * 1024;
+    // Rhino每次定义类时都会创建新的AndroidClassLoader，因此已加载的dex缓存在所有实例之间共享，以dex文件的路径为键。
+    // 使用弱引用，其中的类都不再使用后DexClassLoader可以被回收
+    private static final Map<String, WeakReference<DexClassLoader>> sCachedDexClassLoaders = new HashMap<>();
+    // 本进程中已经清理过残留临时文件的目录
+    private static final Set<File> sCleanedCacheDirs = new HashSet<>();
     private final ClassLoader parent;
     private final List<DexClassLoader> mDexClassLoaders = new ArrayList<>();
     private final File mCacheDir;
+    private final File mDexCacheDir;
+    private long mMaxDexCacheSize = DEFAULT_MAX_DEX_CACHE_SIZE;
 
     /**
      * Create a new instance with the given parent classloader and cache dierctory
@@ -44,33 +63,176 @@ public class AndroidClassLoader extends ClassLoader implements GeneratedClassLoa
     public AndroidClassLoader(ClassLoader parent, File dir) {
         this.parent = parent;
         mCacheDir = dir;
-        if (dir.exists()) {
-            PFiles.deleteFilesOfDir(dir);
-        } else {
-            dir.mkdirs();
+        mDexCacheDir = new File(dir, DEX_CACHE_DIR_NAME);
+        synchronized (sCleanedCacheDirs) {
+            // 每个进程只清理一次，否则新的实例会删除其他实例正在使用的临时文件
+            if (sCleanedCacheDirs.add(dir)) {
+                cleanTempFiles();
+            }
+        }
+        mDexCacheDir.mkdirs();
+    }
+
+    private void cleanTempFiles() {
+        if (!mCacheDir.exists()) {
+            mCacheDir.mkdirs();
+            return;
+        }
+        // 只清理上次运行残留的临时文件，dex缓存在多次运行和多个进程之间共享
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.equals(mDexCacheDir)) {
+                    PFiles.deleteRecursively(file);
+                }
+            }
         }
     }
 
+    public void setMaxDexCacheSize(long maxDexCacheSize) {
+        mMaxDexCacheSize = maxDexCacheSize;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Class<?> defineClass(String name, byte[] data) {
         Log.d(LOG_TAG, "defineClass: name = " + name + " data.length = " + data.length);
-        File classFile = null;
+        return defineClasses(Collections.singletonMap(name, data)).get(name);
+    }
+
+    /**
+     * 把多个类一起转换为一个dex并加载，比逐个转换少运行多次dx。
+     * 转换结果以所有类的字节码的哈希为键缓存在磁盘上，之后的运行(包括其他进程)定义相同的类时直接加载缓存的dex。
+     *
+     * @param classes 类名到字节码的映射
+     * @return 类名到加载后的类的映射
+     */
+    public Map<String, Class<?>> defineClasses(Map<String, byte[]> classes) {
+        File dexFile = new File(mDexCacheDir, hashClasses(classes) + ".jar");
         try {
-            classFile = generateTempFile(name, false);
-            final ZipFile zipFile = new ZipFile(classFile);
-            final ZipParameters parameters = new ZipParameters();
-            parameters.setFileNameInZip(name.replace('.', '/') + ".class");
-            parameters.setSourceExternalStream(true);
-            zipFile.addStream(new ByteArrayInputStream(data), parameters);
-            return dexJar(classFile, null).loadClass(name);
+            DexClassLoader loader;
+            synchronized (sCachedDexClassLoaders) {
+                WeakReference<DexClassLoader> ref = sCachedDexClassLoaders.get(dexFile.getPath());
+                loader = ref == null ? null : ref.get();
+                if (loader == null) {
+                    removeCollectedDexClassLoaders();
+                    loader = loadCachedDex(dexFile, classes);
+                    sCachedDexClassLoaders.put(dexFile.getPath(), new WeakReference<>(loader));
+                }
+            }
+            Map<String, Class<?>> result = new HashMap<>();
+            for (String name : classes.keySet()) {
+                result.put(name, loader.loadClass(name));
+            }
+            return result;
         } catch (IOException | ZipException | ClassNotFoundException e) {
             throw new FatalLoadingException(e);
+        }
+    }
+
+    private static void removeCollectedDexClassLoaders() {
+        Iterator<WeakReference<DexClassLoader>> iterator = sCachedDexClassLoaders.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private DexClassLoader loadCachedDex(File dexFile, Map<String, byte[]> classes) throws IOException, ZipException {
+        // 共享的dex不加入当前实例的mDexClassLoaders，定义的类直接由defineClasses返回
+        if (dexFile.exists()) {
+            Log.d(LOG_TAG, "loadCachedDex: hit " + dexFile.getName());
+            // 用修改时间记录最近使用的时间，淘汰时优先删除最久未使用的
+            dexFile.setLastModified(System.currentTimeMillis());
+            return new DexClassLoader(dexFile.getPath(), mDexCacheDir.getPath(), null, parent);
+        }
+        dexClasses(classes, dexFile);
+        DexClassLoader loader = new DexClassLoader(dexFile.getPath(), mDexCacheDir.getPath(), null, parent);
+        trimDexCache();
+        return loader;
+    }
+
+    private void dexClasses(Map<String, byte[]> classes, File dexFile) throws IOException, ZipException {
+        File classFile = generateTempFile(dexFile.getName(), false);
+        try {
+            final ZipFile zipFile = new ZipFile(classFile);
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                final ZipParameters parameters = new ZipParameters();
+                parameters.setFileNameInZip(entry.getKey().replace('.', '/') + ".class");
+                parameters.setSourceExternalStream(true);
+                zipFile.addStream(new ByteArrayInputStream(entry.getValue()), parameters);
+            }
+            dexToCache(classFile, dexFile);
         } finally {
-            if (classFile != null) {
-                classFile.delete();
+            classFile.delete();
+        }
+    }
+
+    /**
+     * 把dx的输出先写到临时文件，成功后再重命名为缓存文件，其他实例或进程不会读到不完整的dex；失败时删除临时文件
+     */
+    private void dexToCache(File classFile, File dexFile) throws IOException {
+        // 临时文件名唯一，多个实例同时转换同一个jar时不会互相覆盖
+        File tmpDexFile = File.createTempFile("dex-", ".jar", mCacheDir);
+        try {
+            runDx(classFile, tmpDexFile);
+            if (!tmpDexFile.renameTo(dexFile) && !dexFile.exists()) {
+                throw new IOException("cannot rename " + tmpDexFile + " to " + dexFile);
+            }
+        } finally {
+            tmpDexFile.delete();
+        }
+    }
+
+    private static String hashClasses(Map<String, byte[]> classes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            // 按类名排序，使相同的一组类得到相同的哈希
+            for (Map.Entry<String, byte[]> entry : new TreeMap<>(classes).entrySet()) {
+                digest.update(entry.getKey().getBytes());
+                digest.update(entry.getValue());
+            }
+            return MD5.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 缓存超过大小限制时按最近使用时间删除最旧的dex文件。已经加载的dex即使被删除也可以继续使用，但不再被其他实例共享。
+     */
+    private void trimDexCache() {
+        // 只统计dex文件，不包括dex优化生成的目录
+        File[] files = mDexCacheDir.listFiles(file -> file.isFile() &&
+                (file.getName().endsWith(".jar") || file.getName().endsWith(".dex")));
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxDexCacheSize) {
+            return;
+        }
+        Arrays.sort(files, (f1, f2) -> {
+            long t1 = f1.lastModified();
+            long t2 = f2.lastModified();
+            return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+        });
+        for (File file : files) {
+            if (size <= mMaxDexCacheSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+                synchronized (sCachedDexClassLoaders) {
+                    sCachedDexClassLoaders.remove(file.getPath());
+                }
             }
         }
     }
@@ -92,13 +254,14 @@ public class AndroidClassLoader extends ClassLoader implements GeneratedClassLoa
         if (!jar.exists() || !jar.canRead()) {
             throw new FileNotFoundException("File does not exist or readable: " + jar.getPath());
         }
-        File dexFile = new File(mCacheDir, generateDexFileName(jar));
+        File dexFile = new File(mDexCacheDir, generateDexFileName(jar) + ".jar");
         if (dexFile.exists()) {
-            loadDex(dexFile);
+            dexFile.setLastModified(System.currentTimeMillis());
+            loadDex(dexFile, mDexCacheDir);
             return;
         }
+        final File classFile = generateTempFile(jar.getPath(), false);
         try {
-            final File classFile = generateTempFile(jar.getPath(), false);
             final ZipFile zipFile = new ZipFile(classFile);
             final ZipFile jarFile = new ZipFile(jar);
             //noinspection unchecked
@@ -110,11 +273,14 @@ public class AndroidClassLoader extends ClassLoader implements GeneratedClassLoa
                     zipFile.addStream(jarFile.getInputStream(header), parameters);
                 }
             }
-            dexJar(classFile, dexFile);
-            classFile.delete();
+            dexToCache(classFile, dexFile);
         } catch (ZipException e) {
             throw new IOException(e);
+        } finally {
+            classFile.delete();
         }
+        loadDex(dexFile, mDexCacheDir);
+        trimDexCache();
     }
 
     private String generateDexFileName(File jar) {
@@ -123,30 +289,27 @@ public class AndroidClassLoader extends ClassLoader implements GeneratedClassLoa
     }
 
     public DexClassLoader loadDex(File file) throws FileNotFoundException {
+        return loadDex(file, mCacheDir);
+    }
+
+    private DexClassLoader loadDex(File file, File optimizedDir) throws FileNotFoundException {
         Log.d(LOG_TAG, "loadDex: file = " + file);
         if (!file.exists()) {
             throw new FileNotFoundException(file.getPath());
         }
-        DexClassLoader loader = new DexClassLoader(file.getPath(), mCacheDir.getPath(), null, parent);
+        DexClassLoader loader = new DexClassLoader(file.getPath(), optimizedDir.getPath(), null, parent);
         mDexClassLoaders.add(loader);
         return loader;
     }
 
-    private DexClassLoader dexJar(File classFile, File dexFile) throws IOException {
+    private void runDx(File classFile, File dexFile) throws IOException {
         final Main.Arguments arguments = new Main.Arguments();
         arguments.fileNames = new String[]{classFile.getPath()};
-        boolean isTmpDex = dexFile == null;
-        if (isTmpDex) {
-            dexFile = generateTempFile("dex-" + classFile.getPath(), true);
-        }
         arguments.outName = dexFile.getPath();
         arguments.jarOutput = true;
-        Main.run(arguments);
-        DexClassLoader loader = loadDex(dexFile);
-        if (isTmpDex) {
-            dexFile.delete();
+        if (Main.run(arguments) != 0) {
+            throw new IOException("failed to dex " + classFile);
         }
-        return loader;
     }
 
     /**
@@ -173,9 +336,11 @@ public class AndroidClassLoader extends ClassLoader implements GeneratedClassLoa
         Class<?> loadedClass = findLoadedClass(name);
         if (loadedClass == null) {
             for (DexClassLoader dex : mDexClassLoaders) {
-                loadedClass = dex.loadClass(name);
-                if (loadedClass != null) {
+                try {
+                    loadedClass = dex.loadClass(name);
                     break;
+                } catch (ClassNotFoundException ignored) {
+                    // 继续在下一个dex中查找
                 }
             }
             if (loadedClass == null) {
@@ -1,5 +1,8 @@
 package com.stardust.autojs.rhino
 
+import android.os.Looper
+import android.os.SystemClock
+import com.stardust.autojs.runtime.exception.ScriptInterruptedException
 import org.mozilla.javascript.Context
 import org.mozilla.javascript.ContextFactory
 import org.mozilla.javascript.ContinuationPending
@@ -7,8 +10,31 @@ import org.mozilla.javascript.Scriptable
 
 class AutoJsContext(factory: ContextFactory?) : Context(factory) {
 
+    interface CpuTimeLimitListener {
+        fun onCpuTimeLimitExceeded(cpuTime: Long, limit: Long)
+    }
+
     private val mContinuations = HashSet<Any>()
 
+    /**
+     * 停止标记，由其他线程设置。每次指令观察只需读取一次volatile变量，
+     * 线程的中断状态(ThreadCompat需要额外查表)每[INTERRUPT_CHECK_INTERVAL]次观察才检查一次。
+     */
+    @Volatile
+    var isStopRequested = false
+        private set
+
+    // 缓存当前线程是否为主线程，Context被移交到其他线程时重新计算
+    private var mObservedThread: Thread? = null
+    private var mObservedOnMainThread = false
+    private var mObserveCount = 0
+
+    private var mCpuTimeLimit = 0L
+    private var mCpuTimeStart = 0L
+    private var mCpuTimeWarnOnly = false
+    private var mCpuTimeLimitExceeded = false
+    private var mCpuTimeLimitListener: CpuTimeLimitListener? = null
+
     override fun captureContinuation(): ContinuationPending {
         val continuationPending = super.captureContinuation()
         mContinuations.add(continuationPending.continuation)
@@ -24,4 +50,65 @@ class AutoJsContext(factory: ContextFactory?) : Context(factory) {
         return mContinuations.isNotEmpty()
     }
 
-}
\ No newline at end of file
+    fun requestStop() {
+        isStopRequested = true
+    }
+
+    fun clearStopRequest() {
+        isStopRequested = false
+    }
+
+    /**
+     * 限制当前线程从现在开始执行脚本占用的CPU时间。必须在Context所在的线程调用。
+     *
+     * @param limit    CPU时间上限(毫秒)，小于等于0表示不限制
+     * @param warnOnly 为true时超出上限只通知一次，否则停止脚本
+     */
+    fun setCpuTimeLimit(limit: Long, warnOnly: Boolean, listener: CpuTimeLimitListener?) {
+        mCpuTimeLimit = limit
+        mCpuTimeWarnOnly = warnOnly
+        mCpuTimeLimitListener = listener
+        mCpuTimeLimitExceeded = false
+        mCpuTimeStart = SystemClock.currentThreadTimeMillis()
+    }
+
+    fun observeInstructions() {
+        val thread = Thread.currentThread()
+        if (thread !== mObservedThread) {
+            mObservedThread = thread
+            mObservedOnMainThread = Looper.myLooper() == Looper.getMainLooper()
+        }
+        if (mObservedOnMainThread) {
+            return
+        }
+        if (isStopRequested) {
+            throw ScriptInterruptedException()
+        }
+        if (++mObserveCount % INTERRUPT_CHECK_INTERVAL != 0) {
+            return
+        }
+        if (thread.isInterrupted) {
+            throw ScriptInterruptedException()
+        }
+        if (mCpuTimeLimit > 0 && !mCpuTimeLimitExceeded) {
+            checkCpuTime()
+        }
+    }
+
+    private fun checkCpuTime() {
+        val cpuTime = SystemClock.currentThreadTimeMillis() - mCpuTimeStart
+        if (cpuTime < mCpuTimeLimit) {
+            return
+        }
+        mCpuTimeLimitExceeded = true
+        mCpuTimeLimitListener?.onCpuTimeLimitExceeded(cpuTime, mCpuTimeLimit)
+        if (!mCpuTimeWarnOnly) {
+            throw ScriptInterruptedException()
+        }
+    }
+
+    companion object {
+        const val INTERRUPT_CHECK_INTERVAL = 8
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.stardust.autojs.rhino;
+
+import com.stardust.util.LimitedHashMap;
+import com.stardust.util.MD5;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把脚本编译为JVM字节码，再通过{@link AndroidClassLoader}转换为dex加载。
+ * <p>
+ * 生成的类名由源码的哈希决定，因此同一版本的脚本每次编译得到的字节码相同，
+ * 转换后的dex可以命中AndroidClassLoader的磁盘缓存，dx的开销每个版本的脚本只需付出一次。
+ */
+public class DexScriptCompiler {
+
+    public static final int DEFAULT_OPTIMIZATION_LEVEL = 1;
+
+    private static final String CLASS_NAME_PREFIX = "com.stardust.autojs.gen.Script_";
+    private static final int MAX_CACHED_CLASSES = 16;
+
+    private static final Map<String, Class<?>> sScriptClasses = new LimitedHashMap<>(MAX_CACHED_CLASSES);
+
+    /**
+     * @return 当前Context的类加载器是否支持把字节码转换为dex
+     */
+    public static boolean isSupported(Context cx) {
+        return cx.getApplicationClassLoader() instanceof AndroidClassLoader;
+    }
+
+    /**
+     * 以指定的优化级别编译脚本。编译得到的Script与作用域无关，可以在多个引擎中执行。
+     *
+     * @param optimizationLevel 优化级别，0~9
+     */
+    public static Script compile(Context cx, String sourceName, String source, int optimizationLevel) {
+        if (optimizationLevel < 0 || optimizationLevel > 9) {
+            throw new IllegalArgumentException("optimizationLevel = " + optimizationLevel);
+        }
+        String key = MD5.md5(sourceName + "\n" + optimizationLevel + "\n" + cx.getLanguageVersion() + "\n" + source);
+        Class<?> scriptClass;
+        synchronized (sScriptClasses) {
+            scriptClass = sScriptClasses.get(key);
+        }
+        if (scriptClass == null) {
+            scriptClass = defineScriptClass(cx, sourceName, source, optimizationLevel, CLASS_NAME_PREFIX + key);
+            synchronized (sScriptClasses) {
+                sScriptClasses.put(key, scriptClass);
+            }
+        }
+        try {
+            return (Script) scriptClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Class<?> defineScriptClass(Context cx, String sourceName, String source, int optimizationLevel, String mainClassName) {
+        AndroidClassLoader loader = (AndroidClassLoader) cx.getApplicationClassLoader();
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.initFromContext(cx);
+        env.setOptimizationLevel(optimizationLevel);
+        Object[] classFiles = new ClassCompiler(env).compileToClassFiles(source, sourceName, 1, mainClassName);
+        Map<String, byte[]> classes = new HashMap<>();
+        for (int i = 0; i < classFiles.length; i += 2) {
+            classes.put((String) classFiles[i], (byte[]) classFiles[i + 1]);
+        }
+        return loader.defineClasses(classes).get(mainClassName);
+    }
+
+}
@@ -1,10 +1,7 @@
 package com.stardust.autojs.rhino;
 
-import android.os.Looper;
 import android.util.Log;
 
-import com.stardust.autojs.runtime.exception.ScriptInterruptedException;
-
 import org.mozilla.javascript.Context;
 
 import java.io.File;
@@ -12,8 +9,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class InterruptibleAndroidContextFactory extends AndroidContextFactory {
 
+    public static final int DEFAULT_INSTRUCTION_OBSERVER_THRESHOLD = 10000;
+
     private AtomicInteger mContextCount = new AtomicInteger();
     private static final String LOG_TAG = "ContextFactory";
+    private volatile int mInstructionObserverThreshold = DEFAULT_INSTRUCTION_OBSERVER_THRESHOLD;
 
     /**
      * Create a new factory. It will cache generated code in the given directory
@@ -24,17 +24,29 @@ public class InterruptibleAndroidContextFactory extends AndroidContextFactory {
         super(cacheDirectory);
     }
 
+    /**
+     * 设置之后创建的Context每执行多少条指令检查一次停止标记。越小停止越及时，但解释执行的开销越大。
+     */
+    public void setInstructionObserverThreshold(int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold = " + threshold);
+        }
+        mInstructionObserverThreshold = threshold;
+    }
+
+    public int getInstructionObserverThreshold() {
+        return mInstructionObserverThreshold;
+    }
+
     @Override
     protected void observeInstructionCount(Context cx, int instructionCount) {
-        if (Thread.currentThread().isInterrupted() && Looper.myLooper() != Looper.getMainLooper()) {
-            throw new ScriptInterruptedException();
-        }
+        ((AutoJsContext) cx).observeInstructions();
     }
 
     @Override
     protected Context makeContext() {
         Context cx = new AutoJsContext(this);
-        cx.setInstructionObserverThreshold(10000);
+        cx.setInstructionObserverThreshold(mInstructionObserverThreshold);
         return cx;
     }
 
@@ -1,5 +1,12 @@
 package com.stardust.autojs.runtime;
 
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.lang.reflect.Array;
+
 /**
  * Created by Stardust on 2017/7/21.
  */
@@ -31,10 +38,47 @@ public class ScriptBridges {
     }
 
     public Object callFunction(Object func, Object target, Object args) {
+        // 当前线程有Context时直接在Java中转换参数并调用，省去一次JavaScript函数调用和对每个参数的反射
+        Context cx = Context.getCurrentContext();
+        if (cx != null && func instanceof Function && args != null && args.getClass().isArray()) {
+            return callFunctionDirectly(cx, (Function) func, target, args);
+        }
         checkBridges();
         return mBridges.call(func, target, args);
     }
 
+    private static Object callFunctionDirectly(Context cx, Function func, Object target, Object args) {
+        Scriptable scope = ScriptableObject.getTopLevelScope(func);
+        int len = Array.getLength(args);
+        Object[] jsArgs = len == 0 ? Bridges.NO_ARGUMENTS : new Object[len];
+        for (int i = 0; i < len; i++) {
+            jsArgs[i] = javaToJS(cx, scope, Array.get(args, i));
+        }
+        Scriptable thisObj;
+        if (target == null) {
+            thisObj = scope;
+        } else {
+            Object wrapped = cx.getWrapFactory().wrap(cx, scope, target, null);
+            thisObj = wrapped instanceof Scriptable ? (Scriptable) wrapped : Context.toObject(wrapped, scope);
+        }
+        // 与通过Bridges接口调用时的返回值保持一致
+        return Context.jsToJava(func.call(cx, scope, thisObj, jsArgs), Object.class);
+    }
+
+    /**
+     * 与__bridges__.js中的wrap()相同：Boolean、Integer、Long、Float、Double转换为JavaScript的基本类型，
+     * 其他Java对象交给WrapFactory包装。
+     */
+    public static Object javaToJS(Context cx, Scriptable scope, Object value) {
+        if (value == null || value instanceof Scriptable || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        return cx.getWrapFactory().wrap(cx, scope, value, null);
+    }
+
     private void checkBridges() {
         if (mBridges == null)
             throw new IllegalStateException("no bridges set");
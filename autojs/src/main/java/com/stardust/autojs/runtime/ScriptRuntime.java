@@ -11,6 +11,7 @@ import com.stardust.autojs.ScriptEngineService;
 import com.stardust.autojs.annotation.ScriptVariable;
 import com.stardust.autojs.core.accessibility.AccessibilityBridge;
 import com.stardust.autojs.core.image.Colors;
+import com.stardust.autojs.core.http.MutableOkHttp;
 import com.stardust.autojs.core.permission.Permissions;
 import com.stardust.autojs.rhino.AndroidClassLoader;
 import com.stardust.autojs.rhino.TopLevelScope;
@@ -202,6 +203,7 @@ public class ScriptRuntime {
     private ScreenMetrics mScreenMetrics = new ScreenMetrics();
     private Thread mThread;
     private TopLevelScope mTopLevelScope;
+    private final ScriptEngineService mEngineService;
 
 
     protected ScriptRuntime(Builder builder) {
@@ -218,6 +220,7 @@ public class ScriptRuntime {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             images = new Images(context, this, builder.mScreenCaptureRequester);
         }
+        mEngineService = builder.mEngineService;
         engines = new Engines(builder.mEngineService, this);
         dialogs = new Dialogs(this);
         device = new Device(context);
@@ -238,6 +241,16 @@ public class ScriptRuntime {
         sensors = new Sensors(uiHandler.getContext(), this);
     }
 
+    /**
+     * 创建脚本自己的http客户端，其超时等设置只影响本脚本，连接池、线程池和磁盘缓存则与其他脚本共享
+     */
+    public MutableOkHttp createHttpClient() {
+        if (mEngineService == null) {
+            return new MutableOkHttp();
+        }
+        return new MutableOkHttp(mEngineService.getHttpClient(), mEngineService.getHttpCache());
+    }
+
     public TopLevelScope getTopLevelScope() {
         return mTopLevelScope;
     }
@@ -416,12 +429,27 @@ public class ScriptRuntime {
         });
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             ignoresException(images::releaseScreenCapturer);
+            ignoresException(images::recycle);
         }
         ignoresException(sensors::unregisterAll);
         ignoresException(timers::recycle);
         ignoresException(ui::recycle);
     }
 
+    /**
+     * 释放没有执行过{@link #init()}的运行时(例如被丢弃的预热引擎)在构造时创建的资源。不会触发exit事件
+     */
+    public void recycleUninitialized() {
+        if (loopers != null)
+            throw new IllegalStateException("runtime has been initialized");
+        ignoresException(floaty::closeAll);
+        ignoresException(media::recycle);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            ignoresException(images::recycle);
+        }
+        ignoresException(ui::recycle);
+    }
+
     private void ignoresException(Runnable r) {
         try {
             r.run();
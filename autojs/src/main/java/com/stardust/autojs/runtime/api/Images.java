@@ -18,8 +18,14 @@ import android.util.Base64;
 import android.view.Gravity;
 
 import com.stardust.autojs.annotation.ScriptVariable;
+import com.stardust.autojs.core.image.BitmapPool;
 import com.stardust.autojs.core.image.ColorFinder;
+import com.stardust.autojs.core.image.CompiledTemplate;
+import com.stardust.autojs.core.image.DirtyRegionDetector;
+import com.stardust.autojs.core.image.ImageExecutors;
+import com.stardust.autojs.core.image.ImagePyramid;
 import com.stardust.autojs.core.image.ImageWrapper;
+import com.stardust.autojs.core.image.TemplateCache;
 import com.stardust.autojs.core.image.TemplateMatching;
 import com.stardust.autojs.core.image.capture.ScreenCaptureRequester;
 import com.stardust.autojs.core.image.capture.ScreenCapturer;
@@ -30,6 +36,7 @@ import com.stardust.autojs.core.util.ScriptPromiseAdapter;
 import com.stardust.autojs.runtime.ScriptRuntime;
 import com.stardust.concurrent.VolatileDispose;
 import com.stardust.pio.UncheckedIOException;
+import com.stardust.util.LimitedHashMap;
 import com.stardust.util.ScreenMetrics;
 
 import org.opencv.core.Point;
@@ -43,6 +50,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -54,12 +62,43 @@ import java.util.List;
 @RequiresApi(api = Build.VERSION_CODES.KITKAT)
 public class Images {
 
+    public static final int CAPTURE_FORMAT_BITMAP = 0;
+    public static final int CAPTURE_FORMAT_MAT = 1;
+
     private ScriptRuntime mScriptRuntime;
     private ScreenCaptureRequester mScreenCaptureRequester;
     private ScreenCapturer mScreenCapturer;
     private Context mContext;
     private Image mPreCapture;
     private ImageWrapper mPreCaptureImage;
+    private final BitmapPool mBitmapPool = new BitmapPool();
+    private volatile int mCaptureFormat = CAPTURE_FORMAT_BITMAP;
+    private ImageWrapper[] mPreRegionImages;
+    private final LimitedHashMap<Rect, DirtyRegionDetector> mDirtyRegionDetectors = new LimitedHashMap<Rect, DirtyRegionDetector>(16) {
+        @Override
+        protected boolean removeEldestEntry(Entry<Rect, DirtyRegionDetector> eldest) {
+            // 被淘汰的检测器释放保存的上一帧Mat，否则要等到垃圾回收时才释放
+            if (super.removeEldestEntry(eldest)) {
+                eldest.getValue().reset();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final TemplateCache mTemplateCache = new TemplateCache();
+    private final Object mSourcePyramidLock = new Object();
+    private ImagePyramid mSourcePyramid;
+    private ImageWrapper mSourcePyramidImage;
+    private Mat mSourcePyramidMat;
+    private Rect mSourcePyramidRect;
+    // 复用的金字塔所属的图片被回收时释放金字塔，避免其缓存的各层Mat一直存活到下一次匹配
+    private final ImageWrapper.OnRecycleListener mOnSourceImageRecycleListener = image -> {
+        synchronized (mSourcePyramidLock) {
+            if (mSourcePyramidImage == image) {
+                releaseSourcePyramid();
+            }
+        }
+    };
     private ScreenMetrics mScreenMetrics;
     private volatile boolean mOpenCvInitialized = false;
 
@@ -98,23 +137,128 @@ public class Images {
     }
 
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
-    public synchronized ImageWrapper captureScreen() {
+    public ImageWrapper captureScreen() {
+        return captureScreen(-1, ScreenCapturer.MODE_NEXT_FRAME);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public ImageWrapper captureScreen(long timeout) {
+        return captureScreen(timeout, ScreenCapturer.MODE_NEXT_FRAME);
+    }
+
+    /**
+     * 截取屏幕。上一次截图返回的图片会被回收，其像素缓冲区会被复用于本次截图。
+     *
+     * @param timeout 等待新画面的最长时间(毫秒)，小于0表示一直等待
+     * @param mode    {@link ScreenCapturer#MODE_NEXT_FRAME} 或 {@link ScreenCapturer#MODE_LATEST_FRAME}
+     * @return 截图，超时则返回null
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public synchronized ImageWrapper captureScreen(long timeout, int mode) {
         ScriptRuntime.requiresApi(21);
         if (mScreenCapturer == null) {
             throw new SecurityException("No screen capture permission");
         }
-        Image capture = mScreenCapturer.capture();
-        if (capture == mPreCapture && mPreCaptureImage != null) {
+        Image capture = mScreenCapturer.capture(timeout, mode);
+        if (capture == null) {
+            return null;
+        }
+        if (capture == mPreCapture && mPreCaptureImage != null && !mPreCaptureImage.isRecycled()) {
             return mPreCaptureImage;
         }
         mPreCapture = capture;
         if (mPreCaptureImage != null) {
             mPreCaptureImage.recycle();
         }
-        mPreCaptureImage = ImageWrapper.ofImage(capture);
+        if (mCaptureFormat == CAPTURE_FORMAT_MAT) {
+            initOpenCvIfNeeded();
+            mPreCaptureImage = ImageWrapper.ofMat(ImageWrapper.toMat(capture));
+        } else {
+            mPreCaptureImage = ImageWrapper.ofImage(capture, mBitmapPool);
+        }
         return mPreCaptureImage;
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public ImageWrapper captureScreen(Rect region) {
+        ImageWrapper[] images = captureScreen(new Rect[]{region}, -1, ScreenCapturer.MODE_NEXT_FRAME);
+        return images == null ? null : images[0];
+    }
+
+    /**
+     * 截取屏幕中的若干区域。只有区域内的像素会被复制，返回的图片大小与区域相同。
+     * 与{@link #captureScreen()}一样，上一次区域截图返回的图片会在本次截图时被回收。
+     *
+     * @param regions 截图区域，宽高小于等于0表示一直延伸到画面边缘
+     * @return 与regions一一对应的图片，超时则返回null
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public synchronized ImageWrapper[] captureScreen(Rect[] regions, long timeout, int mode) {
+        ScriptRuntime.requiresApi(21);
+        if (mScreenCapturer == null) {
+            throw new SecurityException("No screen capture permission");
+        }
+        initOpenCvIfNeeded();
+        Image capture = mScreenCapturer.capture(timeout, mode);
+        if (capture == null) {
+            return null;
+        }
+        if (mPreRegionImages != null) {
+            for (ImageWrapper image : mPreRegionImages) {
+                image.recycle();
+            }
+        }
+        ImageWrapper[] images = new ImageWrapper[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            Rect region = regions[i];
+            int width = region.width > 0 ? region.width : capture.getWidth() - region.x;
+            int height = region.height > 0 ? region.height : capture.getHeight() - region.y;
+            images[i] = ImageWrapper.ofMat(ImageWrapper.toMat(capture, new Rect(region.x, region.y, width, height)));
+        }
+        mPreRegionImages = images;
+        return images;
+    }
+
+    /**
+     * 把图片与上一次以相同region调用本函数时的图片比较，返回发生变化的区域。
+     *
+     * @param image  截图，通常是{@link #captureScreen(Rect)}的返回值
+     * @param region 图片在屏幕上的区域，用于区分不同的比较对象，并把结果转换为屏幕坐标。可以为null
+     * @return 发生变化的区域(屏幕坐标)，如果没有变化则返回null
+     */
+    public Rect detectChanges(ImageWrapper image, Rect region) {
+        initOpenCvIfNeeded();
+        DirtyRegionDetector detector;
+        synchronized (mDirtyRegionDetectors) {
+            detector = mDirtyRegionDetectors.get(region);
+            if (detector == null) {
+                detector = new DirtyRegionDetector();
+                mDirtyRegionDetectors.put(region, detector);
+            }
+        }
+        Rect dirty = detector.update(image.getMat());
+        if (dirty != null && region != null) {
+            dirty.x += region.x;
+            dirty.y += region.y;
+        }
+        return dirty;
+    }
+
+    /**
+     * 设置截图的格式。{@link #CAPTURE_FORMAT_MAT}会把屏幕画面直接复制到Mat，只有在脚本需要Bitmap时才会创建Bitmap，
+     * 适合频繁找图找色的场景。
+     */
+    public void setCaptureFormat(int format) {
+        if (format != CAPTURE_FORMAT_BITMAP && format != CAPTURE_FORMAT_MAT) {
+            throw new IllegalArgumentException("unknown capture format " + format);
+        }
+        mCaptureFormat = format;
+    }
+
+    public int getCaptureFormat() {
+        return mCaptureFormat;
+    }
+
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     public boolean captureScreen(String path) {
         path = mScriptRuntime.files.path(path);
@@ -267,6 +411,13 @@ public class Images {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && mScreenCapturer != null) {
             mScreenCapturer.release();
         }
+        mBitmapPool.clear();
+        synchronized (mDirtyRegionDetectors) {
+            for (DirtyRegionDetector detector : mDirtyRegionDetectors.values()) {
+                detector.reset();
+            }
+            mDirtyRegionDetectors.clear();
+        }
     }
 
     public Point findImage(ImageWrapper image, ImageWrapper template) {
@@ -282,18 +433,41 @@ public class Images {
     }
 
     public Point findImage(ImageWrapper image, ImageWrapper template, float weakThreshold, float threshold, Rect rect, int maxLevel) {
+        return findImage(image, template, weakThreshold, threshold, rect, maxLevel, false);
+    }
+
+    public Point findImage(ImageWrapper image, ImageWrapper template, float weakThreshold, float threshold, Rect rect, int maxLevel, boolean grayscale) {
+        List<TemplateMatching.Match> result = matchTemplate(image, template, TemplateMatching.MATCHING_METHOD_DEFAULT,
+                weakThreshold, threshold, rect, maxLevel, 1, grayscale);
+        return result.isEmpty() ? null : result.get(0).point;
+    }
+
+    public List<TemplateMatching.Match> matchTemplate(ImageWrapper image, ImageWrapper template, float weakThreshold, float threshold, Rect rect, int maxLevel, int limit) {
+        return matchTemplate(image, template, Imgproc.TM_CCOEFF_NORMED, weakThreshold, threshold, rect, maxLevel, limit, false);
+    }
+
+    /**
+     * 模板匹配。模板的金字塔各层缓存在{@link TemplateCache}中，图片(或区域)的金字塔在用同一张图片多次匹配时复用。
+     */
+    public List<TemplateMatching.Match> matchTemplate(ImageWrapper image, ImageWrapper template, int matchMethod, float weakThreshold, float threshold,
+                                                      Rect rect, int maxLevel, int limit, boolean grayscale) {
         initOpenCvIfNeeded();
         if (image == null)
             throw new NullPointerException("image = null");
         if (template == null)
             throw new NullPointerException("template = null");
-        Mat src = image.getMat();
-        if (rect != null) {
-            src = new Mat(src, rect);
+        ImagePyramid src = obtainSourcePyramid(image, rect);
+        CompiledTemplate compiledTemplate = mTemplateCache.get(template);
+        List<TemplateMatching.Match> result;
+        try {
+            result = TemplateMatching.fastTemplateMatching(src, compiledTemplate, matchMethod,
+                    weakThreshold, threshold, maxLevel, limit, grayscale);
+        } finally {
+            src.recycle();
+            compiledTemplate.recycle();
         }
-        org.opencv.core.Point point = TemplateMatching.fastTemplateMatching(src, template.getMat(), TemplateMatching.MATCHING_METHOD_DEFAULT,
-                weakThreshold, threshold, maxLevel);
-        if (point != null) {
+        for (TemplateMatching.Match match : result) {
+            Point point = match.point;
             if (rect != null) {
                 point.x += rect.x;
                 point.y += rect.y;
@@ -301,37 +475,96 @@ public class Images {
             point.x = mScreenMetrics.scaleX((int) point.x);
             point.y = mScreenMetrics.scaleX((int) point.y);
         }
-        if (src != image.getMat()) {
-            OpenCVHelper.release(src);
-        }
-        return point;
+        return result;
     }
 
-    public List<TemplateMatching.Match> matchTemplate(ImageWrapper image, ImageWrapper template, float weakThreshold, float threshold, Rect rect, int maxLevel, int limit) {
+    /**
+     * 在同一张图片中匹配多个模板，图片的金字塔只计算一次。
+     *
+     * @param parallel 是否在{@link ImageExecutors}的线程池中并行匹配各个模板
+     * @return 与templates一一对应的匹配结果
+     */
+    public List<List<TemplateMatching.Match>> matchTemplates(ImageWrapper image, ImageWrapper[] templates, int matchMethod, float weakThreshold, float threshold,
+                                                             Rect rect, int maxLevel, int limit, boolean grayscale, boolean parallel) {
         initOpenCvIfNeeded();
         if (image == null)
             throw new NullPointerException("image = null");
-        if (template == null)
-            throw new NullPointerException("template = null");
-        Mat src = image.getMat();
-        if (rect != null) {
-            src = new Mat(src, rect);
+        List<CompiledTemplate> compiledTemplates = new ArrayList<>(templates.length);
+        ImagePyramid src = obtainSourcePyramid(image, rect);
+        List<List<TemplateMatching.Match>> results;
+        try {
+            for (ImageWrapper template : templates) {
+                if (template == null)
+                    throw new NullPointerException("template = null");
+                compiledTemplates.add(mTemplateCache.get(template));
+            }
+            results = TemplateMatching.fastTemplateMatching(src, compiledTemplates, matchMethod, weakThreshold, threshold,
+                    maxLevel, limit, grayscale, parallel ? ImageExecutors.getExecutor() : null);
+        } finally {
+            src.recycle();
+            for (CompiledTemplate compiledTemplate : compiledTemplates) {
+                compiledTemplate.recycle();
+            }
         }
-        List<TemplateMatching.Match> result = TemplateMatching.fastTemplateMatching(src, template.getMat(), Imgproc.TM_CCOEFF_NORMED,
-                weakThreshold, threshold, maxLevel, limit);
-        for (TemplateMatching.Match match : result) {
-            Point point = match.point;
-            if (rect != null) {
-                point.x += rect.x;
-                point.y += rect.y;
+        for (List<TemplateMatching.Match> result : results) {
+            for (TemplateMatching.Match match : result) {
+                Point point = match.point;
+                if (rect != null) {
+                    point.x += rect.x;
+                    point.y += rect.y;
+                }
+                point.x = mScreenMetrics.scaleX((int) point.x);
+                point.y = mScreenMetrics.scaleX((int) point.y);
             }
-            point.x = mScreenMetrics.scaleX((int) point.x);
-            point.y = mScreenMetrics.scaleX((int) point.y);
         }
-        if (src != image.getMat()) {
-            OpenCVHelper.release(src);
+        return results;
+    }
+
+    /**
+     * 获取图片(或区域)的金字塔。如果与上一次匹配的图片、区域相同，则复用上一次的金字塔。
+     * 返回的金字塔已被retain，使用完毕后需要recycle。
+     */
+    private ImagePyramid obtainSourcePyramid(ImageWrapper image, Rect rect) {
+        Mat mat = image.getMat();
+        synchronized (mSourcePyramidLock) {
+            if (mSourcePyramid != null && mSourcePyramidImage == image && mSourcePyramidMat == mat
+                    && (rect == null ? mSourcePyramidRect == null : rect.equals(mSourcePyramidRect))) {
+                mSourcePyramid.retain();
+                return mSourcePyramid;
+            }
+            releaseSourcePyramid();
+            mSourcePyramid = rect == null ? new ImagePyramid(mat, false) : new ImagePyramid(new Mat(mat, rect), true);
+            mSourcePyramidImage = image;
+            mSourcePyramidMat = mat;
+            mSourcePyramidRect = rect == null ? null : rect.clone();
+            image.addOnRecycleListener(mOnSourceImageRecycleListener);
+            mSourcePyramid.retain();
+            return mSourcePyramid;
+        }
+    }
+
+    public void setTemplateCacheSize(long maxBytes) {
+        mTemplateCache.setMaxBytes(maxBytes);
+    }
+
+    public void recycle() {
+        mTemplateCache.clear();
+        synchronized (mSourcePyramidLock) {
+            releaseSourcePyramid();
+        }
+    }
+
+    private void releaseSourcePyramid() {
+        if (mSourcePyramid != null) {
+            mSourcePyramid.recycle();
+            mSourcePyramid = null;
         }
-        return result;
+        if (mSourcePyramidImage != null) {
+            mSourcePyramidImage.removeOnRecycleListener(mOnSourceImageRecycleListener);
+            mSourcePyramidImage = null;
+        }
+        mSourcePyramidMat = null;
+        mSourcePyramidRect = null;
     }
 
     public Mat newMat() {
@@ -10,6 +10,8 @@ import com.stardust.pio.UncheckedIOException;
 import com.stardust.util.MimeTypes;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Stardust on 2018/2/12.
@@ -17,24 +19,49 @@ import java.io.IOException;
 
 public class Media implements MediaScannerConnection.MediaScannerConnectionClient {
 
+    private final Context mContext;
     private MediaScannerConnection mScannerConnection;
+    // 媒体扫描服务连接之前请求扫描的文件，连接后再扫描
+    private final List<String> mPendingScanPaths = new ArrayList<>();
     private MediaPlayerWrapper mMediaPlayer;
     private ScriptRuntime mRuntime;
 
     public Media(Context context, ScriptRuntime runtime) {
-        mScannerConnection = new MediaScannerConnection(context, this);
+        mContext = context;
         mRuntime = runtime;
-        mScannerConnection.connect();
     }
 
     public void scanFile(String path) {
-        String mimeType = MimeTypes.fromFileOr(path, null);
-        mScannerConnection.scanFile(mRuntime.files.path(path), mimeType);
+        path = mRuntime.files.path(path);
+        synchronized (mPendingScanPaths) {
+            // 第一次使用时才绑定媒体扫描服务，避免预热的运行时在没有使用时也持有服务连接
+            if (mScannerConnection == null) {
+                mScannerConnection = new MediaScannerConnection(mContext, this);
+                mScannerConnection.connect();
+            }
+            if (!mScannerConnection.isConnected()) {
+                mPendingScanPaths.add(path);
+                return;
+            }
+        }
+        mScannerConnection.scanFile(path, MimeTypes.fromFileOr(path, null));
     }
 
     @Override
     public void onMediaScannerConnected() {
-
+        List<String> paths;
+        MediaScannerConnection connection;
+        synchronized (mPendingScanPaths) {
+            connection = mScannerConnection;
+            if (connection == null) {
+                return;
+            }
+            paths = new ArrayList<>(mPendingScanPaths);
+            mPendingScanPaths.clear();
+        }
+        for (String path : paths) {
+            connection.scanFile(path, MimeTypes.fromFileOr(path, null));
+        }
     }
 
     public void playMusic(String path, float volume) {
@@ -110,9 +137,12 @@ public class Media implements MediaScannerConnection.MediaScannerConnectionClien
     }
 
     public void recycle() {
-        if (mScannerConnection != null) {
-            mScannerConnection.disconnect();
-            mScannerConnection = null;
+        synchronized (mPendingScanPaths) {
+            if (mScannerConnection != null) {
+                mScannerConnection.disconnect();
+                mScannerConnection = null;
+            }
+            mPendingScanPaths.clear();
         }
         if (mMediaPlayer != null) {
             mMediaPlayer.release();
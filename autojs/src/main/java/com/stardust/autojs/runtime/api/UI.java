@@ -5,6 +5,7 @@ import android.graphics.drawable.Drawable;
 import androidx.annotation.Nullable;
 
 import com.stardust.autojs.core.graphics.ScriptCanvasView;
+import com.stardust.autojs.core.ui.ScriptBindingEvaluator;
 import com.stardust.autojs.core.ui.inflater.DynamicLayoutInflater;
 import com.stardust.autojs.core.ui.inflater.ResourceParser;
 import com.stardust.autojs.core.ui.inflater.inflaters.CanvasViewInflater;
@@ -41,6 +42,7 @@ public class UI extends ProxyObject {
         mResourceParser = new ResourceParser(new Drawables());
         mDynamicLayoutInflater = new DynamicLayoutInflater(mResourceParser);
         mDynamicLayoutInflater.setContext(context);
+        mDynamicLayoutInflater.setBindingEvaluator(new ScriptBindingEvaluator(runtime));
         mDynamicLayoutInflater.registerViewAttrSetter(JsImageView.class.getName(),
                 new JsImageViewInflater(mResourceParser));
         mDynamicLayoutInflater.registerViewAttrSetter(JsListView.class.getName(),
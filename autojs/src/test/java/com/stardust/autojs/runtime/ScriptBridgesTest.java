@@ -0,0 +1,99 @@
+package com.stardust.autojs.runtime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.WrapFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 检查直接在Java中调用回调({@link ScriptBridges#callFunction})与通过__bridges__.js调用的结果相同。
+ */
+public class ScriptBridgesTest {
+
+    // 单元测试的工作目录是模块目录
+    private static final String BRIDGES_SCRIPT = "src/main/assets/modules/__bridges__.js";
+
+    private Context mContext;
+    private ScriptableObject mScope;
+    private ScriptBridges mBridges;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = Context.enter();
+        mContext.setOptimizationLevel(-1);
+        // 与RhinoJavaScriptEngine的WrapFactory一样，String直接作为JavaScript字符串
+        mContext.setWrapFactory(new WrapFactory() {
+            @Override
+            public Object wrap(Context cx, Scriptable scope, Object obj, Class<?> staticType) {
+                return obj instanceof String ? obj : super.wrap(cx, scope, obj, staticType);
+            }
+        });
+        mScope = mContext.initStandardObjects();
+        mBridges = new ScriptBridges();
+        // __bridges__.js依赖的module和util
+        mContext.evaluateString(mScope, "var module = {};" +
+                "var util = { isFunction: function (f) { return typeof(f) == 'function'; } };", "<prelude>", 1, null);
+        Reader reader = new InputStreamReader(new FileInputStream(new File(BRIDGES_SCRIPT)), "UTF-8");
+        try {
+            mContext.evaluateReader(mScope, reader, BRIDGES_SCRIPT, 1, null);
+        } finally {
+            reader.close();
+        }
+        // 接口适配器需要在脚本中创建
+        ScriptableObject.putProperty(mScope, "scriptBridges", Context.javaToJS(mBridges, mScope));
+        mContext.evaluateString(mScope, "scriptBridges.setBridges(module.exports);", "<init>", 1, null);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Test
+    public void sameResult() {
+        Function callback = function("function (a, b, c) { return typeof(a) + typeof(b) + typeof(c) + (a + b); }");
+        assertSameResult(callback, null, new Object[]{1, 2.5, true});
+        assertSameResult(callback, null, new Object[]{3L, 4f, false});
+        assertSameResult(callback, null, new int[]{3, 4});
+        assertSameResult(callback, null, new Object[0]);
+    }
+
+    @Test
+    public void sameResultWithJavaObjectTarget() {
+        ArrayList<String> target = new ArrayList<>(Arrays.asList("a", "b"));
+        Function callback = function("function (a) { return typeof(this) + this.size() + this.get(0) + a; }");
+        assertSameResult(callback, target, new Object[]{1});
+    }
+
+    @Test
+    public void sameResultWithStringReturn() {
+        Function callback = function("function (s, o) { return s + ':' + typeof(s) + ':' + o.size(); }");
+        Object result = mBridges.callFunction(callback, null, new Object[]{"abc", new ArrayList<>()});
+        assertEquals("abc:string:0", result);
+        assertSameResult(callback, null, new Object[]{"abc", new ArrayList<>()});
+        assertSameResult(function("function (o) { return String(o); }"), null, new Object[]{new StringBuilder("x")});
+    }
+
+    private Function function(String source) {
+        return (Function) mContext.evaluateString(mScope, "(" + source + ")", "<callback>", 1, null);
+    }
+
+    private void assertSameResult(Function callback, Object target, Object args) {
+        assertEquals(mBridges.getBridges().call(callback, target, args), mBridges.callFunction(callback, target, args));
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.stardust.automator
+
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat
+
+/**
+ * 通过索引查询(findAccessibilityNodeInfosByViewId/ByText)得到的节点。由于不是从根节点遍历得到的，
+ * 不知道自身在树中的位置，深度和在父节点中的序号在第一次访问时通过父节点计算。
+ */
+class DetachedUiObject(info: Any?) : UiObject(info) {
+
+    private var mDepth = -1
+    private var mIndexInParent = -2
+
+    override fun depth(): Int {
+        if (mDepth < 0) {
+            var depth = 0
+            var node = parent()
+            while (node != null) {
+                depth++
+                val parent = node.parent()
+                node.recycle()
+                node = parent
+            }
+            mDepth = depth
+        }
+        return mDepth
+    }
+
+    override fun indexInParent(): Int {
+        if (mIndexInParent == -2) {
+            mIndexInParent = -1
+            val parent = parent() ?: return mIndexInParent
+            for (i in 0 until parent.childCount) {
+                val child = parent.child(i) ?: continue
+                val found = child == this
+                child.recycle()
+                if (found) {
+                    mIndexInParent = i
+                    break
+                }
+            }
+            parent.recycle()
+        }
+        return mIndexInParent
+    }
+
+    companion object {
+
+        fun of(nodes: List<AccessibilityNodeInfoCompat>): List<UiObject> {
+            return nodes.map { DetachedUiObject(it.info) }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.stardust.automator.filter.*
 import com.stardust.automator.search.BFS
 import com.stardust.automator.search.DFS
 import com.stardust.automator.search.SearchAlgorithm
+import com.stardust.automator.snapshot.SnapshotUiObject
 import java.lang.IllegalArgumentException
 
 /**
@@ -160,7 +161,10 @@ open class UiGlobalSelector {
     }
 
     fun drawingOrder(order: Int): UiGlobalSelector {
-        mSelector.add(object : Filter {
+        mSelector.add(object : CostedFilter {
+            override val cost: Int
+                get() = CostedFilter.COST_FIELD
+
             override fun filter(node: UiObject): Boolean {
                 return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && node.drawingOrder == order
             }
@@ -429,8 +433,33 @@ open class UiGlobalSelector {
         throw IllegalArgumentException("unknown algorithm: $algorithm")
     }
 
-    fun findAndReturnList(node: UiObject, max: Int = Int.MAX_VALUE): List<UiObject> {
-        return mSearchAlgorithm.search(node, mSelector, max)
+    /**
+     * 索引查询是否一定能得到完整的结果。为false时索引查询没有找到足够的结果会回退到遍历，
+     * 轮询查找时在第一次没有找到之后不应该再使用索引，否则每次轮询都要多一次索引查询的IPC。
+     */
+    fun hasCompleteIndex(): Boolean {
+        return mSelector.compile().hasCompleteIndex
+    }
+
+    /**
+     * @param useIndex 是否尝试通过索引查询，见[hasCompleteIndex]
+     */
+    @JvmOverloads
+    fun findAndReturnList(node: UiObject, max: Int = Int.MAX_VALUE, useIndex: Boolean = true): List<UiObject> {
+        // 查询计划缓存在mSelector中，轮询查找时只在第一次编译
+        val compiledSelector = mSelector.compile()
+        compiledSelector.prepare()
+        try {
+            // 索引查询的结果顺序与深度优先遍历相近；快照上的遍历不需要IPC，不使用索引
+            if (useIndex && mSearchAlgorithm === DFS && node !is SnapshotUiObject) {
+                compiledSelector.findByIndex(node, max)?.let {
+                    return it
+                }
+            }
+            return mSearchAlgorithm.search(node, compiledSelector, max)
+        } finally {
+            compiledSelector.finish()
+        }
     }
 
 
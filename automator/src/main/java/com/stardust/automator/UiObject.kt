@@ -69,7 +69,7 @@ open class UiObject(info: Any?, private val allocator: AccessibilityNodeInfoAllo
 
     }
 
-    fun indexInParent(): Int {
+    open fun indexInParent(): Int {
         return mIndexInParent
     }
 
@@ -11,7 +11,7 @@ import java.util.HashMap
  * Created by Stardust on 2017/3/9.
  */
 
-class BooleanFilter(private val mBooleanSupplier: BooleanSupplier, private val mExceptedValue: Boolean) : Filter {
+class BooleanFilter(private val mBooleanSupplier: BooleanSupplier, private val mExceptedValue: Boolean) : CostedFilter {
 
     interface BooleanSupplier {
 
@@ -19,6 +19,9 @@ class BooleanFilter(private val mBooleanSupplier: BooleanSupplier, private val m
 
     }
 
+    override val cost: Int
+        get() = CostedFilter.COST_FIELD
+
     override fun filter(node: UiObject): Boolean {
         return mBooleanSupplier[node] == mExceptedValue
     }
@@ -11,7 +11,10 @@ import java.util.Locale
  * Created by Stardust on 2017/3/9.
  */
 
-class BoundsFilter(private val mBounds: Rect, private val mType: Int) : Filter {
+class BoundsFilter(private val mBounds: Rect, private val mType: Int) : CostedFilter {
+
+    override val cost: Int
+        get() = CostedFilter.COST_BOUNDS
 
     override fun filter(node: UiObject): Boolean {
         if (mType == TYPE_CONTAINS) {
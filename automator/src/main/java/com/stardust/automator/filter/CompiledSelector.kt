@@ -0,0 +1,90 @@
+package com.stardust.automator.filter
+
+import com.stardust.automator.UiObject
+
+/**
+ * 由[Selector]编译得到的不可变查询计划。筛选条件按[CostedFilter.cost]从低到高排列，开销相同的保持添加顺序。
+ */
+class CompiledSelector internal constructor(filters: List<Filter>) : Filter {
+
+    private val mFilters: Array<Filter> = filters.sortedBy { CostedFilter.costOf(it) }.toTypedArray()
+    private val mPreparableFilters: Array<PreparableFilter> = filters.filterIsInstance<PreparableFilter>().toTypedArray()
+    private val mIndexableFilters: List<IndexableFilter> = findIndexableFilters(filters)
+
+    /**
+     * 是否有结果完整的索引，此时索引查询没有找到时不需要再遍历控件树
+     */
+    val hasCompleteIndex: Boolean = mIndexableFilters.any { it.isIndexComplete }
+
+    /**
+     * 在每次查找开始前调用
+     */
+    fun prepare() {
+        for (filter in mPreparableFilters) {
+            filter.prepare()
+        }
+    }
+
+    /**
+     * 在每次查找结束后调用
+     */
+    fun finish() {
+        for (filter in mPreparableFilters) {
+            filter.finish()
+        }
+    }
+
+    /**
+     * 先通过索引查询得到候选节点，再对候选节点应用所有筛选条件。
+     *
+     * @return 查找结果；不能使用索引时返回null，此时需要遍历控件树
+     */
+    fun findByIndex(root: UiObject, max: Int): List<UiObject>? {
+        for (indexableFilter in mIndexableFilters) {
+            val candidates = indexableFilter.findCandidates(root) ?: continue
+            val result = ArrayList<UiObject>()
+            for (candidate in candidates) {
+                if (result.size < max && filter(candidate)) {
+                    result.add(candidate)
+                } else {
+                    candidate.recycle()
+                }
+            }
+            if (indexableFilter.isIndexComplete || result.size >= max) {
+                return result
+            }
+            for (node in result) {
+                node.recycle()
+            }
+        }
+        return null
+    }
+
+    override fun filter(node: UiObject): Boolean {
+        val filters = mFilters
+        for (i in filters.indices) {
+            if (!filters[i].filter(node)) {
+                return false
+            }
+        }
+        return true
+    }
+
+    override fun toString(): String {
+        return mFilters.joinToString(".")
+    }
+
+    companion object {
+
+        private fun findIndexableFilters(filters: List<Filter>): List<IndexableFilter> {
+            // 未知的筛选条件(例如脚本中的自定义函数)可能会访问节点的位置，保守起见不使用索引
+            for (filter in filters) {
+                if (filter !is CostedFilter || filter is IntFilter && filter.isPositional) {
+                    return emptyList()
+                }
+            }
+            // 结果完整的索引(例如id)优先
+            return filters.filterIsInstance<IndexableFilter>().sortedBy { if (it.isIndexComplete) 0 else 1 }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.stardust.automator.filter
+
+/**
+ * 可以估计自身开销的筛选条件。编译选择器时开销低的条件排在前面，使大部分节点在廉价的检查上就被排除。
+ * 没有实现该接口的筛选条件(例如脚本中的自定义函数)视为开销最高，保持添加顺序排在最后。
+ */
+interface CostedFilter : Filter {
+
+    val cost: Int
+
+    companion object {
+
+        /**
+         * 读取节点已缓存的布尔或整数属性
+         */
+        const val COST_FIELD = 1
+        /**
+         * 读取字符串属性并做简单比较
+         */
+        const val COST_STRING = 2
+        /**
+         * 需要计算节点在屏幕中的范围
+         */
+        const val COST_BOUNDS = 3
+        /**
+         * 正则匹配
+         */
+        const val COST_REGEX = 4
+        /**
+         * 需要访问父节点、兄弟节点或集合信息
+         */
+        const val COST_TREE = 5
+        const val COST_UNKNOWN = 100
+
+        fun costOf(filter: Filter): Int {
+            return if (filter is CostedFilter) filter.cost else COST_UNKNOWN
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.stardust.automator.filter
 
+import android.os.Build
+import com.stardust.automator.DetachedUiObject
 import com.stardust.automator.UiObject
 
 /**
@@ -8,12 +10,24 @@ import com.stardust.automator.UiObject
 
 object IdFilter {
 
-    private val ID_GETTER = object : KeyGetter {
+    private val ID_GETTER = object : IndexedKeyGetter {
+
+        // findAccessibilityNodeInfosByViewId找不到虚拟节点(例如WebView、Compose的testTag、自定义的AccessibilityNodeProvider)
+        override val isIndexComplete: Boolean
+            get() = false
 
         override fun getKey(nodeInfo: UiObject): String? {
             return nodeInfo.viewIdResourceName
         }
 
+        override fun findByIndex(root: UiObject, value: String, contains: Boolean): List<UiObject>? {
+            // 只有完整的id(包名:id/名称)才能通过索引查找
+            if (contains || !value.contains(":") || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                return null
+            }
+            return DetachedUiObject.of(root.findAccessibilityNodeInfosByViewId(value))
+        }
+
         override fun toString(): String {
             return "id"
         }
@@ -0,0 +1,20 @@
+package com.stardust.automator.filter
+
+import com.stardust.automator.UiObject
+
+/**
+ * 可以先通过框架在目标进程内的索引查询(findAccessibilityNodeInfosByViewId/ByText)得到少量候选节点，
+ * 再对候选节点应用所有筛选条件，从而避免遍历整个控件树的筛选条件。
+ */
+interface IndexableFilter : Filter {
+
+    /**
+     * 索引查询的结果是否一定包含所有满足条件的节点。为false时只有候选节点中找到了足够数量的结果才会使用，否则回退到遍历。
+     */
+    val isIndexComplete: Boolean
+
+    /**
+     * @return 候选节点，是满足该条件的节点的超集(或在[isIndexComplete]为false时的子集)；不能使用索引时返回null
+     */
+    fun findCandidates(root: UiObject): List<UiObject>?
+}
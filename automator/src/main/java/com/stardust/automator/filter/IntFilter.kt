@@ -6,12 +6,22 @@ import com.stardust.automator.UiObject
  * Created by Stardust on 2017/11/5.
  */
 
-class IntFilter(private val mIntProperty: IntProperty, private val mValue: Int) : Filter {
+class IntFilter(private val mIntProperty: IntProperty, private val mValue: Int) : CostedFilter {
 
     interface IntProperty {
         operator fun get(`object`: UiObject): Int
     }
 
+    // 深度、父节点中的序号和集合信息都需要访问其他节点或获取节点的副本
+    override val cost: Int
+        get() = CostedFilter.COST_TREE
+
+    /**
+     * 是否依赖节点在树中的位置。通过索引查询得到的节点不知道自身的位置，含有这类条件的选择器不能使用索引。
+     */
+    val isPositional: Boolean
+        get() = mIntProperty === DEPTH || mIntProperty === INDEX_IN_PARENT
+
     override fun filter(node: UiObject): Boolean {
         return mIntProperty[node] == mValue
     }
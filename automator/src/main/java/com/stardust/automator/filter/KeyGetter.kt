@@ -10,3 +10,17 @@ interface KeyGetter {
 
     fun getKey(nodeInfo: UiObject): String?
 }
+
+/**
+ * 可以通过框架的索引查询按属性值查找节点的[KeyGetter]
+ */
+interface IndexedKeyGetter : KeyGetter {
+
+    val isIndexComplete: Boolean
+
+    /**
+     * @param contains 为true时查找属性值包含value的节点，否则查找属性值等于value的节点
+     * @return 候选节点，不支持时返回null
+     */
+    fun findByIndex(root: UiObject, value: String, contains: Boolean): List<UiObject>?
+}
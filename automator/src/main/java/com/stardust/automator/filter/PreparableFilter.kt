@@ -0,0 +1,13 @@
+package com.stardust.automator.filter
+
+/**
+ * 每次查找开始前会被调用一次[prepare]、结束后调用一次[finish]的筛选条件，
+ * 用于把与具体节点无关的计算(例如解析当前应用的包名)移出逐节点的筛选。
+ * 不在查找过程中(没有调用[prepare])的筛选仍然需要得到正确的结果。
+ */
+interface PreparableFilter : Filter {
+
+    fun prepare()
+
+    fun finish()
+}
@@ -4,21 +4,35 @@ import com.stardust.automator.UiObject
 import java.util.*
 
 class Selector : Filter {
-    private val mFilters = LinkedList<Filter>()
+    private val mFilters = ArrayList<Filter>()
+    @Volatile
+    private var mCompiledSelector: CompiledSelector? = null
 
     override fun filter(node: UiObject): Boolean {
-        for (filter in mFilters) {
-            if (!filter.filter(node)) {
-                return false
-            }
-        }
-        return true
+        return compile().filter(node)
     }
 
+    @Synchronized
     fun add(filter: Filter) {
         mFilters.add(filter)
+        mCompiledSelector = null
+    }
+
+    /**
+     * 编译为按开销排序的查询计划。结果会被缓存，直到再次添加筛选条件。
+     */
+    fun compile(): CompiledSelector {
+        mCompiledSelector?.let {
+            return it
+        }
+        synchronized(this) {
+            return mCompiledSelector ?: CompiledSelector(ArrayList(mFilters)).also {
+                mCompiledSelector = it
+            }
+        }
     }
 
+    @Synchronized
     override fun toString(): String {
         val str = StringBuilder()
         for (filter in mFilters) {
@@ -30,4 +44,4 @@ class Selector : Filter {
         return str.toString()
     }
 
-}
\ No newline at end of file
+}
@@ -6,7 +6,10 @@ import com.stardust.automator.UiObject
  * Created by Stardust on 2017/3/9.
  */
 
-class StringEndsWithFilter(private val mSuffix: String, private val mKeyGetter: KeyGetter) : Filter {
+class StringEndsWithFilter(private val mSuffix: String, private val mKeyGetter: KeyGetter) : CostedFilter {
+
+    override val cost: Int
+        get() = CostedFilter.COST_STRING
 
     override fun filter(node: UiObject): Boolean {
         val key = mKeyGetter.getKey(node)
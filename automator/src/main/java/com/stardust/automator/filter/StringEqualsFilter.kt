@@ -6,7 +6,17 @@ import com.stardust.automator.UiObject
  * Created by Stardust on 2017/3/9.
  */
 
-class StringEqualsFilter(private val mValue: String, private val mKeyGetter: KeyGetter) : Filter {
+class StringEqualsFilter(private val mValue: String, private val mKeyGetter: KeyGetter) : CostedFilter, IndexableFilter {
+
+    override val cost: Int
+        get() = CostedFilter.COST_STRING
+
+    override val isIndexComplete: Boolean
+        get() = (mKeyGetter as? IndexedKeyGetter)?.isIndexComplete ?: false
+
+    override fun findCandidates(root: UiObject): List<UiObject>? {
+        return (mKeyGetter as? IndexedKeyGetter)?.findByIndex(root, mValue, false)
+    }
 
     override fun filter(node: UiObject): Boolean {
         val key = mKeyGetter.getKey(node)
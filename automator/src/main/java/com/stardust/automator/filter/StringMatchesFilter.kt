@@ -6,11 +6,17 @@ import com.stardust.automator.UiObject
  * Created by Stardust on 2017/3/9.
  */
 
-class StringMatchesFilter internal constructor(private val mRegex: String, private val mKeyGetter: KeyGetter) : Filter {
+class StringMatchesFilter internal constructor(private val mRegex: String, private val mKeyGetter: KeyGetter) : CostedFilter {
+
+    // 只在构造时编译一次，避免每个节点都重新编译正则
+    private val mPattern = mRegex.toRegex()
+
+    override val cost: Int
+        get() = CostedFilter.COST_REGEX
 
     override fun filter(node: UiObject): Boolean {
         val key = mKeyGetter.getKey(node)
-        return key != null && key.matches(mRegex.toRegex())
+        return key != null && mPattern.matches(key)
     }
 
     override fun toString(): String {
@@ -1,5 +1,6 @@
 package com.stardust.automator.filter
 
+import com.stardust.automator.DetachedUiObject
 import com.stardust.automator.UiObject
 
 /**
@@ -8,7 +9,20 @@ import com.stardust.automator.UiObject
 
 object TextFilters {
 
-    private val TEXT_GETTER = object : KeyGetter {
+    private val TEXT_GETTER = object : IndexedKeyGetter {
+
+        // findAccessibilityNodeInfosByText依赖控件自身的实现，自定义控件可能不会被找到
+        override val isIndexComplete: Boolean
+            get() = false
+
+        override fun findByIndex(root: UiObject, value: String, contains: Boolean): List<UiObject>? {
+            // 框架按不区分大小写的包含关系同时匹配文本和描述，结果是满足条件的节点的超集
+            if (value.isEmpty()) {
+                return null
+            }
+            return DetachedUiObject.of(root.findAccessibilityNodeInfosByText(value))
+        }
+
         override fun getKey(nodeInfo: UiObject): String? {
             val charSequence = nodeInfo.text
             return charSequence?.toString()
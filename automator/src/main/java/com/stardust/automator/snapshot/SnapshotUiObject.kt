@@ -0,0 +1,82 @@
+package com.stardust.automator.snapshot
+
+import android.graphics.Rect
+import android.view.accessibility.AccessibilityNodeInfo
+import com.stardust.automator.UiObject
+
+/**
+ * 快照中的节点。子节点在第一次访问时通过IPC获取并缓存，之后的访问直接返回缓存，直到所在子树被[UiSnapshot]标记为失效。
+ * 节点由快照持有，因此[recycle]不会回收底层的AccessibilityNodeInfo。
+ */
+class SnapshotUiObject internal constructor(private val mSnapshot: UiSnapshot,
+                                            info: AccessibilityNodeInfo,
+                                            private val mParent: SnapshotUiObject?,
+                                            depth: Int, indexInParent: Int)
+    : UiObject(info, depth, indexInParent) {
+
+    private var mChildren: Array<SnapshotUiObject?>? = null
+    private var mBounds: Rect? = null
+
+    val snapshot: UiSnapshot
+        get() = mSnapshot
+
+    override fun child(i: Int): UiObject? {
+        synchronized(mSnapshot.lock) {
+            val children = mChildren ?: fetchChildren().also {
+                mChildren = it
+            }
+            return if (i >= 0 && i < children.size) children[i] else null
+        }
+    }
+
+    private fun fetchChildren(): Array<SnapshotUiObject?> {
+        val nodeInfo = info as AccessibilityNodeInfo
+        return Array(childCount) {
+            val child = try {
+                nodeInfo.getChild(it)
+            } catch (e: IllegalStateException) {
+                null
+            }
+            if (child == null) {
+                null
+            } else {
+                SnapshotUiObject(mSnapshot, child, this, depth() + 1, it).also { node ->
+                    mSnapshot.onNodeFetched(node)
+                }
+            }
+        }
+    }
+
+    /**
+     * 丢弃已缓存的子节点，下次访问时重新获取
+     */
+    internal fun clearChildren() {
+        val children = mChildren ?: return
+        mChildren = null
+        for (child in children) {
+            if (child != null) {
+                mSnapshot.onNodeDropped(child)
+                child.clearChildren()
+            }
+        }
+    }
+
+    override fun parent(): UiObject? {
+        return mParent ?: super.parent()
+    }
+
+    internal fun parentInSnapshot(): SnapshotUiObject? {
+        return mParent
+    }
+
+    override fun bounds(): Rect {
+        val bounds = mBounds ?: super.bounds().also {
+            mBounds = it
+        }
+        return Rect(bounds)
+    }
+
+    override fun recycle() {
+        // 由快照持有，不回收
+    }
+}
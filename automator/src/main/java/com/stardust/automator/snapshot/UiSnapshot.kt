@@ -0,0 +1,56 @@
+package com.stardust.automator.snapshot
+
+import android.os.Build
+import android.view.accessibility.AccessibilityNodeInfo
+import java.util.*
+
+/**
+ * 一个窗口的控件树快照。在同一个快照上连续执行多个选择器时，每个节点只通过IPC获取一次。
+ * 收到无障碍事件时只使事件来源所在的子树失效，其他已缓存的部分继续有效。
+ */
+class UiSnapshot(rootInfo: AccessibilityNodeInfo) {
+
+    internal val lock = Any()
+    private val mRootInfo = rootInfo
+    private val mNodes = HashMap<AccessibilityNodeInfo, SnapshotUiObject>()
+    @Volatile
+    var isValid = true
+        private set
+
+    val root = SnapshotUiObject(this, rootInfo, null, 0, -1)
+
+    init {
+        mNodes[rootInfo] = root
+    }
+
+    internal fun onNodeFetched(node: SnapshotUiObject) {
+        mNodes[node.info as AccessibilityNodeInfo] = node
+    }
+
+    internal fun onNodeDropped(node: SnapshotUiObject) {
+        mNodes.remove(node.info as AccessibilityNodeInfo)
+    }
+
+    fun invalidate() {
+        isValid = false
+    }
+
+    /**
+     * 使source对应的节点及其子树失效。由于节点自身的属性也可能发生变化，实际上是让它的父节点重新获取所有子节点。
+     */
+    fun invalidate(source: AccessibilityNodeInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && source.windowId != mRootInfo.windowId) {
+            return
+        }
+        synchronized(lock) {
+            val node = mNodes[source]
+            // 不在快照中的节点可能是新出现的，无法确定影响范围
+            val parent = node?.parentInSnapshot()
+            if (parent == null) {
+                isValid = false
+                return
+            }
+            parent.clearChildren()
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.stardust.automator.snapshot
+
+import android.view.accessibility.AccessibilityEvent
+import android.view.accessibility.AccessibilityNodeInfo
+import com.stardust.automator.UiObject
+import com.stardust.util.LimitedHashMap
+import com.stardust.view.accessibility.AccessibilityService
+
+/**
+ * 按窗口根节点缓存[UiSnapshot]，并根据无障碍事件使其部分或全部失效。
+ */
+object UiSnapshotCache : AccessibilityService.WindowChangeListener {
+
+    private const val MAX_SNAPSHOTS = 4
+
+    private val mSnapshots = LimitedHashMap<AccessibilityNodeInfo, UiSnapshot>(MAX_SNAPSHOTS)
+
+    init {
+        AccessibilityService.windowChangeEventDispatcher.addListener(this)
+    }
+
+    /**
+     * 获取该窗口的快照根节点。快照仍然有效时直接复用，否则重新创建。
+     */
+    fun getRoot(root: AccessibilityNodeInfo): UiObject {
+        synchronized(mSnapshots) {
+            val snapshot = mSnapshots[root]
+            if (snapshot != null && snapshot.isValid) {
+                return snapshot.root
+            }
+            return UiSnapshot(root).also {
+                mSnapshots[root] = it
+            }.root
+        }
+    }
+
+    fun clear() {
+        synchronized(mSnapshots) {
+            for (snapshot in mSnapshots.values) {
+                snapshot.invalidate()
+            }
+            mSnapshots.clear()
+        }
+    }
+
+    override fun onWindowChanged(event: AccessibilityEvent) {
+        val snapshots = synchronized(mSnapshots) {
+            if (mSnapshots.isEmpty()) {
+                return
+            }
+            ArrayList(mSnapshots.values)
+        }
+        val type = event.eventType
+        if (type == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED || type == AccessibilityEvent.TYPE_WINDOWS_CHANGED) {
+            clear()
+            return
+        }
+        val source = event.source
+        if (source == null) {
+            clear()
+            return
+        }
+        for (snapshot in snapshots) {
+            snapshot.invalidate(source)
+        }
+        source.recycle()
+    }
+}
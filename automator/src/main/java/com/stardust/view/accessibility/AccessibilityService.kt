@@ -25,6 +25,10 @@ open class AccessibilityService : android.accessibilityservice.AccessibilityServ
         fun onGesture(gestureId: Int)
     }
 
+    interface WindowChangeListener {
+        fun onWindowChanged(event: AccessibilityEvent)
+    }
+
     val onKeyObserver = OnKeyListener.Observer()
     val keyInterrupterObserver = KeyInterceptor.Observer()
     val gestureEventDispatcher = EventDispatcher<GestureListener>()
@@ -42,6 +46,13 @@ open class AccessibilityService : android.accessibilityservice.AccessibilityServ
     override fun onAccessibilityEvent(event: AccessibilityEvent) {
         instance = this
         // Log.v(TAG, "onAccessibilityEvent: $event");
+        // 在分发给delegate之前记录，避免事件被delegate拦截后等待者收不到通知
+        if (event.eventType and WINDOW_CHANGE_EVENT_TYPES != 0) {
+            windowChangeEventDispatcher.dispatchEvent {
+                it.onWindowChanged(event)
+            }
+            notifyWindowChanged()
+        }
         if (!containsAllEventTypes && !eventTypes.contains(event.eventType))
             return
         val type = event.eventType
@@ -121,14 +132,73 @@ open class AccessibilityService : android.accessibilityservice.AccessibilityServ
 
         private val TAG = "AccessibilityService"
 
+        /**
+         * 可能使控件树发生变化的事件类型
+         */
+        const val WINDOW_CHANGE_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED or
+                AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED or
+                AccessibilityEvent.TYPE_WINDOWS_CHANGED or
+                AccessibilityEvent.TYPE_VIEW_SCROLLED or
+                AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED or
+                AccessibilityEvent.TYPE_VIEW_SELECTED or
+                AccessibilityEvent.TYPE_VIEW_FOCUSED
+
         private val mDelegates = TreeMap<Int, AccessibilityDelegate>()
         private val LOCK = ReentrantLock()
         private val ENABLED = LOCK.newCondition()
         var instance: AccessibilityService? = null
             private set
         val stickOnKeyObserver = OnKeyListener.Observer()
+        val windowChangeEventDispatcher = EventDispatcher<WindowChangeListener>()
         private var containsAllEventTypes = false
         private val eventTypes = HashSet<Int>()
+        private val WINDOW_CHANGE_LOCK = ReentrantLock()
+        private val WINDOW_CHANGED = WINDOW_CHANGE_LOCK.newCondition()
+        @Volatile
+        private var mWindowChangeVersion = 0L
+
+        /**
+         * 控件树的版本号，每收到一个可能使控件树发生变化的事件就加一
+         */
+        val windowChangeVersion: Long
+            get() = mWindowChangeVersion
+
+        private fun notifyWindowChanged() {
+            WINDOW_CHANGE_LOCK.lock()
+            try {
+                mWindowChangeVersion++
+                WINDOW_CHANGED.signalAll()
+            } finally {
+                WINDOW_CHANGE_LOCK.unlock()
+            }
+        }
+
+        /**
+         * 等待控件树的版本号不再等于version。
+         *
+         * @param timeout 最长等待的毫秒数
+         * @return 是否在超时前发生了变化
+         */
+        @Throws(InterruptedException::class)
+        fun waitForWindowChange(version: Long, timeout: Long): Boolean {
+            if (mWindowChangeVersion != version) {
+                return true
+            }
+            WINDOW_CHANGE_LOCK.lockInterruptibly()
+            try {
+                var nanos = TimeUnit.MILLISECONDS.toNanos(timeout)
+                while (mWindowChangeVersion == version) {
+                    if (nanos <= 0) {
+                        return false
+                    }
+                    nanos = WINDOW_CHANGED.awaitNanos(nanos)
+                }
+                return true
+            } finally {
+                WINDOW_CHANGE_LOCK.unlock()
+            }
+        }
+
 
         fun addDelegate(uniquePriority: Int, delegate: AccessibilityDelegate) {
             mDelegates[uniquePriority] = delegate
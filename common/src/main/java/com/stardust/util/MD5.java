@@ -16,7 +16,10 @@ public class MD5 {
     }
 
     public static String md5(String message) {
-        byte[] bytes = md5Bytes(message);
+        return toHexString(md5Bytes(message));
+    }
+
+    public static String toHexString(byte[] bytes) {
         StringBuilder hexString = new StringBuilder(32);
         for (byte b : bytes) {
             String hex = Integer.toHexString(0xFF & b);
@@ -68,7 +68,8 @@ open class AssetsProjectLauncher(private val mAssetsProjectDir: String, private
         }
         try {
             val source = JavaScriptFileSource("main", mMainScriptFile)
-            val config = ExecutionConfig(workingDirectory = mProjectDir)
+            val config = ExecutionConfig(workingDirectory = mProjectDir,
+                    scriptConfig = mProjectConfig.getScriptConfig(mProjectConfig.mainScriptFile))
             if (source.executionMode and JavaScriptSource.EXECUTION_MODE_UI != 0) {
                 config.intentFlags = Intent.FLAG_ACTIVITY_CLEAR_TASK or Intent.FLAG_ACTIVITY_TASK_ON_HOME
             } else {